@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * This class benchmarks the hot path of the dispatch of the {@link Manager} (the time spent by the thread of the Stream Deck connection: routing, loading and queuing) with 1, 10 and 100 stub plugin files (see {@link StubPlugins}). It is run by the target bench of build.xml, which adds -prof gc to report the allocation per operation:
+ * <ul>
+ * <li>keyDown: a key press on a loaded plugin file</li>
+ * <li>willAppearWarm: an action which appears again on a loaded plugin file</li>
+ * <li>Cold.willAppearCold: all the plugin files are loaded by a new Manager (one willAppear per plugin file, until their callbacks end)</li>
+ * <li>deviceDidConnect: an event broadcast to all the loaded plugin files</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djavaplugin.warmup=false", "-Djavaplugin.cache.file=", "-Djavaplugin.watch=false", "-Djavaplugin.metrics.logInterval=0"})
+@State(Scope.Benchmark)
+public class ManagerBenchmark {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the number of loaded plugin files
+     */
+    @Param({"1", "10", "100"})
+    public int plugins;
+
+    /**
+     * Corresponds to the stub plugin files
+     */
+    private StubPlugins stubs;
+
+    /**
+     * Corresponds to the Manager in which all the plugin files are loaded
+     */
+    private Manager manager;
+
+    /**
+     * Corresponds to a keyDown event on the key of each plugin file
+     */
+    private KeyDown[] keyDowns;
+
+    /**
+     * Corresponds to a willAppear event on the key of each plugin file
+     */
+    private WillAppear[] willAppears;
+
+    /**
+     * Corresponds to the broadcast event
+     */
+    private DeviceDidConnect deviceDidConnect;
+
+    /**
+     * Corresponds to the index of the next plugin file targeted
+     */
+    private int next;
+
+
+
+//METHODE PUBLIC
+    /**
+     * Creates the stub plugin files and loads them in a Manager
+     * @throws java.io.IOException If the stub plugin files cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setup() throws java.io.IOException {
+        stubs = new StubPlugins(plugins);
+        manager = new Manager();
+        manager.onCreate();
+        stubs.appear(manager);
+        keyDowns = new KeyDown[plugins];
+        willAppears = new WillAppear[plugins];
+        for(int i = 0; i < plugins; i++){
+            keyDowns[i] = stubs.keyDown(i);
+            willAppears[i] = stubs.willAppear(i);
+        }
+        deviceDidConnect = StubPlugins.deviceDidConnect("device");
+    }
+
+    /**
+     * Destroys the Manager and deletes the stub plugin files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.onDestroy();
+        stubs.delete();
+    }
+
+    /**
+     * A key press on a loaded plugin file (each plugin file in turn)
+     */
+    @Benchmark
+    public void keyDown() {
+        int i = next();
+        manager.keyDown(keyDowns[i], stubs.context(i), GsonCache.builder());
+    }
+
+    /**
+     * An action which appears again on a loaded plugin file (each plugin file in turn)
+     */
+    @Benchmark
+    public void willAppearWarm() {
+        int i = next();
+        manager.willAppear(willAppears[i], stubs.context(i), GsonCache.builder());
+    }
+
+    /**
+     * An event broadcast to all the loaded plugin files
+     */
+    @Benchmark
+    public void deviceDidConnect() {
+        manager.deviceDidConnect(deviceDidConnect, "device", null, GsonCache.builder());
+    }
+
+//METHODES PRIVATES
+    /**
+     * Returns the index of the next plugin file targeted
+     * @return Returns the index of the next plugin file targeted
+     */
+    private int next() {
+        int i = next;
+        next = (i + 1 == plugins) ? 0 : i + 1;
+        return i;
+    }
+
+
+
+//CLASS
+    /**
+     * This class benchmarks the loading of the plugin files by a new Manager (a new Manager per invocation of {@link #willAppearCold()})
+     * @author JasonPercus
+     * @version 1.0
+     */
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 20, batchSize = 1)
+    @Fork(value = 1, jvmArgsAppend = {"-Djavaplugin.warmup=false", "-Djavaplugin.cache.file=", "-Djavaplugin.watch=false", "-Djavaplugin.metrics.logInterval=0"})
+    @State(Scope.Benchmark)
+    public static class Cold {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the number of plugin files
+         */
+        @Param({"1", "10", "100"})
+        public int plugins;
+
+        /**
+         * Corresponds to the stub plugin files
+         */
+        private StubPlugins stubs;
+
+        /**
+         * Corresponds to the new Manager
+         */
+        private Manager manager;
+
+
+
+    //METHODES PUBLICS
+        /**
+         * Creates the stub plugin files
+         * @throws java.io.IOException If the stub plugin files cannot be created
+         */
+        @Setup(Level.Trial)
+        public void setup() throws java.io.IOException {
+            stubs = new StubPlugins(plugins);
+        }
+
+        /**
+         * Creates a new Manager
+         */
+        @Setup(Level.Invocation)
+        public void create() {
+            manager = new Manager();
+            manager.onCreate();
+        }
+
+        /**
+         * All the plugin files are loaded by the new Manager, from the first willAppear to the end of the last willAppear callback
+         */
+        @Benchmark
+        public void willAppearCold() {
+            stubs.appear(manager);
+        }
+
+        /**
+         * Destroys the Manager
+         */
+        @TearDown(Level.Invocation)
+        public void destroy() {
+            manager.onDestroy();
+        }
+
+        /**
+         * Deletes the stub plugin files
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            stubs.delete();
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * This class benchmarks the discovery of the EventManagers of a large plugin file at startup: a synthetic jar of about 5k classes (shaded dependencies with static initializers) which contains a few EventManagers. It is run by the target bench of build.xml:
+ * <ul>
+ * <li>loadAll: the former discovery, which loads and initializes every class of the plugin file</li>
+ * <li>headers: the headers of the .class entries are read with a ZipFile</li>
+ * <li>headersMapped: the headers of the .class entries are read from the plugin file mapped in memory</li>
+ * <li>index: the EventManagers are listed by an index META-INF/services written at build time</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginScannerBenchmark {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the number of EventManagers of the plugin file
+     */
+    private static final int ACTIONS = 10;
+
+    /**
+     * Corresponds to the number of classes per package of the plugin file
+     */
+    private static final int PER_PACKAGE = 250;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the number of classes of the plugin file
+     */
+    @Param({"5000"})
+    public int classes;
+
+    /**
+     * Corresponds to the temporary folder
+     */
+    private java.io.File folder;
+
+    /**
+     * Corresponds to the plugin file without index
+     */
+    private java.io.File file;
+
+    /**
+     * Corresponds to the same plugin file with an index META-INF/services
+     */
+    private java.io.File indexed;
+
+
+
+//METHODE PUBLIC
+    /**
+     * Compiles the classes and writes both plugin files
+     * @throws java.io.IOException If the plugin files cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setup() throws java.io.IOException {
+        folder = java.nio.file.Files.createTempDirectory("javaplugin-bench").toFile();
+        java.util.LinkedHashMap<String, String> sources = new java.util.LinkedHashMap<>();
+        StringBuilder index = new StringBuilder();
+        for(int i = 0; i < classes - ACTIONS; i++){
+            String pkg = "shaded.p" + (i / PER_PACKAGE);
+            String name = "C" + i;
+            String parent = (i % PER_PACKAGE == 0) ? "Object" : "C" + (i - 1);
+            sources.put(pkg + "." + name, "package " + pkg + ";\npublic class " + name + " extends " + parent + " {\n"
+                    + "    static final java.util.Map<String, Integer> TABLE = new java.util.HashMap<>();\n"
+                    + "    static { for(int i = 0; i < 16; i++) TABLE.put(\"" + name + "\" + i, i); }\n"
+                    + "    private int value" + i + ";\n"
+                    + "    public int value" + i + "() { return value" + i + " + TABLE.size(); }\n"
+                    + "}\n");
+        }
+        for(int i = 0; i < ACTIONS; i++){
+            sources.put("app.Action" + i, "package app;\npublic class Action" + i + " extends com.jasonpercus.plugincreator.EventManager {\n"
+                    + "    @Override public void keyDown(com.jasonpercus.plugincreator.models.events.KeyDown e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { }\n"
+                    + "}\n");
+            index.append("app.Action").append(i).append('\n');
+        }
+        java.nio.file.Path compiled = StubPlugins.compile(folder, sources).toPath();
+        java.util.List<java.nio.file.Path> paths = new java.util.ArrayList<>();
+        try (java.util.stream.Stream<java.nio.file.Path> stream = java.nio.file.Files.walk(compiled)) {
+            stream.filter(java.nio.file.Files::isRegularFile).sorted().forEach(paths::add);
+        }
+        file = new java.io.File(folder, "plugin.jar");
+        indexed = new java.io.File(folder, "indexed.jar");
+        for(java.io.File jar : new java.io.File[]{file, indexed}){
+            try (java.util.jar.JarOutputStream out = new java.util.jar.JarOutputStream(new java.io.FileOutputStream(jar))) {
+                if(jar == indexed){
+                    out.putNextEntry(new java.util.jar.JarEntry("META-INF/services/" + EventManager.class.getName()));
+                    out.write(index.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                    out.closeEntry();
+                }
+                for(java.nio.file.Path path : paths){
+                    out.putNextEntry(new java.util.jar.JarEntry(compiled.relativize(path).toString().replace(java.io.File.separatorChar, '/')));
+                    out.write(java.nio.file.Files.readAllBytes(path));
+                    out.closeEntry();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the plugin files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        StubPlugins.delete(folder);
+    }
+
+    /**
+     * The former discovery: every class of the plugin file is loaded and initialized in a new class loader to know if it is an EventManager
+     * @return Returns the EventManagers found
+     * @throws java.io.IOException If the plugin file cannot be read
+     * @throws ClassNotFoundException If a class cannot be loaded
+     */
+    @Benchmark
+    public java.util.List<String> loadAll() throws java.io.IOException, ClassNotFoundException {
+        java.util.List<String> list = new java.util.ArrayList<>();
+        try (java.net.URLClassLoader loader = new java.net.URLClassLoader(new java.net.URL[]{file.toURI().toURL()}, EventManager.class.getClassLoader()); java.util.jar.JarFile jar = new java.util.jar.JarFile(file)) {
+            java.util.Enumeration<java.util.jar.JarEntry> entries = jar.entries();
+            while(entries.hasMoreElements()){
+                String name = entries.nextElement().getName();
+                if(!name.endsWith(".class"))
+                    continue;
+                String className = name.substring(0, name.length() - 6).replace('/', '.');
+                if(EventManager.class.isAssignableFrom(Class.forName(className, true, loader)))
+                    list.add(className);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The headers of the .class entries are read with a ZipFile
+     * @return Returns the EventManagers found
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Benchmark
+    public java.util.List<String> headers() throws java.io.IOException {
+        return PluginScanner.findSubclasses(file, EventManager.class.getName());
+    }
+
+    /**
+     * The headers of the .class entries are read from the plugin file mapped in memory (the mapping is included)
+     * @return Returns the EventManagers found
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Benchmark
+    public java.util.List<String> headersMapped() throws java.io.IOException {
+        try (MappedJar jar = MappedJar.open(file)) {
+            return PluginScanner.findSubclasses(jar, EventManager.class.getName());
+        }
+    }
+
+    /**
+     * The EventManagers are listed by the index META-INF/services of the plugin file
+     * @return Returns the EventManagers found
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Benchmark
+    public java.util.List<String> index() throws java.io.IOException {
+        return PluginScanner.findSubclasses(indexed, EventManager.class.getName());
+    }
+
+
+
+}
\ No newline at end of file
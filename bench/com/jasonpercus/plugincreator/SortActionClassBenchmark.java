@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * This class benchmarks the pruning of the EventManagers found in a plugin file with hundreds of subclasses (chains of 5 EventManagers, the first one abstract, loaded in their own class loader). It is run by the target bench of build.xml:
+ * <ul>
+ * <li>sortActionClass: one walk of the superclass chain per class (see {@link Manager#sortActionClass(java.util.List)})</li>
+ * <li>pairs: the reference algorithm, which compares each pair of classes</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortActionClassBenchmark {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the length of each chain of EventManagers
+     */
+    private static final int DEPTH = 5;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the number of EventManagers
+     */
+    @Param({"100", "500"})
+    public int classes;
+
+    /**
+     * Corresponds to the temporary folder
+     */
+    private java.io.File folder;
+
+    /**
+     * Corresponds to the class loader of the EventManagers
+     */
+    private java.net.URLClassLoader loader;
+
+    /**
+     * Corresponds to the EventManagers (in a shuffled order)
+     */
+    private java.util.List<Class<?>> found;
+
+
+
+//METHODE PUBLIC
+    /**
+     * Compiles and loads the EventManagers
+     * @throws java.io.IOException If the EventManagers cannot be compiled
+     * @throws ClassNotFoundException If an EventManager cannot be loaded
+     */
+    @Setup(Level.Trial)
+    public void setup() throws java.io.IOException, ClassNotFoundException {
+        folder = java.nio.file.Files.createTempDirectory("javaplugin-bench").toFile();
+        java.util.LinkedHashMap<String, String> sources = new java.util.LinkedHashMap<>();
+        for(int i = 0; i < classes; i++){
+            String parent = (i % DEPTH == 0) ? "com.jasonpercus.plugincreator.EventManager" : "A" + (i - 1);
+            sources.put("bench.A" + i, "package bench;\npublic " + ((i % DEPTH == 0) ? "abstract " : "") + "class A" + i + " extends " + parent + " { }\n");
+        }
+        java.io.File compiled = StubPlugins.compile(folder, sources);
+        loader = new java.net.URLClassLoader(new java.net.URL[]{compiled.toURI().toURL()}, EventManager.class.getClassLoader());
+        found = new java.util.ArrayList<>();
+        for(String name : sources.keySet())
+            found.add(Class.forName(name, false, loader));
+        java.util.Collections.shuffle(found, new java.util.Random(42));
+    }
+
+    /**
+     * Closes the class loader and deletes the EventManagers
+     * @throws java.io.IOException If the class loader cannot be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws java.io.IOException {
+        loader.close();
+        StubPlugins.delete(folder);
+    }
+
+    /**
+     * One walk of the superclass chain per class
+     * @return Returns the EventManagers kept
+     */
+    @Benchmark
+    public java.util.List<Class<?>> sortActionClass() {
+        java.util.List<Class<?>> list = new java.util.ArrayList<>(found);
+        Manager.sortActionClass(list);
+        return list;
+    }
+
+    /**
+     * The reference algorithm: each pair of classes is compared
+     * @return Returns the EventManagers kept
+     */
+    @Benchmark
+    public java.util.List<Class<?>> pairs() {
+        java.util.List<Class<?>> list = new java.util.ArrayList<>();
+        for(Class<?> c : found){
+            boolean extended = java.lang.reflect.Modifier.isAbstract(c.getModifiers());
+            for(int i = 0; i < found.size() && !extended; i++){
+                Class<?> other = found.get(i);
+                extended = other != c && c.isAssignableFrom(other);
+            }
+            if(!extended)
+                list.add(c);
+        }
+        return list;
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.Payload;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+
+
+
+/**
+ * This class creates the stub plugin files used by the benchmarks. Each plugin file is a jar which contains one EventManager (bench.StubAction) compiled at run time, so that each plugin file is really loaded in its own class loader (the stub is not in the classpath of the benchmarks). The stub does not use its connection: the benchmarks measure the host, not the Stream Deck
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class StubPlugins {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the name of the stub action
+     */
+    static final String ACTION = "bench.StubAction";
+
+    /**
+     * Corresponds to the source of the stub action (it subscribes to keyDown, willAppear and deviceDidConnect)
+     */
+    private static final String SOURCE = "package bench;\n"
+            + "public class StubAction extends com.jasonpercus.plugincreator.EventManager {\n"
+            + "    @Override public void keyDown(com.jasonpercus.plugincreator.models.events.KeyDown e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { }\n"
+            + "    @Override public void willAppear(com.jasonpercus.plugincreator.models.events.WillAppear e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { }\n"
+            + "    @Override public void deviceDidConnect(com.jasonpercus.plugincreator.models.events.DeviceDidConnect e, String d, com.jasonpercus.plugincreator.models.events.DeviceDidConnect.DeviceInfo i, com.google.gson.GsonBuilder b) { }\n"
+            + "}\n";
+
+    /**
+     * Corresponds to the maximum time to wait for the deliveries (in milliseconds)
+     */
+    private static final long TIMEOUT = 60000;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the folder of the plugin files
+     */
+    private final java.io.File folder;
+
+    /**
+     * Corresponds to the plugin files
+     */
+    private final java.io.File[] files;
+
+    /**
+     * Corresponds to the context of the key of each plugin file
+     */
+    private final Context[] contexts;
+
+    /**
+     * Corresponds to the settings of the key of each plugin file (plugin file and action name)
+     */
+    private final String[] settings;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create the stub plugin files in a temporary folder
+     * @param count Corresponds to the number of plugin files
+     * @throws java.io.IOException If the stub cannot be compiled or the plugin files cannot be written
+     */
+    StubPlugins(int count) throws java.io.IOException {
+        this.folder = java.nio.file.Files.createTempDirectory("javaplugin-bench").toFile();
+        byte[] stub = java.nio.file.Files.readAllBytes(new java.io.File(compile(folder, java.util.Collections.singletonMap(ACTION, SOURCE)), ACTION.replace('.', '/') + ".class").toPath());
+        this.files = new java.io.File[count];
+        this.contexts = new Context[count];
+        this.settings = new String[count];
+        for(int i = 0; i < count; i++){
+            files[i] = new java.io.File(folder, "plugin" + i + ".jar");
+            try (java.util.jar.JarOutputStream out = new java.util.jar.JarOutputStream(new java.io.FileOutputStream(files[i]))) {
+                out.putNextEntry(new java.util.jar.JarEntry(ACTION.replace('.', '/') + ".class"));
+                out.write(stub);
+                out.closeEntry();
+            }
+            contexts[i] = new Context("context" + i);
+            com.google.gson.JsonObject json = new com.google.gson.JsonObject();
+            json.addProperty("pluginFile", files[i].getAbsolutePath());
+            json.addProperty("actionName", ACTION);
+            settings[i] = json.toString();
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the number of plugin files
+     * @return Returns the number of plugin files
+     */
+    int count() {
+        return files.length;
+    }
+
+    /**
+     * Returns the context of the key of a plugin file
+     * @param i Corresponds to the index of the plugin file
+     * @return Returns the context of the key
+     */
+    Context context(int i) {
+        return contexts[i];
+    }
+
+    /**
+     * Returns a keyDown event on the key of a plugin file
+     * @param i Corresponds to the index of the plugin file
+     * @return Returns the event
+     */
+    KeyDown keyDown(int i) {
+        KeyDown event = new KeyDown();
+        event.context = contexts[i].toString();
+        event.payload = payload(i);
+        return event;
+    }
+
+    /**
+     * Returns a willAppear event on the key of a plugin file
+     * @param i Corresponds to the index of the plugin file
+     * @return Returns the event
+     */
+    WillAppear willAppear(int i) {
+        WillAppear event = new WillAppear();
+        event.context = contexts[i].toString();
+        event.payload = payload(i);
+        return event;
+    }
+
+    /**
+     * Returns a deviceDidConnect event
+     * @param device Corresponds to the device
+     * @return Returns the event
+     */
+    static DeviceDidConnect deviceDidConnect(String device) {
+        DeviceDidConnect event = new DeviceDidConnect();
+        event.device = device;
+        return event;
+    }
+
+    /**
+     * Makes a Manager load all the plugin files (one willAppear per plugin file) and waits for their willAppear callbacks
+     * @param manager Corresponds to the Manager
+     */
+    void appear(Manager manager) {
+        long before = manager.metrics().getDeliveries();
+        for(int i = 0; i < files.length; i++)
+            manager.willAppear(willAppear(i), contexts[i], GsonCache.builder());
+        await(manager, before + files.length);
+    }
+
+    /**
+     * Waits until a Manager has measured a number of deliveries (the metrics must measure all the deliveries)
+     * @param manager Corresponds to the Manager
+     * @param deliveries Corresponds to the number of deliveries to wait for
+     */
+    static void await(Manager manager, long deliveries) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while(manager.metrics().getDeliveries() < deliveries){
+            if(System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("Only " + manager.metrics().getDeliveries() + " deliveries out of " + deliveries + " after " + TIMEOUT + " ms");
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Compiles classes with the compiler of the JDK, against the classpath of the benchmarks
+     * @param folder Corresponds to the folder in which the classes are compiled
+     * @param sources Corresponds to the source of each class (by full class name)
+     * @return Returns the folder which contains the compiled classes
+     * @throws java.io.IOException If the classes cannot be compiled
+     */
+    static java.io.File compile(java.io.File folder, java.util.Map<String, String> sources) throws java.io.IOException {
+        javax.tools.JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+        if(compiler == null)
+            throw new java.io.IOException("The benchmarks must run on a JDK (the stub plugins are compiled at run time)");
+        java.io.File src = new java.io.File(folder, "src");
+        java.io.File classes = new java.io.File(folder, "classes");
+        classes.mkdirs();
+        java.util.List<String> args = new java.util.ArrayList<>(java.util.Arrays.asList("-nowarn", "-classpath", System.getProperty("java.class.path"), "-d", classes.getPath()));
+        for(java.util.Map.Entry<String, String> source : sources.entrySet()){
+            java.io.File file = new java.io.File(src, source.getKey().replace('.', '/') + ".java");
+            file.getParentFile().mkdirs();
+            java.nio.file.Files.write(file.toPath(), source.getValue().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            args.add(file.getPath());
+        }
+        int status = compiler.run(null, null, null, args.toArray(new String[args.size()]));
+        if(status != 0)
+            throw new java.io.IOException("Unable to compile the stub classes (status " + status + ")");
+        return classes;
+    }
+
+    /**
+     * Deletes a file or a folder and its content
+     * @param file Corresponds to the file or the folder
+     */
+    static void delete(java.io.File file) {
+        java.io.File[] children = file.listFiles();
+        if(children != null){
+            for(java.io.File f : children)
+                delete(f);
+        }
+        file.delete();
+    }
+
+    /**
+     * Deletes the plugin files and their folder
+     */
+    void delete() {
+        delete(folder);
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the payload of the key of a plugin file
+     * @param i Corresponds to the index of the plugin file
+     * @return Returns the payload
+     */
+    private Payload payload(int i) {
+        Payload payload = new Payload();
+        payload.settings = settings[i];
+        return payload;
+    }
+
+
+
+}
\ No newline at end of file
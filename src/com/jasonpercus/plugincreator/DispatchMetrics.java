@@ -0,0 +1,615 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class measures the deliveries of the events to the hosted plugins: the time spent in the queue, the execution time of the callbacks, the memory they allocate and the errors, per plugin file, action (class of the EventManager) and event type. Measuring a delivery allocates nothing. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.metrics.sampling: 1 delivery out of N is measured (default 1: all of them, 0 to disable the metrics). The errors are always counted</li>
+ * <li>javaplugin.metrics.allocation: measures the memory allocated by the measured callbacks (default false, needs the HotSpot ThreadMXBean)</li>
+ * <li>javaplugin.metrics.logInterval: the time in milliseconds between two summaries written in the log of the plugin (default 300000, 0 to disable). A summary ends with the loaded plugin files and the memory used</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class DispatchMetrics implements DispatchMetricsMBean {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the name of the JMX view
+     */
+    private static final String OBJECT_NAME = "com.jasonpercus.plugincreator:type=DispatchMetrics";
+
+    /**
+     * Corresponds to the maximum number of lines of a periodic summary
+     */
+    private static final int SUMMARY_LINES = 10;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the sampling (1 delivery out of N is measured, 0 if disabled)
+     */
+    private final int sampling;
+
+    /**
+     * Corresponds to the bean which measures the memory allocated by a thread (null if the allocations are not measured)
+     */
+    private final com.sun.management.ThreadMXBean allocations;
+
+    /**
+     * Corresponds to the statistics indexed by plugin file, then by action, then by event type (ordinal)
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicReferenceArray<Stats>>> stats = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the timer which writes the periodic summaries (null if there is none)
+     */
+    private java.util.concurrent.ScheduledExecutorService timer;
+
+    /**
+     * Determines if the JMX view is registered
+     */
+    private boolean registered;
+
+    /**
+     * Corresponds to the evictor of the host, which knows the loaded plugin files (null if there is none)
+     */
+    private volatile PluginEvictor evictor;
+
+    /**
+     * Corresponds to the routes of the contexts cached by the host (null if there are none)
+     */
+    private volatile RoutingCache routes;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a DispatchMetrics configured by the system properties javaplugin.metrics.sampling and javaplugin.metrics.allocation
+     */
+    DispatchMetrics() {
+        this(Integer.getInteger("javaplugin.metrics.sampling", 1), Boolean.getBoolean("javaplugin.metrics.allocation"));
+    }
+
+    /**
+     * Create a DispatchMetrics
+     * @param sampling Corresponds to the sampling (1 delivery out of N is measured, 0 to disable the metrics)
+     */
+    DispatchMetrics(int sampling) {
+        this(sampling, false);
+    }
+
+    /**
+     * Create a DispatchMetrics
+     * @param sampling Corresponds to the sampling (1 delivery out of N is measured, 0 to disable the metrics)
+     * @param allocation Determines if the memory allocated by the measured callbacks is measured
+     */
+    DispatchMetrics(int sampling, boolean allocation) {
+        this.sampling = Math.max(0, sampling);
+        this.allocations = (this.sampling > 0 && allocation) ? allocations() : null;
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Starts the measure of a delivery when it is submitted
+     * @return Returns the current time (System.nanoTime()) if this delivery is measured, otherwise 0
+     */
+    long start() {
+        if(sampling == 0 || (sampling > 1 && java.util.concurrent.ThreadLocalRandom.current().nextInt(sampling) != 0))
+            return 0;
+        long now = System.nanoTime();
+        return (now == 0) ? 1 : now;
+    }
+
+    /**
+     * Returns the memory allocated so far by the current thread, when a measured callback starts
+     * @return Returns the number of bytes allocated by the current thread, or -1 if the allocations are not measured
+     */
+    long allocated() {
+        return (allocations == null) ? -1 : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Records a measured delivery
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     * @param submitted Corresponds to the time when the delivery was submitted (returned by {@link #start()})
+     * @param begin Corresponds to the time when the callback started
+     * @param end Corresponds to the time when the callback ended
+     * @param allocated Corresponds to the memory allocated by the thread when the callback started (returned by {@link #allocated()}, -1 if it is not measured)
+     */
+    void record(String pluginFile, Object target, EventType type, long submitted, long begin, long end, long allocated) {
+        long bytes = (allocated < 0) ? -1 : allocated() - allocated;
+        Stats s = stats(pluginFile, target, type);
+        s.wait.record(begin - submitted);
+        s.execution.record(end - begin);
+        if(bytes >= 0){
+            s.allocated.add(bytes);
+            s.allocations.increment();
+        }
+    }
+
+    /**
+     * Records a callback which threw an exception
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     */
+    void error(String pluginFile, Object target, EventType type) {
+        stats(pluginFile, target, type).errors.increment();
+    }
+
+    /**
+     * Records a callback which passed the soft deadline of the watchdog
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     */
+    void slow(String pluginFile, Object target, EventType type) {
+        stats(pluginFile, target, type).slow.increment();
+    }
+
+    /**
+     * Records a callback interrupted by the watchdog (hard deadline)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     */
+    void interrupted(String pluginFile, Object target, EventType type) {
+        stats(pluginFile, target, type).interrupted.increment();
+    }
+
+    /**
+     * Exposes the metrics through JMX and starts writing a summary periodically
+     * @param sink Corresponds to the log in which the summaries are written
+     */
+    synchronized void start(java.util.function.Consumer<String> sink) {
+        if(sampling == 0)
+            return;
+        try {
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            javax.management.ObjectName name = new javax.management.ObjectName(OBJECT_NAME);
+            if(server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+            registered = true;
+        } catch (javax.management.JMException | SecurityException ex) {
+            java.util.logging.Logger.getLogger(DispatchMetrics.class.getName()).log(java.util.logging.Level.WARNING, "Unable to expose the metrics through JMX", ex);
+        }
+        long interval = Long.getLong("javaplugin.metrics.logInterval", 300000);
+        if(interval > 0 && timer == null){
+            timer = java.util.concurrent.Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "JavaPlugin-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    for(String line : summary())
+                        sink.accept(line);
+                    PluginEvictor e = evictor;
+                    if(e != null)
+                        sink.accept(resident(e));
+                } catch (RuntimeException ex) {
+                    java.util.logging.Logger.getLogger(DispatchMetrics.class.getName()).log(java.util.logging.Level.WARNING, null, ex);
+                }
+            }, interval, interval, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Defines the evictor of the host: the loaded plugin files are then exposed through JMX and written with the periodic summaries
+     * @param evictor Corresponds to the evictor of the host
+     */
+    void setEvictor(PluginEvictor evictor) {
+        this.evictor = evictor;
+    }
+
+    /**
+     * Defines the routes of the contexts cached by the host: their hits and misses are then exposed through JMX
+     * @param routes Corresponds to the routes of the contexts cached by the host
+     */
+    void setRoutes(RoutingCache routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Stops the periodic summaries and removes the JMX view
+     */
+    synchronized void shutdown() {
+        if(timer != null){
+            timer.shutdownNow();
+            timer = null;
+        }
+        if(registered){
+            try {
+                java.lang.management.ManagementFactory.getPlatformMBeanServer().unregisterMBean(new javax.management.ObjectName(OBJECT_NAME));
+            } catch (javax.management.JMException ex) {}
+            registered = false;
+        }
+    }
+
+    /**
+     * Returns the summary of the metrics: the slowest actions (99th percentile of the execution time) first
+     * @return Returns the lines of the summary (empty if nothing has been measured)
+     */
+    java.util.List<String> summary() {
+        java.util.List<Line> lines = lines();
+        java.util.List<String> list = new java.util.ArrayList<>();
+        if(lines.isEmpty())
+            return list;
+        lines.sort((a, b) -> Long.compare(b.stats.execution.percentile(99), a.stats.execution.percentile(99)));
+        list.add("JavaPlugin metrics (" + getDeliveries() + " measured deliveries, sampling 1/" + sampling + ", " + getErrors() + " error(s)):");
+        for(int i = 0; i < lines.size() && i < SUMMARY_LINES; i++)
+            list.add("  " + lines.get(i));
+        return list;
+    }
+
+    /**
+     * Returns the execution times of the callbacks of an event type, all plugin files and actions together
+     * @param type Corresponds to the type of the event
+     * @return Returns the execution times of the callbacks (a copy)
+     */
+    Histogram execution(EventType type) {
+        Histogram histogram = new Histogram();
+        for(Line line : lines()){
+            if(line.type == type)
+                histogram.add(line.stats.execution);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the times spent in the queue by the events of a type, all plugin files and actions together
+     * @param type Corresponds to the type of the event
+     * @return Returns the times spent in the queue (a copy)
+     */
+    Histogram queueWait(EventType type) {
+        Histogram histogram = new Histogram();
+        for(Line line : lines()){
+            if(line.type == type)
+                histogram.add(line.stats.wait);
+        }
+        return histogram;
+    }
+
+    @Override
+    public int getSampling() {
+        return sampling;
+    }
+
+    @Override
+    public long getDeliveries() {
+        long count = 0;
+        for(Line line : lines())
+            count += line.stats.execution.count();
+        return count;
+    }
+
+    @Override
+    public long getErrors() {
+        long count = 0;
+        for(Line line : lines())
+            count += line.stats.errors.sum();
+        return count;
+    }
+
+    @Override
+    public long getSlowCallbacks() {
+        long count = 0;
+        for(Line line : lines())
+            count += line.stats.slow.sum();
+        return count;
+    }
+
+    @Override
+    public long getInterruptedCallbacks() {
+        long count = 0;
+        for(Line line : lines())
+            count += line.stats.interrupted.sum();
+        return count;
+    }
+
+    @Override
+    public long getAllocatedBytesPerDelivery() {
+        long bytes = 0;
+        long count = 0;
+        for(Line line : lines()){
+            bytes += line.stats.allocated.sum();
+            count += line.stats.allocations.sum();
+        }
+        return (count == 0) ? -1 : bytes / count;
+    }
+
+    @Override
+    public String[] getPluginFiles() {
+        return stats.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public int getResidentPlugins() {
+        PluginEvictor e = evictor;
+        return (e == null) ? -1 : e.resident();
+    }
+
+    @Override
+    public long getEvictedPlugins() {
+        PluginEvictor e = evictor;
+        return (e == null) ? -1 : e.evicted();
+    }
+
+    @Override
+    public long getEstimatedClassBytes() {
+        PluginEvictor e = evictor;
+        return (e == null) ? -1 : e.estimatedBytes();
+    }
+
+    @Override
+    public int getRoutes() {
+        RoutingCache r = routes;
+        return (r == null) ? -1 : r.size();
+    }
+
+    @Override
+    public long getRouteHits() {
+        RoutingCache r = routes;
+        return (r == null) ? -1 : r.hits();
+    }
+
+    @Override
+    public long getRouteMisses() {
+        RoutingCache r = routes;
+        return (r == null) ? -1 : r.misses();
+    }
+
+    @Override
+    public long getMetaspaceUsed() {
+        return PluginEvictor.metaspaceUsed();
+    }
+
+    @Override
+    public String[] getReport() {
+        java.util.List<Line> lines = lines();
+        String[] report = new String[lines.size()];
+        for(int i = 0; i < report.length; i++)
+            report[i] = lines.get(i).toString();
+        return report;
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Removes the statistics of a plugin file (when it is unloaded or replaced by a new version)
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void remove(String pluginFile) {
+        stats.remove((pluginFile == null) ? "" : pluginFile);
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the line of the periodic summary about the loaded plugin files and the memory
+     * @param evictor Corresponds to the evictor of the host
+     * @return Returns the line about the loaded plugin files
+     */
+    private static String resident(PluginEvictor evictor) {
+        long metaspace = PluginEvictor.metaspaceUsed();
+        return "JavaPlugin: " + evictor.resident() + " plugin file(s) resident (~" + evictor.estimatedBytes() / 1024 + " KB of classes), " + evictor.evicted() + " evicted, heap used " + PluginEvictor.heapUsed() / (1024 * 1024) + " MB" + ((metaspace < 0) ? "" : ", metaspace used " + metaspace / (1024 * 1024) + " MB");
+    }
+
+    /**
+     * Returns the statistics of a plugin file, an action and an event type (they are created the first time)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     * @return Returns the statistics
+     */
+    private Stats stats(String pluginFile, Object target, EventType type) {
+        String file = (pluginFile == null) ? "" : pluginFile;
+        java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicReferenceArray<Stats>> byAction = stats.get(file);
+        if(byAction == null)
+            byAction = stats.computeIfAbsent(file, f -> new java.util.concurrent.ConcurrentHashMap<>());
+        String action = target.getClass().getName();
+        java.util.concurrent.atomic.AtomicReferenceArray<Stats> byType = byAction.get(action);
+        if(byType == null)
+            byType = byAction.computeIfAbsent(action, a -> new java.util.concurrent.atomic.AtomicReferenceArray<>(EventType.values().length));
+        Stats s = byType.get(type.ordinal());
+        if(s == null){
+            byType.compareAndSet(type.ordinal(), null, new Stats());
+            s = byType.get(type.ordinal());
+        }
+        return s;
+    }
+
+    /**
+     * Returns all the statistics with their plugin file, action and event type
+     * @return Returns all the statistics
+     */
+    private java.util.List<Line> lines() {
+        java.util.List<Line> lines = new java.util.ArrayList<>();
+        for(java.util.Map.Entry<String, java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicReferenceArray<Stats>>> file : stats.entrySet()){
+            for(java.util.Map.Entry<String, java.util.concurrent.atomic.AtomicReferenceArray<Stats>> action : file.getValue().entrySet()){
+                for(EventType type : EventType.values()){
+                    Stats s = action.getValue().get(type.ordinal());
+                    if(s != null)
+                        lines.add(new Line(file.getKey(), action.getKey(), type, s));
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the bean which measures the memory allocated by a thread
+     * @return Returns the bean, or null if the JVM cannot measure the allocations
+     */
+    private static com.sun.management.ThreadMXBean allocations() {
+        try {
+            java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+            if(bean instanceof com.sun.management.ThreadMXBean){
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+                if(hotspot.isThreadAllocatedMemorySupported()){
+                    if(!hotspot.isThreadAllocatedMemoryEnabled())
+                        hotspot.setThreadAllocatedMemoryEnabled(true);
+                    return hotspot;
+                }
+            }
+        } catch (LinkageError | RuntimeException ex) {
+            java.util.logging.Logger.getLogger(DispatchMetrics.class.getName()).log(java.util.logging.Level.WARNING, "Unable to measure the allocations", ex);
+        }
+        return null;
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents the statistics of a plugin file, an action and an event type
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Stats {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the time spent in the queue
+         */
+        private final Histogram wait = new Histogram();
+
+        /**
+         * Corresponds to the execution time of the callback
+         */
+        private final Histogram execution = new Histogram();
+
+        /**
+         * Corresponds to the number of callbacks which threw an exception
+         */
+        private final java.util.concurrent.atomic.LongAdder errors = new java.util.concurrent.atomic.LongAdder();
+
+        /**
+         * Corresponds to the number of callbacks which passed the soft deadline of the watchdog
+         */
+        private final java.util.concurrent.atomic.LongAdder slow = new java.util.concurrent.atomic.LongAdder();
+
+        /**
+         * Corresponds to the number of callbacks interrupted by the watchdog
+         */
+        private final java.util.concurrent.atomic.LongAdder interrupted = new java.util.concurrent.atomic.LongAdder();
+
+        /**
+         * Corresponds to the memory (in bytes) allocated by the measured callbacks
+         */
+        private final java.util.concurrent.atomic.LongAdder allocated = new java.util.concurrent.atomic.LongAdder();
+
+        /**
+         * Corresponds to the number of callbacks whose allocations have been measured
+         */
+        private final java.util.concurrent.atomic.LongAdder allocations = new java.util.concurrent.atomic.LongAdder();
+
+
+
+    }
+
+    /**
+     * This class represents a line of a report
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Line {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the path of the plugin file
+         */
+        private final String pluginFile;
+
+        /**
+         * Corresponds to the action (class of the EventManager)
+         */
+        private final String action;
+
+        /**
+         * Corresponds to the type of the event
+         */
+        private final EventType type;
+
+        /**
+         * Corresponds to the statistics
+         */
+        private final Stats stats;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Line
+         * @param pluginFile Corresponds to the path of the plugin file
+         * @param action Corresponds to the action (class of the EventManager)
+         * @param type Corresponds to the type of the event
+         * @param stats Corresponds to the statistics
+         */
+        private Line(String pluginFile, String action, EventType type, Stats stats) {
+            this.pluginFile = pluginFile;
+            this.action = action;
+            this.type = type;
+            this.stats = stats;
+        }
+
+
+
+    //METHODE PUBLIC
+        /**
+         * Returns the line of the report
+         * @return Returns the line of the report
+         */
+        @Override
+        public String toString() {
+            long count = stats.allocations.sum();
+            return new java.io.File(pluginFile).getName() + " | " + action + " | " + type
+                    + " | n=" + stats.execution.count()
+                    + " exec p50=" + micros(stats.execution.percentile(50)) + " p99=" + micros(stats.execution.percentile(99)) + " max=" + micros(stats.execution.max())
+                    + " | wait p99=" + micros(stats.wait.percentile(99)) + " max=" + micros(stats.wait.max())
+                    + ((count == 0) ? "" : " | alloc=" + (stats.allocated.sum() / count) + "B/op")
+                    + " | errors=" + stats.errors.sum() + " slow=" + stats.slow.sum() + " interrupted=" + stats.interrupted.sum();
+        }
+
+        /**
+         * Returns a duration in microseconds
+         * @param nanos Corresponds to the duration in nanoseconds
+         * @return Returns the duration in microseconds (with its unit)
+         */
+        private static String micros(long nanos) {
+            return (nanos / 1000) + "us";
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
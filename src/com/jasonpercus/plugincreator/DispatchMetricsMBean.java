@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This interface represents the JMX view (com.jasonpercus.plugincreator:type=DispatchMetrics) of the metrics of the deliveries of the events to the hosted plugins. It must be public to be exposed by JMX
+ * @author JasonPercus
+ * @version 1.0
+ */
+public interface DispatchMetricsMBean {
+
+
+
+//METHODES PUBLICS
+    /**
+     * Returns the sampling of the deliveries (1 delivery out of N is measured, 0 if the metrics are disabled)
+     * @return Returns the sampling of the deliveries
+     */
+    int getSampling();
+
+    /**
+     * Returns the number of measured deliveries
+     * @return Returns the number of measured deliveries
+     */
+    long getDeliveries();
+
+    /**
+     * Returns the number of callbacks which threw an exception (all of them are counted, whatever the sampling)
+     * @return Returns the number of callbacks which threw an exception
+     */
+    long getErrors();
+
+    /**
+     * Returns the number of callbacks which passed the soft deadline of the watchdog
+     * @return Returns the number of slow callbacks
+     */
+    long getSlowCallbacks();
+
+    /**
+     * Returns the number of callbacks interrupted by the watchdog (hard deadline)
+     * @return Returns the number of interrupted callbacks
+     */
+    long getInterruptedCallbacks();
+
+    /**
+     * Returns the mean of the memory allocated by a measured callback (javaplugin.metrics.allocation)
+     * @return Returns the mean number of bytes allocated by a callback, or -1 if the allocations are not measured
+     */
+    long getAllocatedBytesPerDelivery();
+
+    /**
+     * Returns the plugin files which have received events
+     * @return Returns the plugin files which have received events
+     */
+    String[] getPluginFiles();
+
+    /**
+     * Returns the number of loaded plugin files
+     * @return Returns the number of loaded plugin files, or -1 if they are not known
+     */
+    int getResidentPlugins();
+
+    /**
+     * Returns the number of plugin files unloaded because they were unused (javaplugin.evict.*)
+     * @return Returns the number of evicted plugin files, or -1 if they are not known
+     */
+    long getEvictedPlugins();
+
+    /**
+     * Returns the estimated size (in bytes, uncompressed) of the classes of the loaded plugin files
+     * @return Returns the estimated size of the classes of the loaded plugin files, or -1 if it is not known
+     */
+    long getEstimatedClassBytes();
+
+    /**
+     * Returns the number of contexts whose route (plugin file and action) is cached
+     * @return Returns the number of cached routes, or -1 if they are not known
+     */
+    int getRoutes();
+
+    /**
+     * Returns the number of events whose route was found in the cache (the settings of the action were not parsed)
+     * @return Returns the number of route hits, or -1 if they are not known
+     */
+    long getRouteHits();
+
+    /**
+     * Returns the number of events whose route was not in the cache (the settings of the action were parsed)
+     * @return Returns the number of route misses, or -1 if they are not known
+     */
+    long getRouteMisses();
+
+    /**
+     * Returns the used metaspace (in bytes)
+     * @return Returns the used metaspace, or -1 if the JVM has no metaspace
+     */
+    long getMetaspaceUsed();
+
+    /**
+     * Returns one line per plugin file, action and event type: the number of measured deliveries, the queue wait and the execution time (percentiles in microseconds), the memory allocated by a callback, the number of errors and the number of slow and interrupted callbacks
+     * @return Returns the report of the metrics
+     */
+    String[] getReport();
+
+    /**
+     * Clears the metrics
+     */
+    void reset();
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This enum represents the kind of threads on which the callbacks of the hosted plugins are executed
+ * @author JasonPercus
+ * @version 1.0
+ */
+enum DispatchMode {
+
+
+
+//VALUES
+    /**
+     * Each plugin file has a small pool of platform threads
+     */
+    PLATFORM,
+
+    /**
+     * Each delivery runs on a virtual thread (Java 21 or later). A callback which blocks does not hold an OS thread
+     */
+    VIRTUAL;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the method Thread.ofVirtual() (null if the JVM does not support virtual threads)
+     */
+    private static final java.lang.reflect.Method OF_VIRTUAL;
+
+    /**
+     * Corresponds to the method Thread.Builder.name(String, long)
+     */
+    private static final java.lang.reflect.Method NAME;
+
+    /**
+     * Corresponds to the method Thread.Builder.factory()
+     */
+    private static final java.lang.reflect.Method FACTORY;
+
+    /**
+     * Corresponds to the method Executors.newThreadPerTaskExecutor(ThreadFactory)
+     */
+    private static final java.lang.reflect.Method PER_TASK;
+
+
+
+//STATIC
+    static {
+        java.lang.reflect.Method ofVirtual = null, name = null, factory = null, perTask = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", java.util.concurrent.ThreadFactory.class);
+            ofVirtual.invoke(null);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | java.lang.reflect.InvocationTargetException | UnsupportedOperationException ex) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        PER_TASK = perTask;
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the mode corresponding to a name. The virtual mode falls back to the platform mode if the JVM does not support virtual threads (Java 8 for example)
+     * @param name Corresponds to the name of the mode (case insensitive)
+     * @return Returns the mode corresponding to the name
+     */
+    static DispatchMode parse(String name) {
+        if(name != null && VIRTUAL.name().equalsIgnoreCase(name.trim())){
+            if(isVirtualSupported())
+                return VIRTUAL;
+            java.util.logging.Logger.getLogger(DispatchMode.class.getName()).log(java.util.logging.Level.INFO, "Virtual threads are not supported by this JVM, the platform threads are used");
+        }
+        return PLATFORM;
+    }
+
+    /**
+     * Determines if the JVM supports virtual threads
+     * @return Returns true if the JVM supports virtual threads, otherwise false
+     */
+    static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread for each task
+     * @param prefix Corresponds to the prefix of the name of the threads
+     * @return Returns an executor which starts a new virtual thread for each task
+     * @throws UnsupportedOperationException If the JVM does not support virtual threads
+     */
+    static java.util.concurrent.ExecutorService newVirtualExecutor(String prefix) {
+        if(!isVirtualSupported())
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            return (java.util.concurrent.ExecutorService) PER_TASK.invoke(null, FACTORY.invoke(builder));
+        } catch (IllegalAccessException | java.lang.reflect.InvocationTargetException ex) {
+            throw new UnsupportedOperationException(ex);
+        }
+    }
+
+
+
+}
\ No newline at end of file
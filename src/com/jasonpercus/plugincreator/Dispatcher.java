@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.DidReceiveSettings;
+import com.jasonpercus.plugincreator.models.events.TitleParametersDidChange;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+
+
+
+/**
+ * This class represents the dispatcher of the events to the hosted plugins. Each plugin file has its own bounded executor, so a slow plugin cannot starve the others. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.dispatch.mode: platform (default) or virtual (Java 21 or later, falls back to platform otherwise)</li>
+ * <li>javaplugin.dispatch.threads: the number of threads per plugin file in platform mode (default 2)</li>
+ * <li>javaplugin.dispatch.queueSize: the maximum number of pending events per context (default 256)</li>
+ * <li>javaplugin.dispatch.maxPending: the maximum number of pending events per plugin file, all contexts together (default 1024)</li>
+ * <li>javaplugin.dispatch.overflow: drop-oldest (default), coalesce or block. With block, the thread which receives the events from Stream Deck waits until there is room: a slow plugin then delays the events of all the plugins</li>
+ * <li>javaplugin.coalesce.window: the time in milliseconds during which a willAppear, titleParametersDidChange, didReceiveSettings or deviceDidConnect event waits for a more recent one of the same kind (default 0: disabled)</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class Dispatcher {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the types of events which can be coalesced (only the latest pending one is delivered)
+     */
+    private static final java.util.Set<Class<?>> COALESCIBLE = new java.util.HashSet<>(java.util.Arrays.asList(WillAppear.class, TitleParametersDidChange.class, DidReceiveSettings.class, DeviceDidConnect.class));
+
+    /**
+     * Corresponds to the default maximum number of pending events per plugin file, all contexts together
+     */
+    private static final int MAX_PENDING = 1024;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the executors associated with their respective plugin file
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, PluginExecutor> executors = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the number of threads per plugin file (platform mode)
+     */
+    private final int threads;
+
+    /**
+     * Corresponds to the maximum number of pending events per context
+     */
+    private final int queueSize;
+
+    /**
+     * Corresponds to the maximum number of pending events per plugin file, all contexts together
+     */
+    private final int maxPending;
+
+    /**
+     * Corresponds to what a lane (or the executor of a plugin file) does when it is full
+     */
+    private final OverflowPolicy policy;
+
+    /**
+     * Corresponds to the kind of threads which execute the callbacks of the plugins
+     */
+    private final DispatchMode mode;
+
+    /**
+     * Corresponds to the time (in nanoseconds) during which a coalescible event waits for a more recent one (0 if the coalescing is disabled)
+     */
+    private final long window;
+
+    /**
+     * Corresponds to the timer which wakes up the lanes holding a coalescible event (null if the coalescing is disabled)
+     */
+    private final java.util.concurrent.ScheduledExecutorService timer;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a Dispatcher configured by the system properties
+     */
+    Dispatcher() {
+        this(DispatchMode.parse(System.getProperty("javaplugin.dispatch.mode")));
+    }
+
+    /**
+     * Create a Dispatcher configured by the system properties
+     * @param mode Corresponds to the kind of threads which execute the callbacks of the plugins
+     */
+    private Dispatcher(DispatchMode mode) {
+        this(Integer.getInteger("javaplugin.dispatch.threads", 2), Integer.getInteger("javaplugin.dispatch.queueSize", 256), Integer.getInteger("javaplugin.dispatch.maxPending", MAX_PENDING), OverflowPolicy.parse(System.getProperty("javaplugin.dispatch.overflow"), OverflowPolicy.DROP_OLDEST), mode, Long.getLong("javaplugin.coalesce.window", 0));
+    }
+
+    /**
+     * Create a Dispatcher which accepts at most 1024 pending events per plugin file
+     * @param threads Corresponds to the number of threads per plugin file (platform mode)
+     * @param queueSize Corresponds to the maximum number of pending events per context
+     * @param policy Corresponds to what a lane (or the executor of a plugin file) does when it is full
+     * @param mode Corresponds to the kind of threads which execute the callbacks of the plugins
+     * @param coalesceWindow Corresponds to the time (in milliseconds) during which a coalescible event waits for a more recent one (0 to disable the coalescing)
+     */
+    Dispatcher(int threads, int queueSize, OverflowPolicy policy, DispatchMode mode, long coalesceWindow) {
+        this(threads, queueSize, MAX_PENDING, policy, mode, coalesceWindow);
+    }
+
+    /**
+     * Create a Dispatcher
+     * @param threads Corresponds to the number of threads per plugin file (platform mode)
+     * @param queueSize Corresponds to the maximum number of pending events per context
+     * @param maxPending Corresponds to the maximum number of pending events per plugin file, all contexts together
+     * @param policy Corresponds to what a lane (or the executor of a plugin file) does when it is full
+     * @param mode Corresponds to the kind of threads which execute the callbacks of the plugins
+     * @param coalesceWindow Corresponds to the time (in milliseconds) during which a coalescible event waits for a more recent one (0 to disable the coalescing)
+     */
+    Dispatcher(int threads, int queueSize, int maxPending, OverflowPolicy policy, DispatchMode mode, long coalesceWindow) {
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.maxPending = maxPending;
+        this.policy = policy;
+        this.mode = mode;
+        this.window = java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Math.max(0, coalesceWindow));
+        if(this.window > 0){
+            java.util.concurrent.ScheduledThreadPoolExecutor t = new java.util.concurrent.ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+                Thread thread = new Thread(r, "JavaPlugin-Coalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            t.setRemoveOnCancelPolicy(true);
+            this.timer = t;
+        }else{
+            this.timer = null;
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Submits the delivery of an event to the executor of a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param context Corresponds to the context (or ID) of the action or null if the event has none
+     * @param target Corresponds to the EventManager which receives the event
+     * @param type Corresponds to the type of the event
+     * @param scope Corresponds to what the event is about (the context, the device...)
+     * @param task Corresponds to the delivery of the event
+     */
+    void dispatch(String pluginFile, Context context, Object target, Class<?> type, Object scope, Runnable task) {
+        PluginExecutor executor = executors.get(pluginFile);
+        if(executor == null)
+            executor = executors.computeIfAbsent(pluginFile, f -> new PluginExecutor(f, threads, queueSize, maxPending, policy, mode, timer));
+        executor.execute(context, target, type, scope, (window > 0 && COALESCIBLE.contains(type)) ? window : 0, task);
+    }
+
+    /**
+     * Returns the kind of threads which execute the callbacks of the plugins
+     * @return Returns the kind of threads which execute the callbacks of the plugins
+     */
+    DispatchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Releases the serial lanes of a context once their pending events have been executed (when it is no longer displayed)
+     * @param context Corresponds to the context (or ID) of the action
+     */
+    void retire(Context context) {
+        for(PluginExecutor executor : executors.values())
+            executor.retire(context);
+    }
+
+    /**
+     * Shuts down the executor of a plugin file (when it is unloaded)
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void shutdown(String pluginFile) {
+        PluginExecutor executor = executors.remove(pluginFile);
+        if(executor != null)
+            executor.shutdown();
+    }
+
+    /**
+     * Shuts down the executor of a plugin file and waits until its pending events have been executed (before its EventManagers are destroyed). The next events of this plugin file will use a new executor
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param timeout Corresponds to the maximum time to wait (in milliseconds)
+     * @return Returns true if the pending events have been executed, false if the timeout elapsed
+     */
+    boolean shutdown(String pluginFile, long timeout) {
+        PluginExecutor executor = executors.remove(pluginFile);
+        if(executor == null)
+            return true;
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Shuts down all the executors
+     */
+    void shutdown() {
+        for(String file : executors.keySet())
+            shutdown(file);
+        if(timer != null)
+            timer.shutdown();
+    }
+
+    /**
+     * Returns the number of pending events of a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the number of pending events of the plugin file
+     */
+    int queueDepth(String pluginFile) {
+        PluginExecutor executor = executors.get(pluginFile);
+        return (executor == null) ? 0 : executor.queueDepth();
+    }
+
+    /**
+     * Returns the number of events of a plugin file dropped or refused because its queue was full
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the number of events of the plugin file dropped or refused
+     */
+    long rejected(String pluginFile) {
+        PluginExecutor executor = executors.get(pluginFile);
+        return (executor == null) ? 0 : executor.rejected();
+    }
+
+    /**
+     * Returns the number of events of a plugin file replaced by a more recent one (by the coalescing or because its queue was full)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the number of events of the plugin file replaced by a more recent one
+     */
+    long coalesced(String pluginFile) {
+        PluginExecutor executor = executors.get(pluginFile);
+        return (executor == null) ? 0 : executor.coalesced();
+    }
+
+    /**
+     * Returns the total number of pending events
+     * @return Returns the total number of pending events
+     */
+    int queueDepth() {
+        int depth = 0;
+        for(PluginExecutor executor : executors.values())
+            depth += executor.queueDepth();
+        return depth;
+    }
+
+    /**
+     * Returns the total number of events replaced by a more recent one (by the coalescing or because a queue was full)
+     * @return Returns the total number of events replaced by a more recent one
+     */
+    long coalesced() {
+        long count = 0;
+        for(PluginExecutor executor : executors.values())
+            count += executor.coalesced();
+        return count;
+    }
+
+    /**
+     * Returns the total number of events dropped or refused
+     * @return Returns the total number of events dropped or refused
+     */
+    long rejected() {
+        long count = 0;
+        for(PluginExecutor executor : executors.values())
+            count += executor.rejected();
+        return count;
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.JsonObject;
+import com.jasonpercus.plugincreator.models.events.Event;
+
+
+
+/**
+ * This class records the events received by the host in a trace file (one json object per line: time, type, routing and arguments of the event), so that they can be replayed later by the EventReplayer of tools/ (a development tool which is not in the plugin jar). An event is converted to json when it is recorded, before it is delivered (a plugin may modify it afterwards), then written by a background thread through a bounded buffer: recording never waits for the disk, an event which does not fit in the buffer is dropped and counted. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.trace.file: the path of the trace file (not set by default: nothing is recorded)</li>
+ * <li>javaplugin.trace.bufferSize: the maximum number of events waiting to be written (default 8192)</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class EventRecorder {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the lines of the events waiting to be written (null if nothing is recorded)
+     */
+    private final java.util.concurrent.BlockingQueue<String> queue;
+
+    /**
+     * Corresponds to the trace file (null if nothing is recorded)
+     */
+    private final java.io.File file;
+
+    /**
+     * Corresponds to the origin of the times of the trace (System.nanoTime())
+     */
+    private final long origin = System.nanoTime();
+
+    /**
+     * Corresponds to the number of events dropped because the buffer was full
+     */
+    private final java.util.concurrent.atomic.LongAdder dropped = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Corresponds to the number of events written in the trace file
+     */
+    private final java.util.concurrent.atomic.AtomicLong written = new java.util.concurrent.atomic.AtomicLong();
+
+    /**
+     * Corresponds to the thread which writes the trace file (null if nothing is recorded)
+     */
+    private final Thread writer;
+
+    /**
+     * Determines if the recorder is stopped
+     */
+    private volatile boolean stopped;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create an EventRecorder configured by the system properties javaplugin.trace.file and javaplugin.trace.bufferSize
+     */
+    EventRecorder() {
+        this(System.getProperty("javaplugin.trace.file"), Integer.getInteger("javaplugin.trace.bufferSize", 8192));
+    }
+
+    /**
+     * Create an EventRecorder
+     * @param path Corresponds to the path of the trace file (null or empty: nothing is recorded)
+     * @param bufferSize Corresponds to the maximum number of events waiting to be written
+     */
+    EventRecorder(String path, int bufferSize) {
+        if(path == null || path.trim().isEmpty()){
+            this.file = null;
+            this.queue = null;
+            this.writer = null;
+        }else{
+            this.file = new java.io.File(path.trim());
+            this.queue = new java.util.concurrent.ArrayBlockingQueue<>(Math.max(16, bufferSize));
+            this.writer = new Thread(this::write, "JavaPlugin-Recorder");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if the events are recorded
+     * @return Returns true if the events are recorded, otherwise false
+     */
+    boolean isEnabled() {
+        return queue != null;
+    }
+
+    /**
+     * Records an event: it is converted to json now, then written later (never blocks: the event is dropped if the buffer is full)
+     * @param type Corresponds to the type of the event
+     * @param event Corresponds to the Stream Deck event
+     * @param pluginFile Corresponds to the plugin file to which the event is routed (null if it is broadcast)
+     * @param action Corresponds to the action to which the event is routed (null if it is broadcast)
+     * @param context Corresponds to the context (or ID) of the action (null if the event has none)
+     * @param text Corresponds to the textual argument of the event (settings, title, device or application, null if there is none)
+     * @param extra Corresponds to the structured argument of the event (payload, title parameters or device infos, null if there is none)
+     */
+    void record(EventType type, Event event, String pluginFile, String action, Object context, String text, Object extra) {
+        if(queue == null || stopped)
+            return;
+        String line;
+        try {
+            line = toJson(System.nanoTime() - origin, type, event, pluginFile, action, context, text, extra);
+        } catch (RuntimeException ex) {
+            java.util.logging.Logger.getLogger(EventRecorder.class.getName()).log(java.util.logging.Level.WARNING, "Unable to record the event " + type, ex);
+            return;
+        }
+        if(!queue.offer(line))
+            dropped.increment();
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full
+     * @return Returns the number of events dropped
+     */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events written in the trace file
+     * @return Returns the number of events written
+     */
+    long written() {
+        return written.get();
+    }
+
+    /**
+     * Stops the recorder: the events waiting in the buffer are written, then the trace file is closed
+     * @param timeoutMs Corresponds to the maximum time to wait for the writing (in milliseconds)
+     */
+    void shutdown(long timeoutMs) {
+        if(writer == null || stopped)
+            return;
+        stopped = true;
+        writer.interrupt();
+        try {
+            writer.join(timeoutMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Writes the recorded events in the trace file until the recorder is stopped
+     */
+    private void write() {
+        java.io.File parent = file.getAbsoluteFile().getParentFile();
+        if(parent != null && !parent.isDirectory())
+            parent.mkdirs();
+        try (java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(file, true), java.nio.charset.StandardCharsets.UTF_8), 64 * 1024)) {
+            java.util.List<String> batch = new java.util.ArrayList<>();
+            while(!stopped || !queue.isEmpty()){
+                String first = null;
+                if(!stopped){
+                    try {
+                        first = queue.take();
+                    } catch (InterruptedException ex) {
+                        if(!stopped)
+                            continue;
+                    }
+                }
+                if(first != null)
+                    batch.add(first);
+                queue.drainTo(batch);
+                for(String line : batch){
+                    out.write(line);
+                    out.write('\n');
+                    written.incrementAndGet();
+                }
+                batch.clear();
+                if(queue.isEmpty())
+                    out.flush();
+            }
+        } catch (java.io.IOException ex) {
+            stopped = true;
+            queue.clear();
+            java.util.logging.Logger.getLogger(EventRecorder.class.getName()).log(java.util.logging.Level.WARNING, "Unable to write the trace file " + file, ex);
+        }
+    }
+
+
+
+    /**
+     * Returns the line of the trace file of an event
+     * @param time Corresponds to the time of the event (in nanoseconds since the start of the recorder)
+     * @param type Corresponds to the type of the event
+     * @param event Corresponds to the Stream Deck event
+     * @param pluginFile Corresponds to the plugin file to which the event is routed (null if it is broadcast)
+     * @param action Corresponds to the action to which the event is routed (null if it is broadcast)
+     * @param context Corresponds to the context (or ID) of the action (null if the event has none)
+     * @param text Corresponds to the textual argument of the event (null if there is none)
+     * @param extra Corresponds to the structured argument of the event (null if there is none)
+     * @return Returns the line of the trace file (a json object)
+     */
+    private static String toJson(long time, EventType type, Event event, String pluginFile, String action, Object context, String text, Object extra) {
+        JsonObject o = new JsonObject();
+        o.addProperty("t", time);
+        o.addProperty("type", type.name());
+        if(event != null)
+            o.addProperty("class", event.getClass().getName());
+        if(pluginFile != null)
+            o.addProperty("file", pluginFile);
+        if(action != null)
+            o.addProperty("action", action);
+        if(context != null)
+            o.add("context", GsonCache.SHARED.toJsonTree(context));
+        if(text != null)
+            o.addProperty("text", text);
+        if(extra != null)
+            o.add("extra", GsonCache.SHARED.toJsonTree(extra));
+        if(event != null)
+            o.add("event", GsonCache.SHARED.toJsonTree(event));
+        return GsonCache.SHARED.toJson(o);
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.events.ApplicationDidLaunch;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidTerminate;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.DeviceDidDisconnect;
+import com.jasonpercus.plugincreator.models.events.DidReceiveGlobalSettings;
+import com.jasonpercus.plugincreator.models.events.DidReceiveSettings;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.KeyUp;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear;
+import com.jasonpercus.plugincreator.models.events.SendToPlugin;
+import com.jasonpercus.plugincreator.models.events.SendToPropertyInspector;
+import com.jasonpercus.plugincreator.models.events.SystemDidWakeUp;
+import com.jasonpercus.plugincreator.models.events.TitleParametersDidChange;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import com.jasonpercus.plugincreator.models.events.WillDisappear;
+
+
+
+/**
+ * This enum represents the types of the Stream Deck events: it is the routing table of the host (type of each event class, built once). Its ordinal is used as an index, so that an event type is found without any allocation
+ * @author JasonPercus
+ * @version 1.0
+ */
+enum EventType {
+
+
+
+//VALUES
+    KEY_DOWN(KeyDown.class),
+    KEY_UP(KeyUp.class),
+    WILL_APPEAR(WillAppear.class),
+    WILL_DISAPPEAR(WillDisappear.class),
+    TITLE_PARAMETERS_DID_CHANGE(TitleParametersDidChange.class),
+    DID_RECEIVE_SETTINGS(DidReceiveSettings.class),
+    DID_RECEIVE_GLOBAL_SETTINGS(DidReceiveGlobalSettings.class),
+    DEVICE_DID_CONNECT(DeviceDidConnect.class),
+    DEVICE_DID_DISCONNECT(DeviceDidDisconnect.class),
+    APPLICATION_DID_LAUNCH(ApplicationDidLaunch.class),
+    APPLICATION_DID_TERMINATE(ApplicationDidTerminate.class),
+    SYSTEM_DID_WAKE_UP(SystemDidWakeUp.class),
+    PROPERTY_INSPECTOR_DID_APPEAR(PropertyInspectorDidAppear.class),
+    PROPERTY_INSPECTOR_DID_DISAPPEAR(PropertyInspectorDidDisappear.class),
+    SEND_TO_PLUGIN(SendToPlugin.class),
+    SEND_TO_PROPERTY_INSPECTOR(SendToPropertyInspector.class),
+
+    /**
+     * Any other event (unknown to this version of the host)
+     */
+    OTHER(null);
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the type of each event class
+     */
+    private static final java.util.Map<Class<?>, EventType> BY_CLASS = new java.util.IdentityHashMap<>();
+
+    /**
+     * Corresponds to the type of any class of event, computed once per class (a subclass of a known event has the type of this event)
+     */
+    private static final ClassValue<EventType> TYPES = new ClassValue<EventType>() {
+        @Override
+        protected EventType computeValue(Class<?> eventClass) {
+            for(Class<?> c = eventClass; c != null; c = c.getSuperclass()){
+                EventType type = BY_CLASS.get(c);
+                if(type != null)
+                    return type;
+            }
+            return OTHER;
+        }
+    };
+
+
+
+//ATTRIBUT
+    /**
+     * Corresponds to the class of the event (null for {@link #OTHER})
+     */
+    private final Class<?> eventClass;
+
+
+
+//STATIC
+    static {
+        for(EventType type : values()){
+            if(type.eventClass != null)
+                BY_CLASS.put(type.eventClass, type);
+        }
+    }
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create an EventType
+     * @param eventClass Corresponds to the class of the event
+     */
+    EventType(Class<?> eventClass) {
+        this.eventClass = eventClass;
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the class of the event
+     * @return Returns the class of the event (null for {@link #OTHER})
+     */
+    Class<?> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Returns the type of an event class
+     * @param eventClass Corresponds to the class of the event
+     * @return Returns the type of the event class ({@link #OTHER} if it is unknown)
+     */
+    static EventType of(Class<?> eventClass) {
+        return (eventClass == null) ? OTHER : TYPES.get(eventClass);
+    }
+
+
+
+}
\ No newline at end of file
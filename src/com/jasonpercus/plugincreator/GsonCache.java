@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.jasonpercus.plugincreator.models.Payload;
+import com.jasonpercus.plugincreator.models.TitleParameters;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidLaunch;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidTerminate;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.DeviceDidDisconnect;
+import com.jasonpercus.plugincreator.models.events.DidReceiveGlobalSettings;
+import com.jasonpercus.plugincreator.models.events.DidReceiveSettings;
+import com.jasonpercus.plugincreator.models.events.Event;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.KeyUp;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear;
+import com.jasonpercus.plugincreator.models.events.SendToPlugin;
+import com.jasonpercus.plugincreator.models.events.SendToPropertyInspector;
+import com.jasonpercus.plugincreator.models.events.SystemDidWakeUp;
+import com.jasonpercus.plugincreator.models.events.TitleParametersDidChange;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import com.jasonpercus.plugincreator.models.events.WillDisappear;
+
+
+
+/**
+ * This class represents the Gson instance shared by the host. A Gson instance is thread-safe and keeps its type adapters, so the reflection on the models is done only once instead of once per event
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class GsonCache {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the models of the Stream Deck events whose type adapters are built in advance
+     */
+    private static final Class<?>[] MODELS = new Class<?>[]{
+        Event.class, Payload.class, TitleParameters.class,
+        ApplicationDidLaunch.class, ApplicationDidTerminate.class, DeviceDidConnect.class, DeviceDidConnect.DeviceInfo.class, DeviceDidDisconnect.class,
+        DidReceiveGlobalSettings.class, DidReceiveSettings.class, KeyDown.class, KeyUp.class,
+        PropertyInspectorDidAppear.class, PropertyInspectorDidDisappear.class, SendToPlugin.class, SendToPropertyInspector.class,
+        SystemDidWakeUp.class, TitleParametersDidChange.class, WillAppear.class, WillDisappear.class
+    };
+
+    /**
+     * Corresponds to the Gson instance shared by the host (thread-safe)
+     */
+    static final Gson SHARED = new Gson();
+
+
+
+//CONSTRUCTOR
+    /**
+     * Prevents the instantiation of this class
+     */
+    private GsonCache() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Builds in advance the type adapters of the models of the Stream Deck events and of the given classes
+     * @param others Corresponds to other classes used by the host
+     */
+    static void warm(Class<?>... others) {
+        for(Class<?> c : MODELS)
+            SHARED.getAdapter(c);
+        for(Class<?> c : others)
+            SHARED.getAdapter(c);
+    }
+
+    /**
+     * Returns a new GsonBuilder for a hosted EventManager. The type adapters of the shared Gson instance are not given to the Gson instances created by a hosted EventManager: it may configure its builder (naming policy, exclusion strategy, type adapter...) and the adapters built by the host would then ignore its configuration. A GsonBuilder is mutable, so each delivery gets its own
+     * @return Returns a new GsonBuilder for a hosted EventManager
+     */
+    static GsonBuilder builder() {
+        return new GsonBuilder();
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents a histogram of durations (in nanoseconds) with power-of-two buckets. Recording a value allocates nothing and takes no lock. The percentiles are approximated by the upper bound of their bucket (at most twice the real value)
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class Histogram {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the number of buckets (the bucket n contains the values between 2^(n-1) and 2^n - 1)
+     */
+    private static final int BUCKETS = 64;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the number of values of each bucket
+     */
+    private final java.util.concurrent.atomic.AtomicLongArray counts = new java.util.concurrent.atomic.AtomicLongArray(BUCKETS);
+
+    /**
+     * Corresponds to the sum of the values
+     */
+    private final java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Corresponds to the greatest value
+     */
+    private final java.util.concurrent.atomic.AtomicLong max = new java.util.concurrent.atomic.AtomicLong();
+
+
+
+//METHODE PUBLIC
+    /**
+     * Records a value
+     * @param nanos Corresponds to the value (in nanoseconds)
+     */
+    void record(long nanos) {
+        if(nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos)));
+        sum.add(nanos);
+        long m = max.get();
+        while(nanos > m && !max.compareAndSet(m, nanos))
+            m = max.get();
+    }
+
+    /**
+     * Adds the values of another histogram to this one
+     * @param other Corresponds to the other histogram
+     */
+    void add(Histogram other) {
+        for(int i = 0; i < BUCKETS; i++){
+            long c = other.counts.get(i);
+            if(c > 0)
+                counts.addAndGet(i, c);
+        }
+        sum.add(other.sum.sum());
+        long value = other.max.get();
+        long m = max.get();
+        while(value > m && !max.compareAndSet(m, value))
+            m = max.get();
+    }
+
+    /**
+     * Returns the number of recorded values
+     * @return Returns the number of recorded values
+     */
+    long count() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Returns the mean of the recorded values
+     * @return Returns the mean of the recorded values (in nanoseconds) or 0 if there is none
+     */
+    long mean() {
+        long count = count();
+        return (count == 0) ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * Returns the greatest recorded value
+     * @return Returns the greatest recorded value (in nanoseconds)
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns an approximation (upper bound of its bucket) of a percentile of the recorded values
+     * @param percentile Corresponds to the percentile (between 0 and 100)
+     * @return Returns the approximation of the percentile (in nanoseconds) or 0 if there is no value
+     */
+    long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if(count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if(seen >= rank)
+                return Math.min(max.get(), (i == 0) ? 0 : (i >= 63) ? Long.MAX_VALUE : (1L << i) - 1);
+        }
+        return max.get();
+    }
+
+
+
+}
\ No newline at end of file
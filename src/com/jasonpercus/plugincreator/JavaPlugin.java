@@ -111,6 +111,7 @@ public final class JavaPlugin extends com.jasonpercus.plugincreator.PluginCreato
                 String extension = File.getExtension(file);
                 if(extension != null && extension.equals("exe")){
                     //Plugin Init
+                    PluginWarmup.start();
                     com.jasonpercus.plugincreator.PluginCreator.register(args);
                 }
                 if(extension != null && extension.equals("jar")){
@@ -127,6 +128,7 @@ public final class JavaPlugin extends com.jasonpercus.plugincreator.PluginCreato
             }
         }else{
             //Plugin Init
+            PluginWarmup.start();
             com.jasonpercus.plugincreator.PluginCreator.register(args);
         }
     }
@@ -42,16 +42,75 @@ import com.jasonpercus.util.async.Async;
  * @author JasonPercus
  * @version 1.0
  */
-@SuppressWarnings("NestedSynchronizedStatement")
 class Manager extends EventManager {
 
     
     
 //ATTRIBUT
     /**
-     * Corresponds to the list of plugins (files) associated with their respective Manager
+     * Corresponds to the list of plugins (files) associated with their respective Manager (lock-free for reads)
      */
-    private final java.util.HashMap<String, EventManager[]> LOADED = new java.util.HashMap<>();
+    private final PluginRegistry LOADED = new PluginRegistry();
+    
+    /**
+     * Corresponds to the routing (plugin file and action name) of each context
+     */
+    private final RoutingCache ROUTES = new RoutingCache();
+    
+    /**
+     * Corresponds to the dispatcher of the events to the plugins (one bounded executor per plugin file, one serial lane per context)
+     */
+    private final Dispatcher DISPATCHER = new Dispatcher();
+    
+    /**
+     * Corresponds to the on-disk cache of the EventManager classes found in each plugin file (avoids scanning the plugin files at each start)
+     */
+    private final PluginMetadataCache METADATA = new PluginMetadataCache();
+    
+    /**
+     * Corresponds to the background loader of the plugin files (one loading per plugin file, the events are buffered meanwhile)
+     */
+    private final PluginLoader LOADER = new PluginLoader(LOADED);
+    
+    /**
+     * Corresponds to the life of the loaded plugin files (visible contexts, changes on the disk)
+     */
+    private final PluginLifecycle LIFECYCLE = new PluginLifecycle(new PluginLifecycle.Listener() {
+        @Override
+        public void changed(String pluginFile) {
+            reload(pluginFile);
+        }
+
+        @Override
+        public void unused(String pluginFile) {
+            unload(pluginFile);
+        }
+    });
+    
+    /**
+     * Corresponds to the eviction of the plugin files which are unused and idle (or when the memory is running low)
+     */
+    private final PluginEvictor EVICTOR = new PluginEvictor(LOADED, LIFECYCLE, this::unload);
+    
+    /**
+     * Corresponds to the metrics of the deliveries (queue wait, execution time and errors per plugin file, action and event type)
+     */
+    private final DispatchMetrics METRICS = new DispatchMetrics();
+    
+    /**
+     * Corresponds to the watchdog of the callbacks (slow, hung or quarantined plugins)
+     */
+    private final Watchdog WATCHDOG = new Watchdog(METRICS, this::log);
+    
+    /**
+     * Corresponds to the recorder of the received events in a trace file (replayed by the EventReplayer of tools/)
+     */
+    private final EventRecorder RECORDER = new EventRecorder();
+    
+    /**
+     * Corresponds to the libraries shared by the plugins (parent of their class loaders)
+     */
+    private final SharedLibraries SHARED = new SharedLibraries();
     
     
     
@@ -60,26 +119,73 @@ class Manager extends EventManager {
      * Create a Manager
      */
     public Manager() {
+        Async.execute(() -> {
+            GsonCache.warm(Plugin.class);
+        });
     }
     
     
 
 //METHODE PUBLIC
+    /**
+     * When the EventManager is created. The metrics are exposed and the plugin files used recently are preloaded in the background (see {@link PluginWarmup})
+     */
+    @Override
+    public void onCreate() {
+        METRICS.setEvictor(EVICTOR);
+        METRICS.setRoutes(ROUTES);
+        METRICS.start(this::log);
+        if(!PluginWarmup.isEnabled())
+            return;
+        for (String file : PluginWarmup.recent()) {
+            if (new java.io.File(file).isFile()) {
+                LOADER.load(file, () -> {
+                    loadPlugin(file);
+                    if(PluginWarmup.isEventEnabled())
+                        warm(file);
+                });
+            }
+        }
+    }
+    
     /**
      * When the EventManager is destroyed. This happens before the app is closed.
      */
     @Override
     public void onDestroy() {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        m.onDestroy();
-                    }
-                }
-            }
+        long coalesced = DISPATCHER.coalesced();
+        if(coalesced > 0)
+            log("JavaPlugin: " + coalesced + " event(s) coalesced (not delivered because a more recent one replaced them)");
+        for (String line : METRICS.summary())
+            log(line);
+        if(SHARED.isEnabled())
+            log("JavaPlugin: " + SHARED.classes() + " shared class(es) used by the plugins, ~" + SHARED.savedBytes() / 1024 + " KB of classes not loaded again");
+        if(RECORDER.isEnabled())
+            log("JavaPlugin: " + RECORDER.written() + " event(s) recorded, " + RECORDER.dropped() + " dropped (buffer full)");
+        RECORDER.shutdown(5000);
+        METRICS.shutdown();
+        WATCHDOG.shutdown();
+        EVICTOR.shutdown();
+        LOADER.shutdown();
+        DISPATCHER.shutdown();
+        for (EventManager m : LOADED.all()) {
+            m.onDestroy();
+        }
+        for (String file : LOADED.files()) {
+            PluginRegistry.Entry entry = LOADED.remove(file);
+            if (entry != null)
+                close(file, entry.getLoader());
         }
+        LIFECYCLE.shutdown();
+        SHARED.close();
+    }
+    
+    /**
+     * Returns the metrics of the deliveries (used by the EventReplayer of tools/)
+     * @return Returns the metrics of the deliveries
+     */
+    DispatchMetrics metrics() {
+        return METRICS;
     }
     
     
@@ -92,35 +198,9 @@ class Manager extends EventManager {
      */
     @Override
     public void event(Event event, GsonBuilder builder) {
-        if(!(event instanceof ApplicationDidLaunch) && 
-                !(event instanceof ApplicationDidTerminate) && 
-                !(event instanceof DeviceDidConnect) && 
-                !(event instanceof DeviceDidDisconnect) && 
-                !(event instanceof DidReceiveGlobalSettings) && 
-                !(event instanceof DidReceiveSettings) && 
-                !(event instanceof KeyDown) && 
-                !(event instanceof KeyUp) && 
-                !(event instanceof PropertyInspectorDidAppear) && 
-                !(event instanceof PropertyInspectorDidDisappear) && 
-                !(event instanceof SendToPlugin) && 
-                !(event instanceof SendToPropertyInspector) && 
-                !(event instanceof SystemDidWakeUp) && 
-                !(event instanceof TitleParametersDidChange) && 
-                !(event instanceof WillAppear) && 
-                !(event instanceof WillDisappear)){
-            synchronized(LOADED){
-                for(java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()){
-                    EventManager[] managers = map.getValue();
-                    if(managers != null){
-                        for(EventManager m : managers){
-                            GsonBuilder b = new GsonBuilder();
-                            Async.execute(() -> {
-                                m.event(event, b);
-                            });
-                        }
-                    }
-                }
-            }
+        if(EventType.of(event.getClass()) == EventType.OTHER){
+            RECORDER.record(EventType.OTHER, event, null, null, null, null, null);
+            broadcast(null, null, event, null);
         }
     }
 
@@ -133,21 +213,14 @@ class Manager extends EventManager {
      */
     @Override
     public void didReceiveSettings(DidReceiveSettings event, Context context, String jsonSettings, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(jsonSettings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = refreshRoute(context, jsonSettings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.didReceiveSettings(event, context, jsonSettings, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.DID_RECEIVE_SETTINGS, event, file, name, context, jsonSettings, null);
+        LIFECYCLE.attach(file, context);
+        load(file);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.didReceiveSettings(event, context, jsonSettings, b)));
     }
 
     /**
@@ -158,19 +231,10 @@ class Manager extends EventManager {
      */
     @Override
     public void didReceiveGlobalSettings(DidReceiveGlobalSettings event, String jsonSettings, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(jsonSettings, Plugin.class);
-        String file = p.pluginFile;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.didReceiveGlobalSettings(event, jsonSettings, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        Plugin p = (jsonSettings == null) ? null : GsonCache.SHARED.fromJson(jsonSettings, Plugin.class);
+        String file = (p == null) ? null : p.pluginFile;
+        RECORDER.record(EventType.DID_RECEIVE_GLOBAL_SETTINGS, event, file, null, null, jsonSettings, null);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file), null, null, event, (m, b) -> m.didReceiveGlobalSettings(event, jsonSettings, b)));
     }
 
     /**
@@ -181,21 +245,12 @@ class Manager extends EventManager {
      */
     @Override
     public void keyDown(KeyDown event, Context context, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.keyDown(event, context, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.KEY_DOWN, event, file, name, context, null, null);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.keyDown(event, context, b)));
     }
     
     /**
@@ -206,21 +261,12 @@ class Manager extends EventManager {
      */
     @Override
     public void keyUp(KeyUp event, Context context, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.keyUp(event, context, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.KEY_UP, event, file, name, context, null, null);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.keyUp(event, context, b)));
     }
     
     /**
@@ -231,22 +277,14 @@ class Manager extends EventManager {
      */
     @Override
     public void willAppear(WillAppear event, Context context, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = refreshRoute(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        loadPlugin(file);
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.willAppear(event, context, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.WILL_APPEAR, event, file, name, context, null, null);
+        LIFECYCLE.attach(file, context);
+        load(file);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.willAppear(event, context, b)));
     }
 
     /**
@@ -257,22 +295,18 @@ class Manager extends EventManager {
      */
     @Override
     public void willDisappear(WillDisappear event, Context context, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        loadPlugin(file);
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.willDisappear(event, context, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.WILL_DISAPPEAR, event, file, name, context, null, null);
+        load(file);
+        ROUTES.invalidate(context);
+        LOADER.whenLoaded(file, () -> {
+            dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.willDisappear(event, context, b));
+            DISPATCHER.retire(context);
+        });
+        LIFECYCLE.detach(context);
     }
 
     /**
@@ -285,21 +319,12 @@ class Manager extends EventManager {
      */
     @Override
     public void titleParametersDidChange(TitleParametersDidChange event, Context context, String title, TitleParameters parameters, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.titleParametersDidChange(event, context, title, parameters, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.TITLE_PARAMETERS_DID_CHANGE, event, file, name, context, title, parameters);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.titleParametersDidChange(event, context, title, parameters, b)));
     }
 
     /**
@@ -311,20 +336,9 @@ class Manager extends EventManager {
      */
     @Override
     public void deviceDidConnect(DeviceDidConnect event, String device, DeviceDidConnect.DeviceInfo infos, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.deviceDidConnect(event, device, infos, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        RECORDER.record(EventType.DEVICE_DID_CONNECT, event, null, null, null, device, infos);
+        if(LOADED.files(EventType.DEVICE_DID_CONNECT).length > 0)
+            broadcast(null, device, event, (m, b) -> m.deviceDidConnect(event, device, infos, b));
     }
 
     /**
@@ -335,20 +349,9 @@ class Manager extends EventManager {
      */
     @Override
     public void deviceDidDisconnect(DeviceDidDisconnect event, String device, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.deviceDidDisconnect(event, device, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        RECORDER.record(EventType.DEVICE_DID_DISCONNECT, event, null, null, null, device, null);
+        if(LOADED.files(EventType.DEVICE_DID_DISCONNECT).length > 0)
+            broadcast(null, device, event, (m, b) -> m.deviceDidDisconnect(event, device, b));
     }
 
     /**
@@ -359,20 +362,9 @@ class Manager extends EventManager {
      */
     @Override
     public void applicationDidLaunch(ApplicationDidLaunch event, String application, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.applicationDidLaunch(event, application, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        RECORDER.record(EventType.APPLICATION_DID_LAUNCH, event, null, null, null, application, null);
+        if(LOADED.files(EventType.APPLICATION_DID_LAUNCH).length > 0)
+            broadcast(null, application, event, (m, b) -> m.applicationDidLaunch(event, application, b));
     }
 
     /**
@@ -383,20 +375,9 @@ class Manager extends EventManager {
      */
     @Override
     public void applicationDidTerminate(ApplicationDidTerminate event, String application, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.applicationDidTerminate(event, application, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        RECORDER.record(EventType.APPLICATION_DID_TERMINATE, event, null, null, null, application, null);
+        if(LOADED.files(EventType.APPLICATION_DID_TERMINATE).length > 0)
+            broadcast(null, application, event, (m, b) -> m.applicationDidTerminate(event, application, b));
     }
 
     /**
@@ -406,68 +387,31 @@ class Manager extends EventManager {
      */
     @Override
     public void systemDidWakeUp(SystemDidWakeUp event, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.systemDidWakeUp(event, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        RECORDER.record(EventType.SYSTEM_DID_WAKE_UP, event, null, null, null, null, null);
+        if(LOADED.files(EventType.SYSTEM_DID_WAKE_UP).length > 0)
+            broadcast(null, null, event, (m, b) -> m.systemDidWakeUp(event, b));
     }
 
     /**
-     * Action received when the Property Inspector appears in the Stream Deck software user interface, for example when selecting a new instance
+     * Action received when the Property Inspector appears in the Stream Deck software user interface, for example when selecting a new instance. It is only delivered to the plugin which owns the context
      * @param event Corresponds to the Stream Deck event
      * @param context Corresponds to the context (or ID) of the action
      * @param builder Allows to deserialize the received json
      */
     @Override
     public void propertyInspectorDidAppear(PropertyInspectorDidAppear event, Context context, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.propertyInspectorDidAppear(event, context, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        inspector(EventType.PROPERTY_INSPECTOR_DID_APPEAR, event, context, (m, b) -> m.propertyInspectorDidAppear(event, context, b));
     }
 
     /**
-     * Action received when the Property Inspector for an instance is removed from the Stream Deck software user interface, for example when selecting a different instance
+     * Action received when the Property Inspector for an instance is removed from the Stream Deck software user interface, for example when selecting a different instance. It is only delivered to the plugin which owns the context
      * @param event Corresponds to the Stream Deck event
      * @param context Corresponds to the context (or ID) of the action
      * @param builder Allows to deserialize the received json
      */
     @Override
     public void propertyInspectorDidDisappear(PropertyInspectorDidDisappear event, Context context, GsonBuilder builder) {
-        synchronized (LOADED) {
-            for (java.util.Map.Entry<String, EventManager[]> map : LOADED.entrySet()) {
-                EventManager[] managers = map.getValue();
-                if (managers != null) {
-                    for (EventManager m : managers) {
-                        GsonBuilder b = new GsonBuilder();
-                        Async.execute(() -> {
-                            m.propertyInspectorDidDisappear(event, context, b);
-                            m.event(event, b);
-                        });
-                    }
-                }
-            }
-        }
+        inspector(EventType.PROPERTY_INSPECTOR_DID_DISAPPEAR, event, context, (m, b) -> m.propertyInspectorDidDisappear(event, context, b));
     }
 
     /**
@@ -479,21 +423,12 @@ class Manager extends EventManager {
      */
     @Override
     public void sendToPlugin(SendToPlugin event, Context context, Payload payload, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.sendToPlugin(event, context, payload, b);
-                        m.event(event, b);
-                    });
-                }
-            }
-        }
+        RECORDER.record(EventType.SEND_TO_PLUGIN, event, file, name, context, null, payload);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.sendToPlugin(event, context, payload, b)));
     }
 
     /**
@@ -505,150 +440,354 @@ class Manager extends EventManager {
      */
     @Override
     public void sendToPropertyInspector(SendToPropertyInspector event, Context context, Payload payload, GsonBuilder builder) {
-        Plugin p = builder.create().fromJson(event.payload.settings, Plugin.class);
-        String file = p.pluginFile;
-        String name = p.actionName;
+        RoutingCache.Route route = route(context, event.payload.settings);
+        String file = route.pluginFile;
+        String name = route.actionName;
         event.action = name;
-        synchronized(LOADED){
-            if(file != null && LOADED.containsKey(file)){
-                for(EventManager m : LOADED.get(file)){
-                    GsonBuilder b = new GsonBuilder();
-                    Async.execute(() -> {
-                        m.sendToPropertyInspector(event, context, payload, b);
-                        m.event(event, b);
-                    });
+        RECORDER.record(EventType.SEND_TO_PROPERTY_INSPECTOR, event, file, name, context, null, payload);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, (m, b) -> m.sendToPropertyInspector(event, context, payload, b)));
+    }
+    
+    
+    
+//METHODES PRIVATES
+    /**
+     * Delivers an event to the EventManagers of a plugin file through its executor
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param managers Corresponds to the targeted EventManagers of the plugin file
+     * @param context Corresponds to the context (or ID) of the action or null if the event has none
+     * @param scope Corresponds to what the event is about (the context, the device...), used by the coalescing
+     * @param event Corresponds to the Stream Deck event
+     * @param delivery Corresponds to the typed callback to call before {@link EventManager#event(Event, GsonBuilder)} (or null if there is none)
+     */
+    private void dispatch(String pluginFile, EventManager[] managers, Context context, Object scope, Event event, Delivery delivery){
+        if(managers.length == 0 || WATCHDOG.drop(pluginFile))
+            return;
+        EVICTOR.touch(pluginFile);
+        EventType type = EventType.of(event.getClass());
+        for(EventManager m : managers){
+            long submitted = METRICS.start();
+            DISPATCHER.dispatch(pluginFile, context, m, event.getClass(), scope, () -> {
+                long allocated = (submitted == 0) ? -1 : METRICS.allocated();
+                long begin = (submitted == 0) ? 0 : System.nanoTime();
+                Watchdog.Running running = WATCHDOG.begin(pluginFile, m, type);
+                try {
+                    GsonBuilder b = GsonCache.builder();
+                    if(delivery != null)
+                        delivery.deliver(m, b);
+                    m.event(event, b);
+                } catch (RuntimeException | Error ex) {
+                    METRICS.error(pluginFile, m, type);
+                    throw ex;
+                } finally {
+                    WATCHDOG.end(running);
+                    if(submitted != 0)
+                        METRICS.record(pluginFile, m, type, submitted, begin, System.nanoTime(), allocated);
                 }
-            }
+            });
         }
     }
     
+    /**
+     * Delivers an event of the Property Inspector to the plugin which owns its context (through the same routing as {@link #keyDown(KeyDown, Context, GsonBuilder)}, buffered while the plugin is loading). If the context has not been seen yet (no willAppear), the event is delivered to the plugin files which subscribe to its type
+     * @param type Corresponds to the type of the event
+     * @param event Corresponds to the Stream Deck event
+     * @param context Corresponds to the context (or ID) of the action
+     * @param delivery Corresponds to the typed callback to call before {@link EventManager#event(Event, GsonBuilder)}
+     */
+    private void inspector(EventType type, Event event, Context context, Delivery delivery){
+        RoutingCache.Route route = ROUTES.get(context);
+        if(route == null){
+            RECORDER.record(type, event, null, null, context, null, null);
+            if(LOADED.files(type).length > 0)
+                broadcast(context, context, event, delivery);
+            return;
+        }
+        String file = route.pluginFile;
+        String name = route.actionName;
+        RECORDER.record(type, event, file, name, context, null, null);
+        LOADER.whenLoaded(file, () -> dispatch(file, LOADED.get(file, name), context, context, event, delivery));
+    }
     
+    /**
+     * Delivers an event to the EventManagers of the loaded plugin files which subscribe to its type (see {@link Subscriptions})
+     * @param context Corresponds to the context (or ID) of the action or null if the event has none
+     * @param scope Corresponds to what the event is about (the context, the device...), used by the coalescing
+     * @param event Corresponds to the Stream Deck event
+     * @param delivery Corresponds to the typed callback to call before {@link EventManager#event(Event, GsonBuilder)} (or null if there is none)
+     */
+    private void broadcast(Context context, Object scope, Event event, Delivery delivery){
+        EventType type = EventType.of(event.getClass());
+        for(String file : LOADED.files(type))
+            dispatch(file, LOADED.get(file, type), context, scope, event, delivery);
+    }
+    
+    /**
+     * Returns the route (plugin file and action name) of a context. The settings are only parsed if the route is not yet cached
+     * @param context Corresponds to the context (or ID) of the action
+     * @param jsonSettings Corresponds to the settings of the action
+     * @return Returns the route of the context
+     */
+    private RoutingCache.Route route(Context context, String jsonSettings){
+        RoutingCache.Route route = ROUTES.get(context);
+        if(route == null)
+            route = refreshRoute(context, jsonSettings);
+        return route;
+    }
+    
+    /**
+     * Parses the settings of a context and caches its route (plugin file and action name)
+     * @param context Corresponds to the context (or ID) of the action
+     * @param jsonSettings Corresponds to the settings of the action
+     * @return Returns the route of the context
+     */
+    private RoutingCache.Route refreshRoute(Context context, String jsonSettings){
+        Plugin p = (jsonSettings == null) ? null : GsonCache.SHARED.fromJson(jsonSettings, Plugin.class);
+        RoutingCache.Route route = (p == null) ? new RoutingCache.Route(null, null) : new RoutingCache.Route(p.pluginFile, p.actionName);
+        ROUTES.put(context, route);
+        return route;
+    }
+    
+    /**
+     * Runs an empty task through the lane of each EventManager of a plugin file, in order to start the threads of its executor before the first real event. No code of the plugin is run
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    private void warm(String pluginFile){
+        for(EventManager m : LOADED.get(pluginFile)){
+            DISPATCHER.dispatch(pluginFile, null, m, PluginWarmup.class, null, () -> {
+                //Rien à faire : seuls les threads de l'exécuteur sont démarrés
+            });
+        }
+    }
+    
+    /**
+     * Starts the loading of a file representing a plugin in the background (the events of this file are buffered until the loading ends)
+     * @param pluginFile Corresponds to the file path
+     */
+    private void load(String pluginFile){
+        LOADER.load(pluginFile, () -> loadPlugin(pluginFile));
+    }
     
-//METHODES PRIVATES
     /**
      * Loads a file representing a plugin
      * @param pluginFile Corresponds to the file path
      */
     private void loadPlugin(String pluginFile){
+        if (!LOADED.contains(pluginFile)) {
+            install(pluginFile);
+        }
+    }
+    
+    /**
+     * Loads a new version of a file representing a plugin in its own class loader and registers it. If a previous version was loaded, it is atomically replaced then unloaded
+     * @param pluginFile Corresponds to the file path
+     * @return Returns true if the plugin file has been loaded, otherwise false
+     */
+    private boolean install(String pluginFile){
         java.io.File pf = new java.io.File(pluginFile);
         try {
             if(File.getExtension(pf).equals("pesd") || File.getExtension(pf).equals("jar")){
-                boolean contains;
-                synchronized(LOADED){
-                    contains = LOADED.containsKey(pluginFile);
-                }
-                if (!contains) {
-                    Object[] pluginClass = getObject(pluginFile, EventManager.class);
-                    if (pluginClass != null && pluginClass.length > 0) {
-                        EventManager[] ems = new EventManager[pluginClass.length];
-                        for (int i = 0; i < pluginClass.length; i++) {
-                            EventManager em = (EventManager) pluginClass[i];
-                            em.setLOGGER(LOGGER);
-                            em.setConnectionManager(manager);
-                            em.setOPTIONS(OPTIONS);
-                            em.setConnection(CONNECTION);
-                            ems[i] = em;
-                        }
-                        synchronized (LOADED) {
-                            LOADED.put(pluginFile, ems);
-                        }
+                java.io.File source = LIFECYCLE.open(pf);
+                java.net.URL[] urls = new java.net.URL[]{source.toURI().toURL()};
+                MappedJar jar = MappedJar.isEnabled() ? MappedJar.open(source) : null;
+                java.net.URLClassLoader loader = (SHARED.isEnabled() || jar != null) ? new PluginClassLoader(urls, SHARED, jar) : new java.net.URLClassLoader(urls);
+                java.io.Closeable resources = () -> {
+                    try {
+                        loader.close();
+                    } finally {
+                        LIFECYCLE.close(source);
+                    }
+                };
+                Object[] pluginClass = getObject(pf, source, loader, EventManager.class);
+                if (pluginClass != null && pluginClass.length > 0) {
+                    EventManager[] ems = new EventManager[pluginClass.length];
+                    for (int i = 0; i < pluginClass.length; i++) {
+                        EventManager em = (EventManager) pluginClass[i];
+                        em.setLOGGER(LOGGER);
+                        em.setConnectionManager(manager);
+                        em.setOPTIONS(OPTIONS);
+                        em.setConnection(CONNECTION);
+                        ems[i] = em;
                     }
+                    PluginRegistry.Entry replaced = LOADED.put(pluginFile, ems, resources);
+                    WATCHDOG.reset(pluginFile);
+                    EVICTOR.loaded(pluginFile, () -> (jar != null) ? jar.classBytes() : PluginScanner.classBytes(source));
+                    LIFECYCLE.watch(pluginFile);
+                    PluginWarmup.touch(pluginFile);
+                    if (replaced != null)
+                        release(pluginFile, replaced);
+                    return true;
                 }
+                close(pluginFile, resources);
             }
-        } catch (java.io.FileNotFoundException ex) {}
+        } catch (java.io.IOException ex) {
+            if (!(ex instanceof java.io.FileNotFoundException))
+                java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+        return false;
     }
     
     /**
-     * Returns the list of objects contained in the plugin file
-     * @param file Corresponds to the file path
-     * @param classOrInterfaceSearched Corresponds to the classes sought
-     * @return Returns the list of objects contained in the plugin file
+     * Reloads a file representing a plugin which has been modified on the disk (or unloads it if it has been deleted). The events of this file are buffered meanwhile
+     * @param pluginFile Corresponds to the file path
      */
-    private Object[] getObject(String file, Class... classOrInterfaceSearched){
-        return getObject(new java.io.File(file), classOrInterfaceSearched);
+    private void reload(String pluginFile){
+        LOADER.exclusive(pluginFile, () -> {
+            if (!new java.io.File(pluginFile).isFile()) {
+                release(pluginFile, LOADED.remove(pluginFile));
+            } else if (LOADED.contains(pluginFile) || LIFECYCLE.contexts(pluginFile) > 0) {
+                if (install(pluginFile))
+                    log("JavaPlugin: " + pluginFile + " reloaded");
+            }
+        });
+    }
+    
+    /**
+     * Unloads a file representing a plugin which is no longer used by any visible context. The events of this file are buffered meanwhile
+     * @param pluginFile Corresponds to the file path
+     */
+    private void unload(String pluginFile){
+        LOADER.exclusive(pluginFile, () -> {
+            if (LIFECYCLE.contexts(pluginFile) == 0)
+                release(pluginFile, LOADED.remove(pluginFile));
+        });
+    }
+    
+    /**
+     * Releases a version of a plugin file which is no longer registered: waits for its pending events, destroys its EventManagers and closes its class loader
+     * @param pluginFile Corresponds to the file path
+     * @param entry Corresponds to the version of the plugin file (or null)
+     */
+    private void release(String pluginFile, PluginRegistry.Entry entry){
+        if (entry == null)
+            return;
+        if (!LOADED.contains(pluginFile)) {
+            EVICTOR.unloaded(pluginFile);
+            WATCHDOG.reset(pluginFile);
+            if (LIFECYCLE.contexts(pluginFile) == 0)
+                LIFECYCLE.unwatch(pluginFile);
+        }
+        if (!DISPATCHER.shutdown(pluginFile, 5000))
+            java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.WARNING, "Events of {0} are still running, its EventManagers are destroyed anyway", pluginFile);
+        // Les statistiques de cette version ne doivent plus être publiées (déchargée ou remplacée)
+        METRICS.remove(pluginFile);
+        for (EventManager m : entry.getManagers()) {
+            try {
+                m.onDestroy();
+            } catch (RuntimeException | LinkageError ex) {
+                java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.SEVERE, pluginFile, ex);
+            }
+        }
+        close(pluginFile, entry.getLoader());
+    }
+    
+    /**
+     * Closes the class loader of a version of a plugin file
+     * @param pluginFile Corresponds to the file path
+     * @param loader Corresponds to the class loader of the version of the plugin file (or null)
+     */
+    private static void close(String pluginFile, java.io.Closeable loader){
+        if (loader == null)
+            return;
+        try {
+            loader.close();
+        } catch (java.io.IOException ex) {
+            java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.WARNING, pluginFile, ex);
+        }
     }
     
     /**
      * Returns the list of objects contained in the plugin file
-     * @param file Corresponds to the file
+     * @param file Corresponds to the plugin file
+     * @param source Corresponds to the file actually read (the plugin file or its copy)
+     * @param loader Corresponds to the class loader of this version of the plugin file
      * @param classOrInterfaceSearched Corresponds to the classes sought
      * @return Returns the list of objects contained in the plugin file
      */
-    private Object[] getObject(java.io.File file, Class... classOrInterfaceSearched){
-        java.util.List<String> list = new java.util.ArrayList<>();
+    private Object[] getObject(java.io.File file, java.io.File source, java.net.URLClassLoader loader, Class... classOrInterfaceSearched){
+        java.util.List<Class<?>> list = new java.util.ArrayList<>();
+        long start = System.nanoTime();
         try{
-            java.net.URL u = file.toURL();
-            java.net.URLClassLoader loader = new java.net.URLClassLoader(new java.net.URL[]{u});
-            java.util.jar.JarFile jar = new java.util.jar.JarFile(file.getAbsolutePath());
-            //On récupére le contenu du jar
-            java.util.Enumeration enumeration = jar.entries();
-            while (enumeration.hasMoreElements()) {
-                String tmp = enumeration.nextElement().toString();
-                //On vérifie que le fichier courant est un .class (et pas un fichier d'informations du jar)
-                if (tmp.length() > 6 && tmp.substring(tmp.length() - 6).compareTo(".class") == 0) {
-                    tmp = tmp.substring(0, tmp.length() - 6);
-                    tmp = tmp.replaceAll("/", ".");
-                    Class tmpClass = Class.forName(tmp, true, loader);
-                    if (isExtendsOrImplements(classOrInterfaceSearched, tmpClass)) {
-                        list.add(tmp);
+            //On récupére les classes trouvées lors d'un précédent démarrage si le fichier n'a pas changé
+            String fingerprint = METADATA.fingerprint(source);
+            java.util.List<String> cached = METADATA.get(file, fingerprint);
+            if (cached != null) {
+                try {
+                    Object[] objs = new Object[cached.size()];
+                    for(int i = 0; i < cached.size(); i++){
+                        Class<?> c = Class.forName(cached.get(i), true, loader);
+                        if (!isExtendsOrImplements(classOrInterfaceSearched, c))
+                            throw new ClassCastException(c.getName());
+                        objs[i] = c.newInstance();
                     }
+                    logLoadTime(file, start, true);
+                    return objs;
+                } catch (ClassNotFoundException | LinkageError | InstantiationException | IllegalAccessException | ClassCastException ex) {
+                    java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.WARNING, "Invalid cache entry for " + file.getName() + ", the plugin file is scanned again", ex);
+                }
+            }
+            //On récupére les candidats sans charger les classes (index ou en-têtes des .class)
+            //Le fichier mappé en mémoire est lu une seule fois pour la recherche et le chargement des classes
+            MappedJar jar = (loader instanceof PluginClassLoader) ? ((PluginClassLoader) loader).getJar() : null;
+            java.util.List<String> candidates = (jar != null) ? PluginScanner.findSubclasses(jar, classOrInterfaceSearched[0].getName()) : PluginScanner.findSubclasses(source, classOrInterfaceSearched[0].getName());
+            for (String tmp : candidates) {
+                Class tmpClass;
+                try {
+                    tmpClass = Class.forName(tmp, false, loader);
+                } catch (ClassNotFoundException | LinkageError ex) {
+                    java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.WARNING, "Ignored class " + tmp + " of " + file.getName(), ex);
+                    continue;
+                }
+                if (isExtendsOrImplements(classOrInterfaceSearched, tmpClass) && !list.contains(tmpClass)) {
+                    list.add(tmpClass);
                 }
             }
             sortActionClass(list);
             Object[] objs = new Object[list.size()];
+            java.util.List<String> names = new java.util.ArrayList<>();
             for(int i = 0; i < list.size(); i++){
-                objs[i] = Class.forName(list.get(i), true, loader).newInstance();
+                objs[i] = list.get(i).newInstance();
+                names.add(list.get(i).getName());
             }
+            if (!names.isEmpty())
+                METADATA.put(file, fingerprint, names);
+            logLoadTime(file, start, false);
             return objs;
-        } catch (java.net.MalformedURLException ex) {
-            java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (java.io.IOException | ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+        } catch (java.io.IOException | InstantiationException | IllegalAccessException ex) {
             java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
         }
         return null;
     }
     
     /**
-     * Sorts the list of EventManagers by retrieving those which are really valid
-     * @param className Corresponds to the list of class names which are potentially good and which must be validated
+     * Logs the time spent to find and instantiate the EventManagers of a plugin file
+     * @param file Corresponds to the plugin file
+     * @param start Corresponds to the start of the loading (System.nanoTime())
+     * @param cached Determines if the classes came from the metadata cache (warm start) or from a scan of the plugin file (cold start)
      */
-    private static void sortActionClass(java.util.List<String> className){
-        java.util.List<String> toRemove = new java.util.ArrayList<>();
-        for(String class1 : className){
-            for(String class2 : className){
-                if(!class1.equals(class2)){
-                    try {
-                        Class<?> c1 = Class.forName(class1);
-                        Class<?> c2 = Class.forName(class2);
-                        if(c1 != c2 && c2.isAssignableFrom(c1)){
-                            if(!toRemove.contains(class2)){
-                                toRemove.add(class2);
-                            }
-                        }
-                    } catch (ClassNotFoundException ex) {
-                        
-                    }
-                }
-            }
-        }
-        for(String str : toRemove){
-            className.remove(str);
-        }
-        toRemove.clear();
-        for(String str : className){
-            try {
-                Class<?> c = Class.forName(str);
-                if(java.lang.reflect.Modifier.isAbstract(c.getModifiers())){
-                    if(!toRemove.contains(str)){
-                        toRemove.add(str);
-                    }
-                }
-            } catch (ClassNotFoundException ex) {
-                
+    private static void logLoadTime(java.io.File file, long start, boolean cached){
+        long ms = java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        java.util.logging.Logger.getLogger(LoaderPlugin.class.getName()).log(java.util.logging.Level.INFO, file.getName() + " loaded in " + ms + " ms (" + (cached ? "warm start, metadata cache" : "cold start, scan") + ")");
+    }
+    
+    /**
+     * Sorts the list of EventManagers by retrieving those which are really valid: a class extended by another class of the list and an abstract class are removed. Each class walks up its superclass chain only once
+     * @param classes Corresponds to the list of classes which are potentially good and which must be validated (the order is kept)
+     */
+    static void sortActionClass(java.util.List<Class<?>> classes){
+        java.util.Set<Class<?>> extended = new java.util.HashSet<>();
+        java.util.Set<Class<?>> candidates = new java.util.HashSet<>(classes);
+        for(Class<?> c : classes){
+            for(Class<?> parent = c.getSuperclass(); parent != null; parent = parent.getSuperclass()){
+                if(candidates.contains(parent) && !extended.add(parent))
+                    break;
             }
         }
-        for(String str : toRemove){
-            className.remove(str);
+        java.util.Iterator<Class<?>> it = classes.iterator();
+        while(it.hasNext()){
+            Class<?> c = it.next();
+            if(extended.contains(c) || java.lang.reflect.Modifier.isAbstract(c.getModifiers()))
+                it.remove();
         }
     }
     
@@ -668,7 +807,29 @@ class Manager extends EventManager {
     
     
     
-//CLASS
+//INTERFACE & CLASS
+    /**
+     * This interface represents the call of a typed callback of a hosted EventManager
+     * @author JasonPercus
+     * @version 1.0
+     */
+    @FunctionalInterface
+    private interface Delivery {
+        
+        
+        
+    //METHODE PUBLIC
+        /**
+         * Calls the callback
+         * @param m Corresponds to the hosted EventManager
+         * @param b Allows to deserialize the received json
+         */
+        void deliver(EventManager m, GsonBuilder b);
+        
+        
+        
+    }
+    
     /**
      * This class represents the settings received in the payloads. In order to retrieve the plugin file path
      * @author JasonPercus
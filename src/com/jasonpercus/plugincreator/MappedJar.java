@@ -0,0 +1,514 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents a plugin file (jar or pesd) mapped in memory. Its central directory is parsed once; a stored entry is read without any copy (a view of the mapping), a compressed entry is inflated by an inflater taken from a small pool shared by all the threads. It is used to find the EventManagers of the plugin file and to define its classes (see {@link PluginClassLoader}). It can be configured with the following system property:
+ * <ul>
+ * <li>javaplugin.mmap: true to read the plugin files mapped in memory (default false: a mapped file stays mapped until it is garbage collected, and cannot be deleted meanwhile on Windows)</li>
+ * </ul>
+ * The signed plugin files and the ZIP64 archives are not mapped: they are read as before
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class MappedJar implements java.io.Closeable {
+
+
+
+//CONSTANTES
+    /**
+     * Determines if the plugin files are mapped in memory
+     */
+    private static final boolean ENABLED = Boolean.getBoolean("javaplugin.mmap");
+
+    /**
+     * Corresponds to the signature of the end of the central directory
+     */
+    private static final int END = 0x06054b50;
+
+    /**
+     * Corresponds to the signature of an entry of the central directory
+     */
+    private static final int CENTRAL = 0x02014b50;
+
+    /**
+     * Corresponds to the signature of a local header
+     */
+    private static final int LOCAL = 0x04034b50;
+
+    /**
+     * Corresponds to the size of the compressed input of an inflater of the pool (a larger input is not kept in the pool)
+     */
+    private static final int INPUT = 16 * 1024;
+
+    /**
+     * Corresponds to the inflaters not used at the moment. The pool is bounded: an inflater which does not fit in it is ended, so that its native memory is released at once (a thread, virtual or not, never keeps one)
+     */
+    private static final java.util.concurrent.ArrayBlockingQueue<Inflation> POOL = new java.util.concurrent.ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Corresponds to the charset of the names of the entries without the UTF-8 flag (CP437 as specified by the ZIP format, UTF-8 if the JVM does not provide it)
+     */
+    private static final java.nio.charset.Charset CP437 = java.nio.charset.Charset.isSupported("IBM437") ? java.nio.charset.Charset.forName("IBM437") : java.nio.charset.StandardCharsets.UTF_8;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin file
+     */
+    private final java.io.File file;
+
+    /**
+     * Corresponds to the content of the plugin file
+     */
+    private final java.nio.MappedByteBuffer map;
+
+    /**
+     * Corresponds to the entries of the plugin file (by name, in the order of the central directory). The index is immutable: it is replaced by an empty one when the plugin file is closed, while other threads may read it
+     */
+    private volatile java.util.Map<String, Entry> entries;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create a MappedJar
+     * @param file Corresponds to the plugin file
+     * @param map Corresponds to the content of the plugin file
+     * @param entries Corresponds to the entries of the plugin file
+     */
+    private MappedJar(java.io.File file, java.nio.MappedByteBuffer map, java.util.LinkedHashMap<String, Entry> entries) {
+        this.file = file;
+        this.map = map;
+        this.entries = java.util.Collections.unmodifiableMap(entries);
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if the plugin files are mapped in memory (system property javaplugin.mmap)
+     * @return Returns true if the plugin files are mapped in memory, otherwise false
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Maps a plugin file in memory and parses its central directory
+     * @param file Corresponds to the plugin file
+     * @return Returns the mapped plugin file, or null if it cannot be mapped (signed, ZIP64, invalid...)
+     */
+    static MappedJar open(java.io.File file) {
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < 22 || size > Integer.MAX_VALUE)
+                return null;
+            java.nio.MappedByteBuffer map = channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            java.util.LinkedHashMap<String, Entry> entries = readCentralDirectory(map);
+            if(entries == null)
+                return null;
+            for(String name : entries.keySet()){
+                if(name.startsWith("META-INF/") && (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC")))
+                    return null;
+            }
+            return new MappedJar(file, map, entries);
+        } catch (java.io.IOException | RuntimeException ex) {
+            java.util.logging.Logger.getLogger(MappedJar.class.getName()).log(java.util.logging.Level.FINE, "Unable to map " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the plugin file
+     * @return Returns the plugin file
+     */
+    java.io.File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the names of the entries of the plugin file
+     * @return Returns the names of the entries (in the order of the central directory)
+     */
+    java.util.Set<String> names() {
+        return entries.keySet();
+    }
+
+    /**
+     * Returns the total size (uncompressed) of the .class entries of the plugin file, read from its central directory
+     * @return Returns the total size of the .class entries
+     */
+    long classBytes() {
+        long bytes = 0;
+        for(java.util.Map.Entry<String, Entry> e : entries.entrySet()){
+            if(e.getKey().endsWith(".class"))
+                bytes += e.getValue().size;
+        }
+        return bytes;
+    }
+
+    /**
+     * Determines if the plugin file contains an entry
+     * @param name Corresponds to the name of the entry
+     * @return Returns true if the plugin file contains the entry, otherwise false
+     */
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Reads an entry of the plugin file. A stored entry is a read-only view of the mapping, a compressed entry is inflated in an array of its size owned by the caller
+     * @param name Corresponds to the name of the entry
+     * @return Returns the content of the entry (position 0, limit: its size) or null if the plugin file has no such entry
+     * @throws java.io.IOException If the entry is invalid or compressed with an unsupported method
+     */
+    java.nio.ByteBuffer read(String name) throws java.io.IOException {
+        Entry entry = entries.get(name);
+        if(entry == null)
+            return null;
+        java.nio.ByteBuffer view = data(name, entry);
+        if(entry.method == 0)
+            return view;
+        byte[] output = new byte[entry.size];
+        Inflation inflation = acquire();
+        try {
+            byte[] input = inflation.input(entry.compressed + 1);
+            view.get(input, 0, entry.compressed);
+            input[entry.compressed] = 0;
+            java.util.zip.Inflater inflater = inflation.inflater;
+            inflater.setInput(input, 0, entry.compressed + 1);
+            int length = 0;
+            while(length < entry.size && !inflater.finished()){
+                int n = inflater.inflate(output, length, entry.size - length);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                length += n;
+            }
+            if(length != entry.size)
+                throw new java.io.IOException("Invalid size for " + name + " in " + file);
+            return java.nio.ByteBuffer.wrap(output);
+        } catch (java.util.zip.DataFormatException ex) {
+            throw new java.io.IOException("Invalid entry " + name + " in " + file, ex);
+        } finally {
+            release(inflation);
+        }
+    }
+
+    /**
+     * Opens an entry of the plugin file as a stream: a compressed entry is only inflated as far as it is read
+     * @param name Corresponds to the name of the entry
+     * @return Returns the content of the entry or null if the plugin file has no such entry
+     * @throws java.io.IOException If the entry is invalid or compressed with an unsupported method
+     */
+    java.io.InputStream open(String name) throws java.io.IOException {
+        Entry entry = entries.get(name);
+        if(entry == null)
+            return null;
+        java.io.InputStream in = new BufferInputStream(data(name, entry));
+        if(entry.method == 0)
+            return in;
+        Inflation inflation = acquire();
+        //An extra byte is given to the inflater, as ZipFile does, because the raw deflate data may need it to end
+        return new java.util.zip.InflaterInputStream(new java.io.SequenceInputStream(in, new java.io.ByteArrayInputStream(new byte[1])), inflation.inflater, 512) {
+            private boolean released;
+
+            @Override
+            public void close() throws java.io.IOException {
+                super.close();
+                if(!released){
+                    released = true;
+                    release(inflation);
+                }
+            }
+        };
+    }
+
+    /**
+     * Closes the plugin file: its entries can no longer be read. The mapping itself is released when it is garbage collected
+     */
+    @Override
+    public void close() {
+        entries = java.util.Collections.emptyMap();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Takes an inflater from the pool (or creates one if the pool is empty)
+     * @return Returns an inflater ready to be used
+     */
+    private static Inflation acquire() {
+        Inflation inflation = POOL.poll();
+        return (inflation != null) ? inflation : new Inflation();
+    }
+
+    /**
+     * Gives an inflater back to the pool, or ends it if the pool is full
+     * @param inflation Corresponds to the inflater
+     */
+    private static void release(Inflation inflation) {
+        inflation.inflater.reset();
+        if(inflation.input.length > INPUT)
+            inflation.input = new byte[INPUT];
+        if(!POOL.offer(inflation))
+            inflation.inflater.end();
+    }
+
+    /**
+     * Returns the data (compressed or not) of an entry of the plugin file
+     * @param name Corresponds to the name of the entry
+     * @param entry Corresponds to the entry
+     * @return Returns a view of the data of the entry (position 0, limit: its compressed size)
+     * @throws java.io.IOException If the entry is invalid or compressed with an unsupported method
+     */
+    private java.nio.ByteBuffer data(String name, Entry entry) throws java.io.IOException {
+        if(entry.method != 0 && entry.method != 8)
+            throw new java.io.IOException("Unsupported compression method " + entry.method + " for " + name + " in " + file);
+        java.nio.ByteBuffer view = map.duplicate();
+        view.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        int local = entry.offset;
+        if(local + 30 > view.limit() || view.getInt(local) != LOCAL)
+            throw new java.io.IOException("Invalid local header for " + name + " in " + file);
+        int start = local + 30 + (view.getShort(local + 26) & 0xffff) + (view.getShort(local + 28) & 0xffff);
+        if(start + entry.compressed > view.limit())
+            throw new java.io.IOException("Truncated entry " + name + " in " + file);
+        view.position(start);
+        view.limit(start + entry.compressed);
+        return view.slice();
+    }
+
+    /**
+     * Parses the central directory of a plugin file
+     * @param map Corresponds to the content of the plugin file (little endian)
+     * @return Returns the entries of the plugin file, or null if it is not a supported archive
+     */
+    private static java.util.LinkedHashMap<String, Entry> readCentralDirectory(java.nio.MappedByteBuffer map) {
+        int end = -1;
+        for(int i = map.limit() - 22; i >= Math.max(0, map.limit() - 22 - 65535); i--){
+            if(map.getInt(i) == END){
+                end = i;
+                break;
+            }
+        }
+        if(end < 0)
+            return null;
+        int count = map.getShort(end + 10) & 0xffff;
+        long size = map.getInt(end + 12) & 0xffffffffL;
+        long offset = map.getInt(end + 16) & 0xffffffffL;
+        if(count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL || offset + size > end)
+            return null;
+        java.util.LinkedHashMap<String, Entry> entries = new java.util.LinkedHashMap<>(Math.max(16, count * 2));
+        int pos = (int) offset;
+        byte[] name = new byte[256];
+        for(int i = 0; i < count; i++){
+            if(pos + 46 > end || map.getInt(pos) != CENTRAL)
+                return null;
+            int flags = map.getShort(pos + 8) & 0xffff;
+            int method = map.getShort(pos + 10) & 0xffff;
+            long compressed = map.getInt(pos + 20) & 0xffffffffL;
+            long uncompressed = map.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = map.getShort(pos + 28) & 0xffff;
+            int extraLength = map.getShort(pos + 30) & 0xffff;
+            int commentLength = map.getShort(pos + 32) & 0xffff;
+            long local = map.getInt(pos + 42) & 0xffffffffL;
+            if(compressed == 0xffffffffL || uncompressed == 0xffffffffL || local == 0xffffffffL || (flags & 1) != 0)
+                return null;
+            if(name.length < nameLength)
+                name = new byte[nameLength];
+            for(int j = 0; j < nameLength; j++)
+                name[j] = map.get(pos + 46 + j);
+            String entryName = new String(name, 0, nameLength, ((flags & 0x800) != 0) ? java.nio.charset.StandardCharsets.UTF_8 : CP437);
+            entries.putIfAbsent(entryName, new Entry(method, (int) compressed, (int) uncompressed, (int) local));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents a stream over a view of the mapped plugin file
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class BufferInputStream extends java.io.InputStream {
+
+
+
+    //ATTRIBUT
+        /**
+         * Corresponds to the bytes not read yet
+         */
+        private final java.nio.ByteBuffer buffer;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a BufferInputStream
+         * @param buffer Corresponds to the bytes to read
+         */
+        private BufferInputStream(java.nio.ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+
+
+    //METHODES PUBLICS
+        /**
+         * Reads a byte
+         * @return Returns the byte or -1 at the end of the stream
+         */
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        /**
+         * Reads bytes
+         * @param b Corresponds to the destination
+         * @param off Corresponds to the position of the first byte in the destination
+         * @param len Corresponds to the maximum number of bytes to read
+         * @return Returns the number of bytes read or -1 at the end of the stream
+         */
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(len == 0)
+                return 0;
+            if(!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        /**
+         * Skips bytes
+         * @param n Corresponds to the number of bytes to skip
+         * @return Returns the number of bytes skipped
+         */
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        /**
+         * Returns the number of bytes not read yet
+         * @return Returns the number of bytes not read yet
+         */
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+
+
+    }
+
+    /**
+     * This class represents an inflater of the pool with its compressed input
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Inflation {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the inflater (raw deflate data)
+         */
+        private final java.util.zip.Inflater inflater = new java.util.zip.Inflater(true);
+
+        /**
+         * Corresponds to the compressed input
+         */
+        private byte[] input = new byte[INPUT];
+
+
+
+    //METHODE PRIVATE
+        /**
+         * Returns the compressed input, enlarged if needed
+         * @param length Corresponds to the minimum length of the input
+         * @return Returns the compressed input
+         */
+        private byte[] input(int length) {
+            if(input.length < length)
+                input = new byte[length];
+            return input;
+        }
+
+
+
+    }
+
+    /**
+     * This class represents an entry of the central directory
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Entry {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the compression method (0: stored, 8: deflated)
+         */
+        private final int method;
+
+        /**
+         * Corresponds to the compressed size
+         */
+        private final int compressed;
+
+        /**
+         * Corresponds to the uncompressed size
+         */
+        private final int size;
+
+        /**
+         * Corresponds to the offset of the local header
+         */
+        private final int offset;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create an Entry
+         * @param method Corresponds to the compression method
+         * @param compressed Corresponds to the compressed size
+         * @param size Corresponds to the uncompressed size
+         * @param offset Corresponds to the offset of the local header
+         */
+        private Entry(int method, int compressed, int size, int offset) {
+            this.method = method;
+            this.compressed = compressed;
+            this.size = size;
+            this.offset = offset;
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
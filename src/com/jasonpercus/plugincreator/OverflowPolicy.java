@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This enum represents what a plugin queue does when an event arrives while it is full (the lane of its context or the whole executor of its plugin file)
+ * @author JasonPercus
+ * @version 1.0
+ */
+enum OverflowPolicy {
+
+
+
+//VALUES
+    /**
+     * The oldest pending event is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new event replaces the pending event of the same type for the same context. If there is none, the oldest pending event is dropped
+     */
+    COALESCE,
+
+    /**
+     * The caller waits until there is room in the queue. The caller is the thread which receives the events from Stream Deck: while it waits, no event is delivered to any plugin
+     */
+    BLOCK;
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the policy corresponding to a name
+     * @param name Corresponds to the name of the policy (case insensitive)
+     * @param defaultPolicy Corresponds to the policy returned if the name is unknown
+     * @return Returns the policy corresponding to the name
+     */
+    static OverflowPolicy parse(String name, OverflowPolicy defaultPolicy) {
+        if(name != null){
+            for(OverflowPolicy p : values()){
+                if(p.name().equalsIgnoreCase(name.trim().replace('-', '_')))
+                    return p;
+            }
+        }
+        return defaultPolicy;
+    }
+
+
+
+}
\ No newline at end of file
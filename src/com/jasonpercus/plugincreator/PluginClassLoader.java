@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents the class loader of a version of a plugin file when the shared libraries are enabled (see {@link SharedLibraries}) or when the plugin file is mapped in memory (see {@link MappedJar}). With the shared libraries, the classes of the JVM, of the host (PluginCreator, Gson) and of the shared libraries that the plugin file does not bundle in another version are loaded by the parent, the other classes are loaded from the plugin file first (child-first), so that a plugin keeps its own classes isolated; otherwise the classes are loaded parent-first, as by a URLClassLoader. When the plugin file is mapped, its classes are defined directly from the mapped buffers, without opening the plugin file again
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginClassLoader extends java.net.URLClassLoader {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the packages always loaded by the parent (JVM and host)
+     */
+    private static final String[] PARENT_FIRST = new String[]{"java.", "javax.", "sun.", "jdk.", "com.sun.", "org.w3c.", "org.xml.", "com.jasonpercus.plugincreator.", "com.jasonpercus.util.", "com.google.gson."};
+
+    /**
+     * Corresponds to the attribute of the manifest by which a plugin opts out of the shared libraries (JavaPlugin-SharedLib: false)
+     */
+    private static final java.util.jar.Attributes.Name SHARED_LIB = new java.util.jar.Attributes.Name("JavaPlugin-SharedLib");
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the shared libraries
+     */
+    private final SharedLibraries shared;
+
+    /**
+     * Corresponds to the shared classes already used by this class loader
+     */
+    private final java.util.Set<String> used = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    /**
+     * Corresponds to the packages of the shared libraries that the plugin file bundles in another version (or of all those it bundles if it opted out): they are loaded child-first. Read from the plugin file the first time a class of a shared package is loaded
+     */
+    private volatile java.util.Set<String> isolated;
+
+    /**
+     * Corresponds to the plugin file mapped in memory (null if it is not mapped)
+     */
+    private final MappedJar jar;
+
+    /**
+     * Corresponds to the location of the classes defined from the mapped plugin file
+     */
+    private final java.security.CodeSource codeSource;
+
+    /**
+     * Corresponds to the manifest of the mapped plugin file (read the first time a package is defined)
+     */
+    private volatile java.util.Optional<java.util.jar.Manifest> manifest;
+
+
+
+//STATIC
+    static {
+        registerAsParallelCapable();
+    }
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create a PluginClassLoader
+     * @param urls Corresponds to the plugin file (or its copy)
+     * @param shared Corresponds to the shared libraries (the parent of this class loader)
+     */
+    PluginClassLoader(java.net.URL[] urls, SharedLibraries shared) {
+        this(urls, shared, null);
+    }
+
+    /**
+     * Create a PluginClassLoader
+     * @param urls Corresponds to the plugin file (or its copy)
+     * @param shared Corresponds to the shared libraries (the parent of this class loader)
+     * @param jar Corresponds to the plugin file mapped in memory (null if it is not mapped)
+     */
+    PluginClassLoader(java.net.URL[] urls, SharedLibraries shared, MappedJar jar) {
+        super(urls, shared.parent());
+        this.shared = shared;
+        this.jar = jar;
+        this.codeSource = new java.security.CodeSource((urls.length > 0) ? urls[0] : null, (java.security.cert.Certificate[]) null);
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Loads a class: from the parent for the JVM, the host and the shared libraries (unless the plugin file bundles another version of them), otherwise from the plugin file first
+     * @param name Corresponds to the full name of the class
+     * @param resolve Determines if the class must be resolved
+     * @return Returns the class
+     * @throws ClassNotFoundException If the class cannot be found
+     */
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if(!shared.isEnabled())
+            return super.loadClass(name, resolve);
+        synchronized(getClassLoadingLock(name)){
+            Class<?> c = findLoadedClass(name);
+            if(c == null){
+                if(isParentFirst(name)){
+                    c = getParent().loadClass(name);
+                    if(shared.isEnabled() && c.getClassLoader() == getParent() && used.add(name))
+                        shared.used(name);
+                }else{
+                    try {
+                        c = findClass(name);
+                    } catch (ClassNotFoundException ex) {
+                        c = getParent().loadClass(name);
+                    }
+                }
+            }
+            if(resolve)
+                resolveClass(c);
+            return c;
+        }
+    }
+
+    /**
+     * Returns a resource: from the parent for the JVM, the host and the shared libraries (unless the plugin file bundles another version of them), otherwise from the plugin file first
+     * @param name Corresponds to the name of the resource
+     * @return Returns the URL of the resource or null if it cannot be found
+     */
+    @Override
+    public java.net.URL getResource(String name) {
+        if(!shared.isEnabled())
+            return super.getResource(name);
+        if(name.endsWith(".class") && isParentFirst(name.substring(0, name.length() - 6).replace('/', '.')))
+            return super.getResource(name);
+        java.net.URL url = findResource(name);
+        return (url != null) ? url : super.getResource(name);
+    }
+
+    /**
+     * Returns the plugin file mapped in memory
+     * @return Returns the plugin file mapped in memory or null if it is not mapped
+     */
+    MappedJar getJar() {
+        return jar;
+    }
+
+    /**
+     * Closes this class loader and the mapped plugin file
+     * @throws java.io.IOException If the plugin file cannot be closed
+     */
+    @Override
+    public void close() throws java.io.IOException {
+        try {
+            super.close();
+        } finally {
+            if(jar != null)
+                jar.close();
+        }
+    }
+
+
+
+//METHODE PROTECTED
+    /**
+     * Finds a class of the plugin file: it is defined from the mapped buffer when the plugin file is mapped, otherwise it is read by the URLClassLoader
+     * @param name Corresponds to the full name of the class
+     * @return Returns the class
+     * @throws ClassNotFoundException If the class cannot be found
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if(jar == null)
+            return super.findClass(name);
+        java.nio.ByteBuffer bytes;
+        try {
+            bytes = jar.read(name.replace('.', '/') + ".class");
+        } catch (java.io.IOException ex) {
+            throw new ClassNotFoundException(name, ex);
+        }
+        //Also when the plugin file has been closed meanwhile
+        if(bytes == null)
+            return super.findClass(name);
+        definePackage(name);
+        return defineClass(name, bytes, codeSource);
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Defines the package of a class of the mapped plugin file if it is not defined yet (with the attributes of the manifest)
+     * @param className Corresponds to the full name of the class
+     */
+    private void definePackage(String className) {
+        int dot = className.lastIndexOf('.');
+        if(dot < 0)
+            return;
+        String pkg = className.substring(0, dot);
+        if(getPackage(pkg) != null)
+            return;
+        try {
+            java.util.jar.Manifest m = manifest().orElse(null);
+            if(m != null)
+                definePackage(pkg, m, codeSource.getLocation());
+            else
+                definePackage(pkg, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException ex) {
+            //Already defined by another thread
+        }
+    }
+
+    /**
+     * Returns the manifest of the mapped plugin file (read once)
+     * @return Returns the manifest of the mapped plugin file
+     */
+    private java.util.Optional<java.util.jar.Manifest> manifest() {
+        java.util.Optional<java.util.jar.Manifest> m = manifest;
+        if(m == null){
+            java.util.jar.Manifest read = null;
+            try {
+                java.nio.ByteBuffer bytes = jar.read("META-INF/MANIFEST.MF");
+                if(bytes != null){
+                    byte[] content = new byte[bytes.remaining()];
+                    bytes.get(content);
+                    read = new java.util.jar.Manifest(new java.io.ByteArrayInputStream(content));
+                }
+            } catch (java.io.IOException ex) {
+                java.util.logging.Logger.getLogger(PluginClassLoader.class.getName()).log(java.util.logging.Level.FINE, null, ex);
+            }
+            m = java.util.Optional.ofNullable(read);
+            manifest = m;
+        }
+        return m;
+    }
+
+    /**
+     * Determines if a class must be loaded by the parent first
+     * @param name Corresponds to the full name of the class
+     * @return Returns true if the class belongs to the JVM, the host or a shared library that the plugin file does not bundle in another version, otherwise false
+     */
+    private boolean isParentFirst(String name) {
+        for(String prefix : PARENT_FIRST){
+            if(name.startsWith(prefix))
+                return true;
+        }
+        return shared.isShared(name) && !isolated().contains(SharedLibraries.packageOf(name));
+    }
+
+    /**
+     * Returns all the packages of the shared libraries that the plugin file bundles in another version (a class file which differs from the shared one or which is not shared), or of all the shared libraries it bundles if its manifest opts out of the shared libraries. A library is isolated as a whole: its classes are never mixed from two versions
+     * @return Returns the shared packages to load child-first
+     */
+    private java.util.Set<String> isolated() {
+        java.util.Set<String> set = isolated;
+        if(set == null){
+            set = new java.util.HashSet<>();
+            java.net.URL[] urls = getURLs();
+            if(urls.length > 0){
+                try (java.util.jar.JarFile file = new java.util.jar.JarFile(new java.io.File(urls[0].toURI()))) {
+                    java.util.jar.Manifest m = file.getManifest();
+                    boolean optOut = m != null && "false".equalsIgnoreCase(m.getMainAttributes().getValue(SHARED_LIB));
+                    java.util.Enumeration<java.util.jar.JarEntry> entries = file.entries();
+                    while(entries.hasMoreElements()){
+                        java.util.jar.JarEntry entry = entries.nextElement();
+                        String entryName = entry.getName();
+                        if(entry.isDirectory() || !entryName.endsWith(".class") || entryName.startsWith("META-INF/"))
+                            continue;
+                        String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+                        if(shared.isShared(className) && (optOut || !shared.isSame(className, entry.getCrc())))
+                            set.addAll(shared.packagesOfLibrary(className));
+                    }
+                } catch (java.io.IOException | java.net.URISyntaxException | IllegalArgumentException ex) {
+                    java.util.logging.Logger.getLogger(PluginClassLoader.class.getName()).log(java.util.logging.Level.FINE, null, ex);
+                }
+            }
+            isolated = set;
+        }
+        return set;
+    }
+
+
+
+}
\ No newline at end of file
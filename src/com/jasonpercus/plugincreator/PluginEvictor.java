@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class unloads the plugin files which are no longer used by any visible context and which have not received any event for a while (they are reloaded on demand by the next willAppear event). The least recently used ones are unloaded first. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.evict.idle: the time in milliseconds without any event after which an unused plugin file is unloaded (default 0: disabled, a plugin file is never unloaded because it is idle)</li>
+ * <li>javaplugin.evict.maxResident: the maximum number of loaded plugin files, the least recently used unused ones are unloaded beyond (default 0: no limit)</li>
+ * <li>javaplugin.evict.heapThreshold: the fraction (0 to 1) of the maximum heap beyond which all the unused plugin files are unloaded (default 0: disabled)</li>
+ * <li>javaplugin.evict.metaspaceThreshold: the fraction (0 to 1) of the maximum metaspace beyond which all the unused plugin files are unloaded (default 0: disabled, ignored if the metaspace is not bounded)</li>
+ * <li>javaplugin.evict.interval: the time in milliseconds between two checks (default 30000)</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginEvictor {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the loaded plugins
+     */
+    private final PluginRegistry registry;
+
+    /**
+     * Corresponds to the life of the loaded plugin files (visible contexts)
+     */
+    private final PluginLifecycle lifecycle;
+
+    /**
+     * Corresponds to the unloading of a plugin file
+     */
+    private final java.util.function.Consumer<String> unload;
+
+    /**
+     * Corresponds to the time (in nanoseconds) without any event after which an unused plugin file is unloaded (0 if disabled)
+     */
+    private final long idle;
+
+    /**
+     * Corresponds to the maximum number of loaded plugin files (0 if there is no limit)
+     */
+    private final int maxResident;
+
+    /**
+     * Corresponds to the fraction of the maximum heap beyond which all the unused plugin files are unloaded (0 if disabled)
+     */
+    private final double heapThreshold;
+
+    /**
+     * Corresponds to the fraction of the maximum metaspace beyond which all the unused plugin files are unloaded (0 if disabled)
+     */
+    private final double metaspaceThreshold;
+
+    /**
+     * Corresponds to the time (System.nanoTime()) of the last event of each loaded plugin file
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicLong> lastUse = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the estimated size (in bytes) of the classes of each loaded plugin file
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, Footprint> footprint = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the timer which checks the plugin files periodically (null if the eviction is disabled)
+     */
+    private final java.util.concurrent.ScheduledExecutorService timer;
+
+    /**
+     * Corresponds to the number of plugin files unloaded by this evictor
+     */
+    private final java.util.concurrent.atomic.LongAdder evicted = new java.util.concurrent.atomic.LongAdder();
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a PluginEvictor configured by the system properties
+     * @param registry Corresponds to the loaded plugins
+     * @param lifecycle Corresponds to the life of the loaded plugin files (visible contexts)
+     * @param unload Corresponds to the unloading of a plugin file
+     */
+    PluginEvictor(PluginRegistry registry, PluginLifecycle lifecycle, java.util.function.Consumer<String> unload) {
+        this(registry, lifecycle, unload, Long.getLong("javaplugin.evict.idle", 0), Integer.getInteger("javaplugin.evict.maxResident", 0), fraction("javaplugin.evict.heapThreshold"), fraction("javaplugin.evict.metaspaceThreshold"), Long.getLong("javaplugin.evict.interval", 30000));
+    }
+
+    /**
+     * Create a PluginEvictor
+     * @param registry Corresponds to the loaded plugins
+     * @param lifecycle Corresponds to the life of the loaded plugin files (visible contexts)
+     * @param unload Corresponds to the unloading of a plugin file
+     * @param idle Corresponds to the time (in milliseconds) without any event after which an unused plugin file is unloaded (0 to disable)
+     * @param maxResident Corresponds to the maximum number of loaded plugin files (0 for no limit)
+     * @param heapThreshold Corresponds to the fraction of the maximum heap beyond which all the unused plugin files are unloaded (0 to disable)
+     * @param metaspaceThreshold Corresponds to the fraction of the maximum metaspace beyond which all the unused plugin files are unloaded (0 to disable)
+     * @param interval Corresponds to the time in milliseconds between two checks
+     */
+    PluginEvictor(PluginRegistry registry, PluginLifecycle lifecycle, java.util.function.Consumer<String> unload, long idle, int maxResident, double heapThreshold, double metaspaceThreshold, long interval) {
+        this.registry = registry;
+        this.lifecycle = lifecycle;
+        this.unload = unload;
+        this.idle = java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Math.max(0, idle));
+        this.maxResident = Math.max(0, maxResident);
+        this.heapThreshold = heapThreshold;
+        this.metaspaceThreshold = metaspaceThreshold;
+        if((this.idle > 0 || this.maxResident > 0 || heapThreshold > 0 || metaspaceThreshold > 0) && interval > 0){
+            this.timer = java.util.concurrent.Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "JavaPlugin-Evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.timer.scheduleWithFixedDelay(this::check, interval, interval, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }else{
+            this.timer = null;
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Indicates that a plugin file has received an event
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void touch(String pluginFile) {
+        if(pluginFile == null)
+            return;
+        java.util.concurrent.atomic.AtomicLong last = lastUse.get(pluginFile);
+        if(last != null)
+            last.set(System.nanoTime());
+    }
+
+    /**
+     * Indicates that a plugin file has been loaded (its loading counts as its first use)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param classBytes Corresponds to the computation of the size of its classes (only done when the size is asked for the first time)
+     */
+    void loaded(String pluginFile, java.util.function.LongSupplier classBytes) {
+        lastUse.put(pluginFile, new java.util.concurrent.atomic.AtomicLong(System.nanoTime()));
+        footprint.put(pluginFile, new Footprint(classBytes));
+    }
+
+    /**
+     * Indicates that a plugin file has been unloaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void unloaded(String pluginFile) {
+        lastUse.remove(pluginFile);
+        footprint.remove(pluginFile);
+    }
+
+    /**
+     * Returns the number of loaded plugin files
+     * @return Returns the number of loaded plugin files
+     */
+    int resident() {
+        return registry.size();
+    }
+
+    /**
+     * Returns the number of plugin files unloaded by this evictor
+     * @return Returns the number of plugin files unloaded by this evictor
+     */
+    long evicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * Returns the estimated size (in bytes, uncompressed) of the classes of a loaded plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the estimated size of the classes of the plugin file or 0 if it is not loaded
+     */
+    long estimatedBytes(String pluginFile) {
+        Footprint f = (pluginFile == null) ? null : footprint.get(pluginFile);
+        return (f == null) ? 0 : f.bytes();
+    }
+
+    /**
+     * Returns the estimated size (in bytes, uncompressed) of the classes of all the loaded plugin files
+     * @return Returns the estimated size of the classes of all the loaded plugin files
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        for(Footprint f : footprint.values())
+            bytes += f.bytes();
+        return bytes;
+    }
+
+    /**
+     * Returns the used heap (in bytes)
+     * @return Returns the used heap
+     */
+    static long heapUsed() {
+        return java.lang.management.ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the used metaspace (in bytes)
+     * @return Returns the used metaspace or -1 if the JVM has no metaspace
+     */
+    static long metaspaceUsed() {
+        java.lang.management.MemoryPoolMXBean pool = metaspace();
+        return (pool == null) ? -1 : pool.getUsage().getUsed();
+    }
+
+    /**
+     * Stops the periodic checks
+     */
+    void shutdown() {
+        if(timer != null)
+            timer.shutdownNow();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Unloads the unused plugin files which have been idle for too long, the least recently used ones beyond the maximum number of loaded plugin files, and all the unused plugin files if the memory is running low
+     */
+    private void check() {
+        try {
+            java.util.List<String> unused = new java.util.ArrayList<>();
+            for(String file : registry.files()){
+                if(lifecycle.contexts(file) == 0)
+                    unused.add(file);
+            }
+            if(unused.isEmpty())
+                return;
+            unused.sort(java.util.Comparator.comparingLong(this::lastUse));
+            boolean pressure = isUnderPressure();
+            int excess = (maxResident > 0) ? registry.size() - maxResident : 0;
+            long now = System.nanoTime();
+            for(String file : unused){
+                if(pressure || excess > 0 || (idle > 0 && now - lastUse(file) >= idle)){
+                    excess--;
+                    evicted.increment();
+                    java.util.logging.Logger.getLogger(PluginEvictor.class.getName()).log(java.util.logging.Level.INFO, "Evicting {0} ({1} KB of classes{2})", new Object[]{file, estimatedBytes(file) / 1024, pressure ? ", memory pressure" : ""});
+                    unload.accept(file);
+                }
+            }
+        } catch (RuntimeException ex) {
+            java.util.logging.Logger.getLogger(PluginEvictor.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Returns the time (System.nanoTime()) of the last event of a plugin file. A plugin file seen for the first time (registered before {@link #loaded(String, java.util.function.LongSupplier)} is called) is considered used now
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the time of the last event of the plugin file (or of its loading)
+     */
+    private long lastUse(String pluginFile) {
+        java.util.concurrent.atomic.AtomicLong last = lastUse.get(pluginFile);
+        if(last == null){
+            if(!registry.contains(pluginFile))
+                return System.nanoTime();
+            last = lastUse.computeIfAbsent(pluginFile, f -> new java.util.concurrent.atomic.AtomicLong(System.nanoTime()));
+        }
+        return last.get();
+    }
+
+    /**
+     * Determines if the heap or the metaspace is beyond its threshold
+     * @return Returns true if the memory is running low, otherwise false
+     */
+    private boolean isUnderPressure() {
+        if(heapThreshold > 0){
+            java.lang.management.MemoryUsage heap = java.lang.management.ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            if(heap.getMax() > 0 && heap.getUsed() >= heapThreshold * heap.getMax())
+                return true;
+        }
+        if(metaspaceThreshold > 0){
+            java.lang.management.MemoryPoolMXBean pool = metaspace();
+            if(pool != null){
+                java.lang.management.MemoryUsage usage = pool.getUsage();
+                if(usage.getMax() > 0 && usage.getUsed() >= metaspaceThreshold * usage.getMax())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the memory pool of the metaspace
+     * @return Returns the memory pool of the metaspace or null if the JVM has none
+     */
+    private static java.lang.management.MemoryPoolMXBean metaspace() {
+        for(java.lang.management.MemoryPoolMXBean pool : java.lang.management.ManagementFactory.getMemoryPoolMXBeans()){
+            if("Metaspace".equals(pool.getName()))
+                return pool;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a fraction (between 0 and 1) defined by a system property
+     * @param property Corresponds to the name of the system property
+     * @return Returns the fraction or 0 if the system property is missing or invalid
+     */
+    private static double fraction(String property) {
+        String value = System.getProperty(property);
+        if(value == null)
+            return 0;
+        try {
+            double d = Double.parseDouble(value.trim());
+            return (d > 0 && d <= 1) ? d : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents the estimated size of the classes of a loaded plugin file, computed the first time it is asked
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Footprint {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the computation of the size
+         */
+        private final java.util.function.LongSupplier supplier;
+
+        /**
+         * Corresponds to the size (in bytes) or -1 if it has not been computed yet
+         */
+        private volatile long bytes = -1;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Footprint
+         * @param supplier Corresponds to the computation of the size
+         */
+        private Footprint(java.util.function.LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+
+
+    //METHODE PRIVATE
+        /**
+         * Returns the size of the classes (computed the first time)
+         * @return Returns the size of the classes in bytes
+         */
+        private long bytes() {
+            long b = bytes;
+            if(b < 0){
+                b = Math.max(0, supplier.getAsLong());
+                bytes = b;
+            }
+            return b;
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
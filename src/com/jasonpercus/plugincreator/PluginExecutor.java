@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+
+
+
+/**
+ * This class represents the bounded executor of one plugin file. Each context has its own serial lane: the events of a same context are executed in order, those of different contexts in parallel. The number of pending events is bounded per lane and for the whole executor, so the backlog of a plugin does not grow with its number of contexts
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginExecutor {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the maximum number of events executed by a lane before giving the thread back to the other lanes
+     */
+    private static final int BATCH = 16;
+
+    /**
+     * Corresponds to the key of the lane of the events which have no context
+     */
+    private static final Object NO_CONTEXT = new Object();
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the path of the plugin file
+     */
+    private final String pluginFile;
+
+    /**
+     * Corresponds to the threads which execute the lanes
+     */
+    private final java.util.concurrent.ExecutorService executor;
+
+    /**
+     * Corresponds to the serial lanes (one event at a time per lane) associated with their respective context
+     */
+    private final java.util.concurrent.ConcurrentHashMap<Object, Lane> lanes = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the maximum number of pending events per lane
+     */
+    private final int queueSize;
+
+    /**
+     * Corresponds to what a lane does when it is full
+     */
+    private final OverflowPolicy policy;
+
+    /**
+     * Corresponds to the timer which wakes up the lanes holding a coalescible event (null if the coalescing is disabled)
+     */
+    private final java.util.concurrent.ScheduledExecutorService timer;
+
+    /**
+     * Corresponds to the maximum number of pending events of the executor, all lanes together
+     */
+    private final int maxPending;
+
+    /**
+     * Corresponds to the room left in the executor: one permit per event which can still be queued, all lanes together
+     */
+    private final java.util.concurrent.Semaphore room;
+
+    /**
+     * Corresponds to the number of pending events
+     */
+    private final java.util.concurrent.atomic.AtomicInteger pending = new java.util.concurrent.atomic.AtomicInteger();
+
+    /**
+     * Corresponds to the number of events dropped or refused
+     */
+    private final java.util.concurrent.atomic.LongAdder rejected = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Corresponds to the number of events replaced by a more recent one
+     */
+    private final java.util.concurrent.atomic.LongAdder coalesced = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Determines if the executor has been shut down
+     */
+    private volatile boolean shutdown;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create a PluginExecutor
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param threads Corresponds to the maximum number of threads (platform mode)
+     * @param queueSize Corresponds to the maximum number of pending events per lane
+     * @param maxPending Corresponds to the maximum number of pending events of the executor, all lanes together
+     * @param policy Corresponds to what a lane (or the executor) does when it is full
+     * @param mode Corresponds to the kind of threads which execute the lanes
+     * @param timer Corresponds to the timer which wakes up the lanes holding a coalescible event (null if the coalescing is disabled)
+     */
+    PluginExecutor(String pluginFile, int threads, int queueSize, int maxPending, OverflowPolicy policy, DispatchMode mode, java.util.concurrent.ScheduledExecutorService timer) {
+        this.pluginFile = pluginFile;
+        this.queueSize = Math.max(1, queueSize);
+        this.maxPending = Math.max(1, maxPending);
+        this.room = new java.util.concurrent.Semaphore(this.maxPending);
+        this.policy = policy;
+        this.timer = timer;
+        int n = Math.max(1, threads);
+        String name = "JavaPlugin-" + new java.io.File(pluginFile).getName() + "-";
+        if(mode == DispatchMode.VIRTUAL){
+            this.executor = DispatchMode.newVirtualExecutor(name);
+        }else{
+            java.util.concurrent.atomic.AtomicInteger count = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.ThreadPoolExecutor pool = new java.util.concurrent.ThreadPoolExecutor(n, n, 60, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<>(), (Runnable r) -> {
+                Thread t = new Thread(r, name + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Submits an event to the lane of its context. If the executor is full, the event replaces the oldest pending event of its lane (or is refused if its lane has none), except with the BLOCK policy where the caller waits until an event leaves the executor
+     * @param context Corresponds to the context (or ID) of the action or null if the event has none
+     * @param target Corresponds to the EventManager which receives the event
+     * @param type Corresponds to the type of the event
+     * @param scope Corresponds to what the event is about (the context, the device...). Two events of the same type, for the same target and the same scope can be coalesced
+     * @param window Corresponds to the time (in nanoseconds) during which a coalescible event waits for a more recent one, or 0 if the event is not coalescible
+     * @param task Corresponds to the delivery of the event
+     */
+    void execute(Context context, Object target, Object type, Object scope, long window, Runnable task) {
+        if(shutdown){
+            rejected.increment();
+            return;
+        }
+        boolean reserved = reserve();
+        if(shutdown){
+            rejected.increment();
+            return;
+        }
+        Object key = (context == null) ? NO_CONTEXT : context;
+        Delivery delivery = new Delivery(target, type, scope, (window > 0 && timer != null) ? System.nanoTime() + window : 0, task);
+        while(true){
+            Lane lane = lanes.get(key);
+            if(lane == null)
+                lane = lanes.computeIfAbsent(key, Lane::new);
+            if(lane.offer(delivery, reserved))
+                return;
+        }
+    }
+
+    /**
+     * Releases the lane of a context once its pending events have been executed (for example after a willDisappear event)
+     * @param context Corresponds to the context (or ID) of the action
+     */
+    void retire(Context context) {
+        if(context == null) return;
+        Lane lane = lanes.get(context);
+        if(lane != null)
+            lane.retire();
+    }
+
+    /**
+     * Stops accepting events and releases the threads once the pending events have been executed
+     */
+    void shutdown() {
+        shutdown = true;
+        for(Lane lane : lanes.values()){
+            boolean parked;
+            synchronized(lane){
+                lane.notifyAll();
+                parked = lane.parked;
+                lane.parked = false;
+            }
+            //A lane waiting for the timer is submitted now: the timer could no longer submit it once the executor is shut down
+            if(parked)
+                lane.schedule();
+        }
+        //The callers waiting for room (BLOCK policy) are woken up: their events are refused
+        room.release(maxPending);
+        executor.shutdown();
+    }
+
+    /**
+     * Waits until the pending events have been executed after a shutdown
+     * @param timeout Corresponds to the maximum time to wait (in milliseconds)
+     * @return Returns true if the executor has terminated, false if the timeout elapsed
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    boolean awaitTermination(long timeout) throws InterruptedException {
+        return executor.awaitTermination(timeout, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the path of the plugin file
+     * @return Returns the path of the plugin file
+     */
+    String getPluginFile() {
+        return pluginFile;
+    }
+
+    /**
+     * Returns the number of lanes (contexts) currently alive
+     * @return Returns the number of lanes currently alive
+     */
+    int lanes() {
+        return lanes.size();
+    }
+
+    /**
+     * Returns the number of pending events
+     * @return Returns the number of pending events
+     */
+    int queueDepth() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of events dropped or refused
+     * @return Returns the number of events dropped or refused
+     */
+    long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of events replaced by a more recent one
+     * @return Returns the number of events replaced by a more recent one
+     */
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+
+
+//METHODE PRIVATE
+    /**
+     * Reserves the room of an event in the executor. With the BLOCK policy the caller waits until an event of any lane leaves the executor
+     * @return Returns true if the room has been reserved, false if the executor is full
+     */
+    private boolean reserve() {
+        if(room.tryAcquire())
+            return true;
+        if(policy != OverflowPolicy.BLOCK)
+            return false;
+        try {
+            room.acquire();
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents an event waiting to be delivered
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Delivery {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the EventManager which receives the event
+         */
+        private final Object target;
+
+        /**
+         * Corresponds to the type of the event
+         */
+        private final Object type;
+
+        /**
+         * Corresponds to what the event is about (the context, the device...)
+         */
+        private final Object scope;
+
+        /**
+         * Corresponds to the time (System.nanoTime) before which a coalescible event must not be delivered, or 0 if the event is not coalescible
+         */
+        private final long deadline;
+
+        /**
+         * Corresponds to the delivery of the event
+         */
+        private Runnable task;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Delivery
+         * @param target Corresponds to the EventManager which receives the event
+         * @param type Corresponds to the type of the event
+         * @param scope Corresponds to what the event is about (the context, the device...)
+         * @param deadline Corresponds to the time (System.nanoTime) before which a coalescible event must not be delivered, or 0 if the event is not coalescible
+         * @param task Corresponds to the delivery of the event
+         */
+        private Delivery(Object target, Object type, Object scope, long deadline, Runnable task) {
+            this.target = target;
+            this.type = type;
+            this.scope = scope;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+
+
+    //METHODE PRIVATE
+        /**
+         * Determines if two deliveries concern the same type of event, for the same target and the same scope
+         * @param other Corresponds to the other delivery
+         * @return Returns true if they can be coalesced, otherwise false
+         */
+        private boolean sameKey(Delivery other) {
+            return target == other.target && java.util.Objects.equals(type, other.type) && java.util.Objects.equals(scope, other.scope);
+        }
+
+
+
+    }
+
+    /**
+     * This class represents a serial lane: its events are executed one after the other, in their order of arrival
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private final class Lane implements Runnable {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the key of the lane (the context or NO_CONTEXT)
+         */
+        private final Object key;
+
+        /**
+         * Corresponds to the pending events
+         */
+        private final java.util.ArrayDeque<Delivery> queue = new java.util.ArrayDeque<>();
+
+        /**
+         * Determines if the lane is submitted to (or running on) the executor
+         */
+        private boolean scheduled;
+
+        /**
+         * Determines if the lane must be released once it is empty
+         */
+        private boolean retiring;
+
+        /**
+         * Determines if the lane has been released (a new lane must be used for its context)
+         */
+        private boolean dead;
+
+        /**
+         * Determines if the lane waits for the timer (its first event is a coalescible one whose window has not elapsed)
+         */
+        private boolean parked;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Lane
+         * @param key Corresponds to the key of the lane (the context or NO_CONTEXT)
+         */
+        private Lane(Object key) {
+            this.key = key;
+        }
+
+
+
+    //METHODE PUBLIC
+        /**
+         * Executes the pending events of the lane (all of them once the executor is shut down, so none is lost before the plugin is unloaded)
+         */
+        @Override
+        public void run() {
+            for(int i = 0; i < BATCH || shutdown; i++){
+                Delivery delivery;
+                synchronized(this){
+                    delivery = queue.peekFirst();
+                    if(delivery == null){
+                        scheduled = false;
+                        releaseIfRetiring();
+                        return;
+                    }
+                    if(delivery.deadline != 0){
+                        long wait = delivery.deadline - System.nanoTime();
+                        if(wait > 0 && !shutdown){
+                            try {
+                                timer.schedule(this::wake, wait, java.util.concurrent.TimeUnit.NANOSECONDS);
+                                parked = true;
+                                return;
+                            } catch (java.util.concurrent.RejectedExecutionException ex) {}
+                        }
+                    }
+                    queue.pollFirst();
+                    notifyAll();
+                }
+                pending.decrementAndGet();
+                room.release();
+                try {
+                    delivery.task.run();
+                } catch (Throwable ex) {
+                    java.util.logging.Logger.getLogger(PluginExecutor.class.getName()).log(java.util.logging.Level.SEVERE, pluginFile, ex);
+                    if(ex instanceof VirtualMachineError){
+                        //The lane is submitted again before the error ends the thread, otherwise its context would no longer receive any event
+                        schedule();
+                        throw (VirtualMachineError) ex;
+                    }
+                }
+            }
+            schedule();
+        }
+
+
+
+    //METHODES PRIVATES
+        /**
+         * Asks the lane to be released once its pending events have been executed. An event offered meanwhile does not cancel the release: it is executed first
+         */
+        private synchronized void retire() {
+            retiring = true;
+            if(!scheduled)
+                releaseIfRetiring();
+        }
+
+        /**
+         * Releases the lane if it has been asked to and if it is idle. Must be called while holding the monitor of the lane
+         */
+        private void releaseIfRetiring() {
+            if(retiring && !dead && queue.isEmpty()){
+                dead = true;
+                lanes.remove(key, this);
+            }
+        }
+
+        /**
+         * Adds an event to the lane by applying the overflow policy if the lane or the executor is full
+         * @param delivery Corresponds to the event
+         * @param reserved Determines if the room of the event has been reserved in the executor (false if the executor is full)
+         * @return Returns false if the lane has been released (the event must be offered to a new lane, with its room), otherwise true
+         */
+        private boolean offer(Delivery delivery, boolean reserved) {
+            boolean submit;
+            synchronized(this){
+                if(dead)
+                    return false;
+                if(delivery.deadline != 0 && replace(delivery)){
+                    if(reserved)
+                        room.release();
+                    return true;
+                }
+                if(!reserved){
+                    //The executor is full: the event takes the room of the oldest pending event of its lane, or it is refused if its lane has none
+                    if(policy == OverflowPolicy.COALESCE && replace(delivery))
+                        return true;
+                    if(policy == OverflowPolicy.BLOCK || queue.isEmpty()){
+                        rejected.increment();
+                        return true;
+                    }
+                    queue.pollFirst();
+                    rejected.increment();
+                }else if(queue.size() >= queueSize){
+                    switch(policy){
+                        case BLOCK:
+                            try {
+                                while(queue.size() >= queueSize && !shutdown)
+                                    wait();
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                            if(dead)
+                                return false;
+                            if(queue.size() >= queueSize){
+                                rejected.increment();
+                                room.release();
+                                return true;
+                            }
+                            break;
+                        case COALESCE:
+                            if(replace(delivery)){
+                                room.release();
+                                return true;
+                            }
+                            dropOldest();
+                            break;
+                        default:
+                            dropOldest();
+                            break;
+                    }
+                }
+                queue.addLast(delivery);
+                if(reserved)
+                    pending.incrementAndGet();
+                submit = !scheduled;
+                scheduled = true;
+            }
+            if(submit)
+                schedule();
+            return true;
+        }
+
+        /**
+         * Replaces the pending event of the same type, for the same target and the same scope by a more recent one. It is only replaced if it is the last pending event of this target, so the order of the events seen by the target does not change. Must be called while holding the monitor of the lane
+         * @param delivery Corresponds to the more recent event
+         * @return Returns true if a pending event has been replaced, otherwise false
+         */
+        private boolean replace(Delivery delivery) {
+            java.util.Iterator<Delivery> it = queue.descendingIterator();
+            while(it.hasNext()){
+                Delivery d = it.next();
+                if(d.target == delivery.target){
+                    if(!d.sameKey(delivery))
+                        return false;
+                    d.task = delivery.task;
+                    coalesced.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Drops the oldest pending event
+         */
+        private void dropOldest() {
+            if(queue.pollFirst() != null){
+                pending.decrementAndGet();
+                room.release();
+                rejected.increment();
+            }
+        }
+
+        /**
+         * Submits the lane to the executor when the window of its first event has elapsed, unless it has already been submitted by the shutdown
+         */
+        private void wake() {
+            synchronized(this){
+                if(!parked)
+                    return;
+                parked = false;
+            }
+            schedule();
+        }
+
+        /**
+         * Submits the lane to the executor
+         */
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (java.util.concurrent.RejectedExecutionException ex) {
+                synchronized(this){
+                    int dropped = queue.size();
+                    queue.clear();
+                    scheduled = false;
+                    dead = true;
+                    lanes.remove(key, this);
+                    pending.addAndGet(-dropped);
+                    room.release(dropped);
+                    rejected.add(dropped);
+                    notifyAll();
+                }
+            }
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
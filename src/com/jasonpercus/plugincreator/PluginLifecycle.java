@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.util.OS;
+
+
+
+/**
+ * This class follows the life of the loaded plugin files: the contexts which use them, the changes of the files on the disk and the copies from which they are loaded. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.unload.delay: the time in milliseconds after which a plugin file no longer used by any context is unloaded (negative to never unload, as by default: the plugins keep their state when their actions are hidden by a page or profile switch)</li>
+ * <li>javaplugin.watch: false to stop watching the plugin files (default true)</li>
+ * <li>javaplugin.shadowCopy: true to load a copy of each plugin file, so the original file is never locked and can be replaced (default true on Windows)</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginLifecycle {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the time (in milliseconds) during which the changes of a plugin file are grouped before it is reloaded
+     */
+    private static final long DEBOUNCE = 500;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the object notified of the changes
+     */
+    private final Listener listener;
+
+    /**
+     * Corresponds to the time (in milliseconds) after which an unused plugin file is unloaded (negative to never unload)
+     */
+    private final long unloadDelay;
+
+    /**
+     * Determines if the plugin files are watched
+     */
+    private final boolean watch;
+
+    /**
+     * Determines if the plugin files are loaded from a copy
+     */
+    private final boolean shadowCopy;
+
+    /**
+     * Corresponds to the plugin file used by each visible context
+     */
+    private final java.util.HashMap<Context, String> fileByContext = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the visible contexts of each plugin file
+     */
+    private final java.util.HashMap<String, java.util.Set<Context>> contextsByFile = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the scheduled unloading of each unused plugin file
+     */
+    private final java.util.HashMap<String, java.util.concurrent.ScheduledFuture<?>> unloads = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the scheduled notification of each modified plugin file
+     */
+    private final java.util.HashMap<String, java.util.concurrent.ScheduledFuture<?>> changes = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the watched plugin files (the key is the absolute path)
+     */
+    private final java.util.concurrent.ConcurrentHashMap<java.nio.file.Path, String> watched = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the watched folders
+     */
+    private final java.util.Set<java.nio.file.Path> folders = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    /**
+     * Corresponds to the copies of the plugin files not deleted yet
+     */
+    private final java.util.Set<java.io.File> copies = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    /**
+     * Corresponds to the timer which executes the delayed tasks
+     */
+    private final java.util.concurrent.ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Corresponds to the service which watches the folders of the plugin files (null until a plugin file is watched)
+     */
+    private java.nio.file.WatchService service;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a PluginLifecycle configured by the system properties
+     * @param listener Corresponds to the object notified of the changes
+     */
+    PluginLifecycle(Listener listener) {
+        this(listener, Long.getLong("javaplugin.unload.delay", -1), !"false".equalsIgnoreCase(System.getProperty("javaplugin.watch")), Boolean.parseBoolean(System.getProperty("javaplugin.shadowCopy", String.valueOf(OS.IS_WINDOWS))));
+    }
+
+    /**
+     * Create a PluginLifecycle
+     * @param listener Corresponds to the object notified of the changes
+     * @param unloadDelay Corresponds to the time (in milliseconds) after which an unused plugin file is unloaded (negative to never unload)
+     * @param watch Determines if the plugin files are watched
+     * @param shadowCopy Determines if the plugin files are loaded from a copy
+     */
+    PluginLifecycle(Listener listener, long unloadDelay, boolean watch, boolean shadowCopy) {
+        this.listener = listener;
+        this.unloadDelay = unloadDelay;
+        this.watch = watch;
+        this.shadowCopy = shadowCopy;
+        this.timer = new java.util.concurrent.ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+            Thread thread = new Thread(r, "JavaPlugin-Lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Indicates that a context is visible and uses a plugin file. If the context used another plugin file which is no longer used, this one will be unloaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param context Corresponds to the context (or ID) of the action
+     */
+    synchronized void attach(String pluginFile, Context context) {
+        if(context == null)
+            return;
+        String previous = (pluginFile == null) ? fileByContext.remove(context) : fileByContext.put(context, pluginFile);
+        if(previous != null && !previous.equals(pluginFile))
+            release(previous, context);
+        if(pluginFile != null){
+            contextsByFile.computeIfAbsent(pluginFile, f -> new java.util.HashSet<>()).add(context);
+            cancel(unloads, pluginFile);
+        }
+    }
+
+    /**
+     * Indicates that a context is no longer visible. If its plugin file is no longer used, it will be unloaded
+     * @param context Corresponds to the context (or ID) of the action
+     */
+    synchronized void detach(Context context) {
+        String pluginFile = (context == null) ? null : fileByContext.remove(context);
+        if(pluginFile != null)
+            release(pluginFile, context);
+    }
+
+    /**
+     * Returns the number of visible contexts which use a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the number of visible contexts which use the plugin file
+     */
+    synchronized int contexts(String pluginFile) {
+        java.util.Set<Context> set = (pluginFile == null) ? null : contextsByFile.get(pluginFile);
+        return (set == null) ? 0 : set.size();
+    }
+
+    /**
+     * Returns the file from which a plugin file must be loaded: a copy of it if the shadow copy is enabled, otherwise the plugin file itself. The copy must be given back with {@link #close(java.io.File)} once its class loader is closed
+     * @param pluginFile Corresponds to the plugin file
+     * @return Returns the file from which the plugin file must be loaded
+     * @throws java.io.IOException If the copy cannot be made
+     */
+    java.io.File open(java.io.File pluginFile) throws java.io.IOException {
+        if(!shadowCopy)
+            return pluginFile;
+        java.nio.file.Path copy = java.nio.file.Files.createTempFile("javaplugin-", "-" + pluginFile.getName());
+        copies.add(copy.toFile());
+        try {
+            java.nio.file.Files.copy(pluginFile.toPath(), copy, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (java.io.IOException ex) {
+            close(copy.toFile());
+            throw ex;
+        }
+        return copy.toFile();
+    }
+
+    /**
+     * Deletes a copy of a plugin file made by {@link #open(java.io.File)} (nothing is done for a plugin file loaded without copy). A copy which cannot be deleted yet is deleted again when the host stops
+     * @param source Corresponds to the file from which the plugin file has been loaded
+     */
+    void close(java.io.File source) {
+        if(source == null || !copies.contains(source))
+            return;
+        try {
+            java.nio.file.Files.deleteIfExists(source.toPath());
+            copies.remove(source);
+        } catch (java.io.IOException ex) {
+            java.util.logging.Logger.getLogger(PluginLifecycle.class.getName()).log(java.util.logging.Level.FINE, "Unable to delete " + source, ex);
+        }
+    }
+
+    /**
+     * Starts watching a plugin file. The listener is notified when it is modified, replaced or deleted
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void watch(String pluginFile) {
+        if(!watch || pluginFile == null)
+            return;
+        java.nio.file.Path path = java.nio.file.Paths.get(pluginFile).toAbsolutePath().normalize();
+        java.nio.file.Path folder = path.getParent();
+        if(folder == null || watched.putIfAbsent(path, pluginFile) != null)
+            return;
+        try {
+            synchronized(this){
+                if(service == null){
+                    service = folder.getFileSystem().newWatchService();
+                    Thread thread = new Thread(this::poll, "JavaPlugin-Watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                if(folders.add(folder))
+                    folder.register(service, java.nio.file.StandardWatchEventKinds.ENTRY_CREATE, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY, java.nio.file.StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (java.io.IOException | UnsupportedOperationException ex) {
+            watched.remove(path);
+            java.util.logging.Logger.getLogger(PluginLifecycle.class.getName()).log(java.util.logging.Level.WARNING, "Unable to watch " + pluginFile, ex);
+        }
+    }
+
+    /**
+     * Stops watching a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void unwatch(String pluginFile) {
+        if(pluginFile != null)
+            watched.remove(java.nio.file.Paths.get(pluginFile).toAbsolutePath().normalize());
+    }
+
+    /**
+     * Stops watching the plugin files, cancels the delayed tasks and deletes the remaining copies of the plugin files
+     */
+    void shutdown() {
+        timer.shutdownNow();
+        for(java.io.File copy : copies){
+            close(copy);
+            if(copies.remove(copy))
+                copy.deleteOnExit();
+        }
+        synchronized(this){
+            if(service != null){
+                try {
+                    service.close();
+                } catch (java.io.IOException ex) {}
+            }
+        }
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Removes a context from the contexts of a plugin file and schedules the unloading of the plugin file if it is no longer used. Must be called while holding the monitor of this object
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param context Corresponds to the context (or ID) of the action
+     */
+    private void release(String pluginFile, Context context) {
+        java.util.Set<Context> set = contextsByFile.get(pluginFile);
+        if(set == null || !set.remove(context) || !set.isEmpty())
+            return;
+        contextsByFile.remove(pluginFile);
+        if(unloadDelay >= 0)
+            schedule(unloads, pluginFile, () -> {
+                if(contexts(pluginFile) == 0)
+                    listener.unused(pluginFile);
+            }, unloadDelay);
+    }
+
+    /**
+     * Schedules a task for a plugin file, replacing its previous scheduled task of the same kind
+     * @param scheduled Corresponds to the scheduled tasks of this kind
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param task Corresponds to the task
+     * @param delay Corresponds to the delay in milliseconds
+     */
+    private synchronized void schedule(java.util.Map<String, java.util.concurrent.ScheduledFuture<?>> scheduled, String pluginFile, Runnable task, long delay) {
+        cancel(scheduled, pluginFile);
+        try {
+            scheduled.put(pluginFile, timer.schedule(() -> {
+                synchronized(PluginLifecycle.this){
+                    scheduled.remove(pluginFile);
+                }
+                task.run();
+            }, delay, java.util.concurrent.TimeUnit.MILLISECONDS));
+        } catch (java.util.concurrent.RejectedExecutionException ex) {}
+    }
+
+    /**
+     * Cancels the scheduled task of a plugin file. Must be called while holding the monitor of this object
+     * @param scheduled Corresponds to the scheduled tasks of this kind
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    private void cancel(java.util.Map<String, java.util.concurrent.ScheduledFuture<?>> scheduled, String pluginFile) {
+        java.util.concurrent.ScheduledFuture<?> future = scheduled.remove(pluginFile);
+        if(future != null)
+            future.cancel(false);
+    }
+
+    /**
+     * Waits for the changes of the watched folders and notifies the listener (once the changes of a plugin file have stopped for a short time)
+     */
+    private void poll() {
+        try {
+            while(true){
+                java.nio.file.WatchKey key = service.take();
+                java.nio.file.Path folder = (java.nio.file.Path) key.watchable();
+                for(java.nio.file.WatchEvent<?> event : key.pollEvents()){
+                    if(!(event.context() instanceof java.nio.file.Path))
+                        continue;
+                    String pluginFile = watched.get(folder.resolve((java.nio.file.Path) event.context()).toAbsolutePath().normalize());
+                    if(pluginFile != null)
+                        schedule(changes, pluginFile, () -> listener.changed(pluginFile), DEBOUNCE);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | java.nio.file.ClosedWatchServiceException ex) {}
+    }
+
+
+
+//INTERFACE
+    /**
+     * This interface represents an object notified of the changes of the plugin files
+     * @author JasonPercus
+     * @version 1.0
+     */
+    interface Listener {
+
+
+
+    //METHODES PUBLICS
+        /**
+         * When a plugin file has been modified, replaced or deleted
+         * @param pluginFile Corresponds to the path of the plugin file
+         */
+        void changed(String pluginFile);
+
+        /**
+         * When a plugin file is no longer used by any visible context
+         * @param pluginFile Corresponds to the path of the plugin file
+         */
+        void unused(String pluginFile);
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
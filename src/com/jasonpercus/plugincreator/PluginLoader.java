@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class loads the plugin files in the background, only once per plugin file (single-flight). The reloading and unloading of a plugin file are serialized with its loading. The events of a plugin file which is being loaded are buffered and replayed in their order of arrival when the loading ends, whether it succeeded or failed. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.load.threads: the number of threads which load the plugin files (default 2)</li>
+ * <li>javaplugin.load.bufferSize: the maximum number of buffered events per plugin file, the oldest one is dropped beyond (default 1024)</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginLoader {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the loaded plugins
+     */
+    private final PluginRegistry registry;
+
+    /**
+     * Corresponds to the loadings in progress associated with their respective plugin file
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, Pending> pending = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the threads which load the plugin files
+     */
+    private final java.util.concurrent.ThreadPoolExecutor pool;
+
+    /**
+     * Corresponds to the maximum number of buffered events per plugin file
+     */
+    private final int bufferSize;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a PluginLoader configured by the system properties
+     * @param registry Corresponds to the loaded plugins
+     */
+    PluginLoader(PluginRegistry registry) {
+        this(registry, Integer.getInteger("javaplugin.load.threads", 2), Integer.getInteger("javaplugin.load.bufferSize", 1024));
+    }
+
+    /**
+     * Create a PluginLoader
+     * @param registry Corresponds to the loaded plugins
+     * @param threads Corresponds to the number of threads which load the plugin files
+     * @param bufferSize Corresponds to the maximum number of buffered events per plugin file
+     */
+    PluginLoader(PluginRegistry registry, int threads, int bufferSize) {
+        this.registry = registry;
+        this.bufferSize = Math.max(1, bufferSize);
+        java.util.concurrent.atomic.AtomicInteger count = new java.util.concurrent.atomic.AtomicInteger();
+        int n = Math.max(1, threads);
+        this.pool = new java.util.concurrent.ThreadPoolExecutor(n, n, 30, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<>(), (Runnable r) -> {
+            Thread thread = new Thread(r, "JavaPlugin-Loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Starts the loading of a plugin file in the background if it is neither loaded nor being loaded. If a task (reloading, unloading) is in progress on the plugin file, the loading is queued behind it
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param loading Corresponds to the loading of the plugin file (it must register the plugin in the registry)
+     */
+    void load(String pluginFile, Runnable loading) {
+        if(pluginFile == null)
+            return;
+        while(true){
+            Pending previous = pending.get(pluginFile);
+            if(previous == null){
+                if(registry.contains(pluginFile))
+                    return;
+                Pending p = new Pending(true);
+                if(pending.putIfAbsent(pluginFile, p) != null)
+                    continue;
+                if(registry.contains(pluginFile)){
+                    replay(pluginFile, p);
+                    return;
+                }
+                try {
+                    pool.execute(() -> {
+                        try {
+                            loading.run();
+                        } catch (RuntimeException | LinkageError ex) {
+                            java.util.logging.Logger.getLogger(PluginLoader.class.getName()).log(java.util.logging.Level.SEVERE, "Unable to load " + pluginFile, ex);
+                        } finally {
+                            replay(pluginFile, p);
+                        }
+                    });
+                } catch (java.util.concurrent.RejectedExecutionException ex) {
+                    replay(pluginFile, p);
+                }
+                return;
+            }
+            synchronized(previous){
+                if(!previous.done){
+                    if(!previous.loading){
+                        previous.loading = true;
+                        previous.buffer.add(new Task(pluginFile, () -> {
+                            if(!registry.contains(pluginFile))
+                                loading.run();
+                        }));
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a task on a plugin file (reloading, unloading) in the background, after its loading or its previous task if there is one. The events of the plugin file are buffered until the task ends
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param task Corresponds to the task
+     */
+    void exclusive(String pluginFile, Runnable task) {
+        if(pluginFile == null)
+            return;
+        Task t = new Task(pluginFile, task);
+        while(true){
+            Pending p = new Pending(false);
+            Pending previous = pending.putIfAbsent(pluginFile, p);
+            if(previous == null){
+                try {
+                    pool.execute(() -> {
+                        t.run();
+                        replay(pluginFile, p);
+                    });
+                } catch (java.util.concurrent.RejectedExecutionException ex) {
+                    replay(pluginFile, p);
+                }
+                return;
+            }
+            synchronized(previous){
+                if(!previous.done){
+                    previous.buffer.add(t);
+                    previous.loading = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes an action once a plugin file is no longer being loaded. If it is being loaded, the action is buffered and executed when the loading ends, otherwise it is executed immediately
+     * @param pluginFile Corresponds to the path of the plugin file (or null)
+     * @param action Corresponds to the action (usually the delivery of an event)
+     */
+    void whenLoaded(String pluginFile, Runnable action) {
+        Pending p = (pluginFile == null) ? null : pending.get(pluginFile);
+        if(p != null){
+            synchronized(p){
+                if(!p.done){
+                    if(p.buffer.size() >= bufferSize)
+                        dropOldest(p);
+                    p.buffer.add(action);
+                    return;
+                }
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Determines if a plugin file is being loaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns true if the plugin file is being loaded, otherwise false
+     */
+    boolean isLoading(String pluginFile) {
+        return pluginFile != null && pending.containsKey(pluginFile);
+    }
+
+    /**
+     * Stops the threads which load the plugin files
+     */
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Drops the oldest buffered event of a loading (the tasks are never dropped). Must be called while holding the monitor of the loading
+     * @param p Corresponds to the loading of the plugin file
+     */
+    private static void dropOldest(Pending p) {
+        java.util.Iterator<Runnable> it = p.buffer.iterator();
+        while(it.hasNext()){
+            if(!(it.next() instanceof Task)){
+                it.remove();
+                p.dropped++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executes the buffered actions of a plugin file in their order of arrival then ends its loading
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param p Corresponds to the loading of the plugin file
+     */
+    private void replay(String pluginFile, Pending p) {
+        while(true){
+            Runnable action;
+            synchronized(p){
+                action = p.buffer.poll();
+                if(action == null){
+                    p.done = true;
+                    pending.remove(pluginFile, p);
+                    if(p.dropped > 0)
+                        java.util.logging.Logger.getLogger(PluginLoader.class.getName()).log(java.util.logging.Level.WARNING, p.dropped + " event(s) of " + pluginFile + " dropped while it was loading");
+                    return;
+                }
+            }
+            try {
+                action.run();
+            } catch (RuntimeException | LinkageError ex) {
+                java.util.logging.Logger.getLogger(PluginLoader.class.getName()).log(java.util.logging.Level.SEVERE, pluginFile, ex);
+            }
+        }
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents a task on a plugin file (reloading, unloading). Unlike an event, it is never dropped when the buffer is full
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Task implements Runnable {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the path of the plugin file
+         */
+        private final String pluginFile;
+
+        /**
+         * Corresponds to the task
+         */
+        private final Runnable task;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Task
+         * @param pluginFile Corresponds to the path of the plugin file
+         * @param task Corresponds to the task
+         */
+        private Task(String pluginFile, Runnable task) {
+            this.pluginFile = pluginFile;
+            this.task = task;
+        }
+
+
+
+    //METHODE PUBLIC
+        /**
+         * Executes the task
+         */
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } catch (RuntimeException | LinkageError ex) {
+                java.util.logging.Logger.getLogger(PluginLoader.class.getName()).log(java.util.logging.Level.SEVERE, pluginFile, ex);
+            }
+        }
+
+
+
+    }
+
+    /**
+     * This class represents the loading in progress of a plugin file
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Pending {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the actions waiting for the end of the loading
+         */
+        private final java.util.ArrayDeque<Runnable> buffer = new java.util.ArrayDeque<>();
+
+        /**
+         * Corresponds to the number of actions dropped because the buffer was full
+         */
+        private int dropped;
+
+        /**
+         * Determines if the loading is over (the actions are no longer buffered)
+         */
+        private boolean done;
+
+        /**
+         * Determines if the plugin file is loaded once the loading and its queued tasks are over (a loading is then not queued again)
+         */
+        private boolean loading;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Pending
+         * @param loading Determines if it is the loading of the plugin file (false for a task: reloading, unloading)
+         */
+        private Pending(boolean loading) {
+            this.loading = loading;
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
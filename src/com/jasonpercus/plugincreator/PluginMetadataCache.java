@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents the on-disk cache of the EventManager classes found in each plugin file. An entry is identified by the size, the last modification date and the SHA-256 hash of the plugin file, so it is invalidated as soon as the plugin file changes. The cache file can be configured with the system property javaplugin.cache.file (default: javaplugin.cache in the plugin folder, empty to disable the cache)
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginMetadataCache {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the separator between the fingerprint and the class names of an entry
+     */
+    private static final String SEPARATOR = "|";
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the cache file (null if the cache is disabled)
+     */
+    private final java.io.File file;
+
+    /**
+     * Corresponds to the entries of the cache (the key is the absolute path of the plugin file)
+     */
+    private final java.util.Properties entries = new java.util.Properties();
+
+    /**
+     * Determines if the cache file has been read
+     */
+    private boolean read;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a PluginMetadataCache configured by the system property javaplugin.cache.file
+     */
+    PluginMetadataCache() {
+        this(defaultFile());
+    }
+
+    /**
+     * Create a PluginMetadataCache
+     * @param file Corresponds to the cache file (null to disable the cache)
+     */
+    PluginMetadataCache(java.io.File file) {
+        this.file = file;
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if the cache is enabled
+     * @return Returns true if the cache is enabled, otherwise false
+     */
+    boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Returns the fingerprint of a plugin file (size, last modification date and SHA-256 hash)
+     * @param pluginFile Corresponds to the plugin file
+     * @return Returns the fingerprint of the plugin file or null if the cache is disabled or if the plugin file cannot be read
+     */
+    String fingerprint(java.io.File pluginFile) {
+        if(file == null)
+            return null;
+        try (java.io.InputStream in = new java.io.FileInputStream(pluginFile)) {
+            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            int read;
+            while((read = in.read(buffer)) > 0)
+                digest.update(buffer, 0, read);
+            StringBuilder sb = new StringBuilder();
+            sb.append(pluginFile.length()).append(':').append(pluginFile.lastModified()).append(':');
+            for(byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (java.io.IOException | java.security.NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the EventManager classes of a plugin file found during a previous start
+     * @param pluginFile Corresponds to the plugin file
+     * @param fingerprint Corresponds to the current fingerprint of the plugin file
+     * @return Returns the full names of the classes or null if the plugin file is unknown or has changed
+     */
+    synchronized java.util.List<String> get(java.io.File pluginFile, String fingerprint) {
+        if(file == null || fingerprint == null)
+            return null;
+        readIfNecessary();
+        String entry = entries.getProperty(pluginFile.getAbsolutePath());
+        if(entry == null || !entry.startsWith(fingerprint + SEPARATOR))
+            return null;
+        String names = entry.substring(fingerprint.length() + SEPARATOR.length());
+        java.util.List<String> list = new java.util.ArrayList<>();
+        for(String name : names.split(",")){
+            if(!name.isEmpty())
+                list.add(name);
+        }
+        return list.isEmpty() ? null : list;
+    }
+
+    /**
+     * Stores the EventManager classes of a plugin file and saves the cache file
+     * @param pluginFile Corresponds to the plugin file
+     * @param fingerprint Corresponds to the fingerprint of the plugin file when the classes were found
+     * @param classNames Corresponds to the full names of the classes
+     */
+    synchronized void put(java.io.File pluginFile, String fingerprint, java.util.List<String> classNames) {
+        if(file == null || fingerprint == null)
+            return;
+        readIfNecessary();
+        StringBuilder sb = new StringBuilder(fingerprint).append(SEPARATOR);
+        for(int i = 0; i < classNames.size(); i++){
+            if(i > 0)
+                sb.append(',');
+            sb.append(classNames.get(i));
+        }
+        String entry = sb.toString();
+        if(entry.equals(entries.setProperty(pluginFile.getAbsolutePath(), entry)))
+            return;
+        save();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the cache file defined by the system property javaplugin.cache.file
+     * @return Returns the cache file or null if the cache is disabled
+     */
+    static java.io.File defaultFile() {
+        String path = System.getProperty("javaplugin.cache.file");
+        if(path == null)
+            return new java.io.File(System.getProperty("user.dir"), "javaplugin.cache");
+        return path.trim().isEmpty() ? null : new java.io.File(path.trim());
+    }
+
+    /**
+     * Reads the cache file the first time the cache is used
+     */
+    private void readIfNecessary() {
+        if(read)
+            return;
+        read = true;
+        if(!file.isFile())
+            return;
+        try (java.io.InputStream in = new java.io.FileInputStream(file)) {
+            entries.load(in);
+        } catch (java.io.IOException | IllegalArgumentException ex) {
+            entries.clear();
+            java.util.logging.Logger.getLogger(PluginMetadataCache.class.getName()).log(java.util.logging.Level.WARNING, "Ignored the cache file " + file, ex);
+        }
+    }
+
+    /**
+     * Saves the cache file (through a temporary file in order never to leave a partial cache file)
+     */
+    private void save() {
+        java.io.File tmp = new java.io.File(file.getAbsolutePath() + ".tmp");
+        try {
+            try (java.io.OutputStream out = new java.io.FileOutputStream(tmp)) {
+                entries.store(out, "JavaPlugin metadata cache");
+            }
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (java.io.IOException ex) {
+            tmp.delete();
+            java.util.logging.Logger.getLogger(PluginMetadataCache.class.getName()).log(java.util.logging.Level.WARNING, "Unable to save the cache file " + file, ex);
+        }
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents the list of plugins (files) associated with their respective EventManagers. Reads take no lock: they work on an immutable snapshot which is replaced (copy-on-write) each time a plugin is loaded or unloaded
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginRegistry {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to an empty list of EventManagers
+     */
+    static final EventManager[] EMPTY = new EventManager[0];
+
+
+
+//ATTRIBUTS
+    /**
+     * Serializes writers (loading and unloading of plugins)
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Corresponds to the current (immutable) snapshot of the loaded plugins
+     */
+    private volatile Snapshot snapshot = new Snapshot(new java.util.HashMap<>());
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if a plugin file is loaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns true if the plugin file is loaded, otherwise false
+     */
+    boolean contains(String pluginFile) {
+        return pluginFile != null && snapshot.byFile.containsKey(pluginFile);
+    }
+
+    /**
+     * Returns the EventManagers of a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the EventManagers of the plugin file or an empty array if it is not loaded
+     */
+    EventManager[] get(String pluginFile) {
+        if(pluginFile == null) return EMPTY;
+        Entry entry = snapshot.byFile.get(pluginFile);
+        return (entry == null) ? EMPTY : entry.managers;
+    }
+
+    /**
+     * Returns the EventManagers of a plugin file targeted by an action. If one of the EventManagers of the file is named after the action (simple or full class name), only this one is targeted, otherwise all the EventManagers of the file are
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param actionName Corresponds to the name of the action associated with the button
+     * @return Returns the targeted EventManagers or an empty array if the plugin file is not loaded
+     */
+    EventManager[] get(String pluginFile, String actionName) {
+        if(pluginFile == null) return EMPTY;
+        Entry entry = snapshot.byFile.get(pluginFile);
+        if(entry == null) return EMPTY;
+        if(actionName != null){
+            EventManager[] targets = entry.byAction.get(actionName);
+            if(targets != null) return targets;
+        }
+        return entry.managers;
+    }
+
+    /**
+     * Returns the EventManagers of a plugin file which subscribe to an event type (see {@link Subscriptions})
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param type Corresponds to the type of the event
+     * @return Returns the subscribed EventManagers or an empty array if there is none
+     */
+    EventManager[] get(String pluginFile, EventType type) {
+        if(pluginFile == null) return EMPTY;
+        Entry entry = snapshot.byFile.get(pluginFile);
+        return (entry == null) ? EMPTY : entry.byType[type.ordinal()];
+    }
+
+    /**
+     * Returns the loaded plugin files which have at least one EventManager subscribed to an event type (used by the broadcast events)
+     * @param type Corresponds to the type of the event
+     * @return Returns the subscribed plugin files (computed when a plugin file is loaded or unloaded)
+     */
+    String[] files(EventType type) {
+        return snapshot.filesByType[type.ordinal()];
+    }
+
+    /**
+     * Returns all the EventManagers of all the loaded plugin files
+     * @return Returns all the EventManagers of all the loaded plugin files
+     */
+    EventManager[] all() {
+        return snapshot.all;
+    }
+
+    /**
+     * Returns the list of the loaded plugin files
+     * @return Returns the list of the loaded plugin files
+     */
+    java.util.Set<String> files() {
+        return snapshot.byFile.keySet();
+    }
+
+    /**
+     * Returns the number of loaded plugin files
+     * @return Returns the number of loaded plugin files
+     */
+    int size() {
+        return snapshot.byFile.size();
+    }
+
+    /**
+     * Adds (or atomically replaces) the EventManagers of a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param managers Corresponds to the EventManagers of the plugin file
+     * @param loader Corresponds to the resources to close when the plugin file is unloaded (its class loader) or null
+     * @return Returns the replaced version of the plugin file or null if it was not loaded
+     */
+    Entry put(String pluginFile, EventManager[] managers, java.io.Closeable loader) {
+        synchronized(lock){
+            java.util.HashMap<String, Entry> copy = new java.util.HashMap<>(snapshot.byFile);
+            Entry replaced = copy.put(pluginFile, new Entry(managers, loader));
+            snapshot = new Snapshot(copy);
+            return replaced;
+        }
+    }
+
+    /**
+     * Removes the EventManagers of a plugin file
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns the removed version of the plugin file or null if it was not loaded
+     */
+    Entry remove(String pluginFile) {
+        synchronized(lock){
+            if(pluginFile == null || !snapshot.byFile.containsKey(pluginFile)) return null;
+            java.util.HashMap<String, Entry> copy = new java.util.HashMap<>(snapshot.byFile);
+            Entry removed = copy.remove(pluginFile);
+            snapshot = new Snapshot(copy);
+            return removed;
+        }
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents a loaded version of a plugin file: its EventManagers, indexed by action name, and its class loader
+     * @author JasonPercus
+     * @version 1.0
+     */
+    static final class Entry {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to all the EventManagers of the plugin file
+         */
+        private final EventManager[] managers;
+
+        /**
+         * Corresponds to the EventManagers of the plugin file indexed by action name (simple and full class name)
+         */
+        private final java.util.Map<String, EventManager[]> byAction;
+
+        /**
+         * Corresponds to the EventManagers of the plugin file which subscribe to each event type (indexed by ordinal)
+         */
+        private final EventManager[][] byType;
+
+        /**
+         * Corresponds to the resources to close when the plugin file is unloaded (or null)
+         */
+        private final java.io.Closeable loader;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create an Entry
+         * @param managers Corresponds to all the EventManagers of the plugin file
+         * @param loader Corresponds to the resources to close when the plugin file is unloaded (or null)
+         */
+        private Entry(EventManager[] managers, java.io.Closeable loader) {
+            this.loader = loader;
+            this.managers = (managers == null) ? EMPTY : managers.clone();
+            java.util.HashMap<String, java.util.List<EventManager>> index = new java.util.HashMap<>();
+            for(EventManager m : this.managers){
+                index.computeIfAbsent(m.getClass().getName(), k -> new java.util.ArrayList<>()).add(m);
+                if(!m.getClass().getSimpleName().equals(m.getClass().getName()))
+                    index.computeIfAbsent(m.getClass().getSimpleName(), k -> new java.util.ArrayList<>()).add(m);
+            }
+            java.util.HashMap<String, EventManager[]> map = new java.util.HashMap<>();
+            for(java.util.Map.Entry<String, java.util.List<EventManager>> e : index.entrySet())
+                map.put(e.getKey(), e.getValue().toArray(EMPTY));
+            this.byAction = java.util.Collections.unmodifiableMap(map);
+            this.byType = new EventManager[EventType.values().length][];
+            for(EventType type : EventType.values())
+                this.byType[type.ordinal()] = Subscriptions.filter(this.managers, type);
+        }
+
+
+
+    //METHODE PUBLIC
+        /**
+         * Returns all the EventManagers of the plugin file
+         * @return Returns all the EventManagers of the plugin file
+         */
+        EventManager[] getManagers() {
+            return managers;
+        }
+
+        /**
+         * Returns the resources to close when the plugin file is unloaded
+         * @return Returns the resources to close when the plugin file is unloaded (or null)
+         */
+        java.io.Closeable getLoader() {
+            return loader;
+        }
+
+
+
+    }
+
+    /**
+     * This class represents an immutable state of the loaded plugins
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Snapshot {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the plugins (files) associated with their respective EventManagers
+         */
+        private final java.util.Map<String, Entry> byFile;
+
+        /**
+         * Corresponds to all the EventManagers of all the plugin files (used by the broadcast events)
+         */
+        private final EventManager[] all;
+
+        /**
+         * Corresponds to the plugin files which have at least one EventManager subscribed to each event type (indexed by ordinal)
+         */
+        private final String[][] filesByType;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Snapshot
+         * @param byFile Corresponds to the plugins (files) associated with their respective EventManagers
+         */
+        private Snapshot(java.util.HashMap<String, Entry> byFile) {
+            this.byFile = java.util.Collections.unmodifiableMap(byFile);
+            java.util.List<EventManager> list = new java.util.ArrayList<>();
+            for(Entry entry : byFile.values())
+                list.addAll(java.util.Arrays.asList(entry.managers));
+            this.all = list.toArray(EMPTY);
+            this.filesByType = new String[EventType.values().length][];
+            for(EventType type : EventType.values()){
+                java.util.List<String> files = new java.util.ArrayList<>();
+                for(java.util.Map.Entry<String, Entry> e : byFile.entrySet()){
+                    if(e.getValue().byType[type.ordinal()].length > 0)
+                        files.add(e.getKey());
+                }
+                this.filesByType[type.ordinal()] = files.toArray(new String[0]);
+            }
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class allows to find the subclasses of a class in a plugin file without loading them. It first looks for an index (META-INF/services/&lt;full class name&gt;), otherwise it reads the headers of the .class entries (up to the superclass, the rest of each entry is not read). A class whose superclass chain leaves the plugin file (for a shared library or another jar) is returned too, so that the caller checks it by loading it. The plugin file can be read with a ZipFile or mapped in memory (see {@link MappedJar})
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginScanner {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the magic number of a .class file
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * Indicates that a class extends the searched superclass
+     */
+    private static final int YES = 1;
+
+    /**
+     * Indicates that a class does not extend the searched superclass
+     */
+    private static final int NO = 0;
+
+    /**
+     * Indicates that the superclass chain of a class leaves the plugin file: the class must be loaded to know if it extends the searched superclass
+     */
+    private static final int UNKNOWN = -1;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Prevents the instantiation of this class
+     */
+    private PluginScanner() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the names of the classes of a plugin file which extend (directly or not) a class. The classes are not loaded
+     * @param file Corresponds to the plugin file
+     * @param superClass Corresponds to the full name of the searched superclass
+     * @return Returns the names of the classes of the plugin file which extend the class, or which may extend it through a class outside the plugin file (in the order of the plugin file)
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    static java.util.List<String> findSubclasses(java.io.File file, String superClass) throws java.io.IOException {
+        try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(file)) {
+            java.util.List<String> indexed = readIndex(zip, superClass);
+            if(indexed != null)
+                return indexed;
+            return scanHeaders(zip, superClass.replace('.', '/'));
+        }
+    }
+
+    /**
+     * Returns the names of the classes of a plugin file mapped in memory which extend (directly or not) a class. The classes are not loaded
+     * @param jar Corresponds to the plugin file mapped in memory
+     * @param superClass Corresponds to the full name of the searched superclass
+     * @return Returns the names of the classes of the plugin file which extend the class, or which may extend it through a class outside the plugin file (in the order of the plugin file)
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    static java.util.List<String> findSubclasses(MappedJar jar, String superClass) throws java.io.IOException {
+        java.nio.ByteBuffer index = jar.read("META-INF/services/" + superClass);
+        if(index != null)
+            return parseIndex(new java.io.BufferedReader(new java.io.StringReader(java.nio.charset.StandardCharsets.UTF_8.decode(index).toString())));
+        java.util.LinkedHashMap<String, String> supers = new java.util.LinkedHashMap<>();
+        for(String name : jar.names()){
+            if(!isClassEntry(name))
+                continue;
+            String[] header;
+            try (java.io.InputStream in = jar.open(name)) {
+                header = readHeader(in);
+            }
+            if(header != null)
+                supers.put(header[0], header[1]);
+        }
+        return subclasses(supers, superClass.replace('.', '/'));
+    }
+
+
+    /**
+     * Returns the total size (uncompressed) of the .class entries of a plugin file. It is an estimation of the memory taken by its classes once loaded
+     * @param file Corresponds to the plugin file
+     * @return Returns the total size of the .class entries or 0 if the plugin file cannot be read
+     */
+    static long classBytes(java.io.File file) {
+        long bytes = 0;
+        try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(file)) {
+            java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()){
+                java.util.zip.ZipEntry entry = entries.nextElement();
+                if(!entry.isDirectory() && entry.getName().endsWith(".class") && entry.getSize() > 0)
+                    bytes += entry.getSize();
+            }
+        } catch (java.io.IOException ex) {
+            return 0;
+        }
+        return bytes;
+    }
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the class names listed in the index META-INF/services/&lt;superClass&gt; of the plugin file
+     * @param zip Corresponds to the plugin file
+     * @param superClass Corresponds to the full name of the searched superclass
+     * @return Returns the class names listed in the index or null if the plugin file has no index
+     * @throws java.io.IOException If the index cannot be read
+     */
+    private static java.util.List<String> readIndex(java.util.zip.ZipFile zip, String superClass) throws java.io.IOException {
+        java.util.zip.ZipEntry entry = zip.getEntry("META-INF/services/" + superClass);
+        if(entry == null)
+            return null;
+        return parseIndex(new java.io.BufferedReader(new java.io.InputStreamReader(zip.getInputStream(entry), java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the class names listed in an index (one per line, '#' starts a comment)
+     * @param br Corresponds to the content of the index (closed by this method)
+     * @return Returns the class names listed in the index
+     * @throws java.io.IOException If the index cannot be read
+     */
+    private static java.util.List<String> parseIndex(java.io.BufferedReader br) throws java.io.IOException {
+        java.util.List<String> list = new java.util.ArrayList<>();
+        try (java.io.BufferedReader reader = br) {
+            String line;
+            while((line = reader.readLine()) != null){
+                int comment = line.indexOf('#');
+                if(comment >= 0)
+                    line = line.substring(0, comment);
+                line = line.trim();
+                if(!line.isEmpty() && !list.contains(line))
+                    list.add(line);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the names of the classes of the plugin file which extend a class, by reading only the headers of the .class entries
+     * @param zip Corresponds to the plugin file
+     * @param superClass Corresponds to the internal name (with '/') of the searched superclass
+     * @return Returns the names of the classes which extend the class
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    private static java.util.List<String> scanHeaders(java.util.zip.ZipFile zip, String superClass) throws java.io.IOException {
+        java.util.LinkedHashMap<String, String> supers = new java.util.LinkedHashMap<>();
+        java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
+        while(entries.hasMoreElements()){
+            java.util.zip.ZipEntry entry = entries.nextElement();
+            if(entry.isDirectory() || !isClassEntry(entry.getName()))
+                continue;
+            String[] header;
+            try (java.io.InputStream in = zip.getInputStream(entry)) {
+                header = readHeader(in);
+            }
+            if(header != null)
+                supers.put(header[0], header[1]);
+        }
+        return subclasses(supers, superClass);
+    }
+
+    /**
+     * Determines if an entry of a plugin file is a .class file to scan
+     * @param name Corresponds to the name of the entry
+     * @return Returns true if the entry is a .class file (except module-info and the classes of META-INF), otherwise false
+     */
+    private static boolean isClassEntry(String name) {
+        return name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+    }
+
+    /**
+     * Returns the classes which extend (directly or not) a class, and those whose superclass chain leaves the plugin file
+     * @param supers Corresponds to the superclass of each class of the plugin file (internal names)
+     * @param superClass Corresponds to the internal name (with '/') of the searched superclass
+     * @return Returns the names of the classes which extend or may extend the class
+     */
+    private static java.util.List<String> subclasses(java.util.Map<String, String> supers, String superClass) {
+        java.util.List<String> list = new java.util.ArrayList<>();
+        java.util.HashMap<String, Integer> known = new java.util.HashMap<>();
+        for(String name : supers.keySet()){
+            if(extend(name, superClass, supers, known) != NO)
+                list.add(name.replace('/', '.'));
+        }
+        return list;
+    }
+
+    /**
+     * Determines if a class of the plugin file extends (directly or not) a class
+     * @param name Corresponds to the internal name of the class
+     * @param superClass Corresponds to the internal name of the searched superclass
+     * @param supers Corresponds to the superclass of each class of the plugin file
+     * @param known Corresponds to the classes already resolved
+     * @return Returns YES if the class extends the searched superclass, UNKNOWN if its superclass chain leaves the plugin file for a class which is not a class of the JVM, otherwise NO
+     */
+    private static int extend(String name, String superClass, java.util.Map<String, String> supers, java.util.Map<String, Integer> known) {
+        java.util.List<String> chain = new java.util.ArrayList<>();
+        Integer result = null;
+        String current = supers.get(name);
+        while(result == null){
+            if(current == null){
+                result = NO;
+            }else if(current.equals(superClass)){
+                result = YES;
+            }else if(known.containsKey(current)){
+                result = known.get(current);
+            }else if(!supers.containsKey(current)){
+                result = (current.startsWith("java/") || current.startsWith("javax/")) ? NO : UNKNOWN;
+            }else if(chain.contains(current) || current.equals(name)){
+                result = NO;
+            }else{
+                chain.add(current);
+                current = supers.get(current);
+            }
+        }
+        known.put(name, result);
+        for(String c : chain)
+            known.put(c, result);
+        return result;
+    }
+
+    /**
+     * Reads the name and the superclass name of a .class file. Only the beginning of the .class file is read: the constant pool (only its Utf8 entries are kept), then the access flags, the class and its superclass
+     * @param in Corresponds to the content of the .class file
+     * @return Returns the internal names of the class and of its superclass (null if it has none), or null if it is not a valid .class file
+     * @throws java.io.IOException If the .class file cannot be read
+     */
+    private static String[] readHeader(java.io.InputStream in) throws java.io.IOException {
+        java.io.DataInputStream data = new java.io.DataInputStream(in);
+        try {
+            if(data.readInt() != MAGIC)
+                return null;
+            skip(data, 4);
+            int count = data.readUnsignedShort();
+            int[] classes = new int[count];
+            int[] starts = new int[count];
+            int[] lengths = new int[count];
+            byte[] pool = new byte[1024];
+            int used = 0;
+            for(int i = 1; i < count; i++){
+                int tag = data.readUnsignedByte();
+                switch(tag){
+                    case 1:     //Utf8
+                        int length = data.readUnsignedShort();
+                        if(used + length > pool.length)
+                            pool = java.util.Arrays.copyOf(pool, Math.max(pool.length * 2, used + length));
+                        data.readFully(pool, used, length);
+                        starts[i] = used;
+                        lengths[i] = length;
+                        used += length;
+                        break;
+                    case 7:     //Class
+                        classes[i] = data.readUnsignedShort();
+                        break;
+                    case 8:     //String
+                    case 16:    //MethodType
+                    case 19:    //Module
+                    case 20:    //Package
+                        skip(data, 2);
+                        break;
+                    case 15:    //MethodHandle
+                        skip(data, 3);
+                        break;
+                    case 3:     //Integer
+                    case 4:     //Float
+                    case 9:     //Fieldref
+                    case 10:    //Methodref
+                    case 11:    //InterfaceMethodref
+                    case 12:    //NameAndType
+                    case 17:    //Dynamic
+                    case 18:    //InvokeDynamic
+                        skip(data, 4);
+                        break;
+                    case 5:     //Long
+                    case 6:     //Double
+                        skip(data, 8);
+                        i++;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            skip(data, 2);
+            int thisClass = data.readUnsignedShort();
+            int superClass = data.readUnsignedShort();
+            String name = className(pool, classes, starts, lengths, thisClass);
+            if(name == null)
+                return null;
+            return new String[]{name, (superClass == 0) ? null : className(pool, classes, starts, lengths, superClass)};
+        } catch (java.io.EOFException | IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name referenced by a Class entry of the constant pool
+     * @param pool Corresponds to the content of the Utf8 entries of the constant pool
+     * @param classes Corresponds to the index of the name of each Class entry (0 if the entry is not a Class entry)
+     * @param starts Corresponds to the position of each Utf8 entry in the pool
+     * @param lengths Corresponds to the length of each Utf8 entry (0 if the entry is not a Utf8 entry or is empty)
+     * @param index Corresponds to the index of the Class entry
+     * @return Returns the internal name of the class or null if the entry is not valid
+     */
+    private static String className(byte[] pool, int[] classes, int[] starts, int[] lengths, int index) {
+        if(index <= 0 || index >= classes.length || classes[index] <= 0 || classes[index] >= lengths.length || lengths[classes[index]] == 0)
+            return null;
+        int utf8 = classes[index];
+        return new String(pool, starts[utf8], lengths[utf8], java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips bytes of a .class file
+     * @param data Corresponds to the content of the .class file
+     * @param n Corresponds to the number of bytes to skip
+     * @throws java.io.IOException If the .class file cannot be read or is too short
+     */
+    private static void skip(java.io.DataInputStream data, int n) throws java.io.IOException {
+        while(n > 0){
+            int skipped = data.skipBytes(n);
+            if(skipped <= 0){
+                data.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+
+
+}
\ No newline at end of file
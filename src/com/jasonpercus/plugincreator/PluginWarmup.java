@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class warms up the plugin files used recently, so that the first key press after the launch does not wait for the loading of its plugin. The list of the plugin files used recently is saved at each loading. It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.warmup: false to disable the warm-up (default true)</li>
+ * <li>javaplugin.warmup.file: the file which contains the plugin files used recently (default: javaplugin.recent next to the metadata cache file, see {@link PluginMetadataCache}; empty to keep the list in memory only)</li>
+ * <li>javaplugin.warmup.max: the maximum number of plugin files remembered (default 16)</li>
+ * <li>javaplugin.warmup.event: true to start the threads of the executor of each preloaded plugin file with an empty task, before its first event (default false). No code of the plugin is run</li>
+ * </ul>
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class PluginWarmup {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the file which contains the plugin files used recently (null if the list is kept in memory only)
+     */
+    private static final java.io.File FILE = defaultFile();
+
+    /**
+     * Corresponds to the maximum number of plugin files remembered
+     */
+    private static final int MAX = Math.max(1, Integer.getInteger("javaplugin.warmup.max", 16));
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin files used recently (the most recent one first)
+     */
+    private static final java.util.LinkedList<String> RECENT = new java.util.LinkedList<>();
+
+    /**
+     * Determines if the file which contains the plugin files used recently has been read
+     */
+    private static boolean read;
+
+    /**
+     * Determines if the file which contains the plugin files used recently cannot be written (it is then no longer saved)
+     */
+    private static boolean unwritable;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Prevents the instantiation of this class
+     */
+    private PluginWarmup() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if the warm-up is enabled
+     * @return Returns true if the warm-up is enabled, otherwise false
+     */
+    static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("javaplugin.warmup"));
+    }
+
+    /**
+     * Determines if the threads of the executor of each preloaded plugin file must be started before its first event
+     * @return Returns true if the threads of the executors must be started, otherwise false
+     */
+    static boolean isEventEnabled() {
+        return Boolean.getBoolean("javaplugin.warmup.event");
+    }
+
+    /**
+     * Starts the first phase of the warm-up in a daemon thread: the plugin files used recently are read and scanned (disk cache and scanning code), and the shared Gson adapters are built. This method returns immediately, so it does not delay the connection with Stream Deck. The plugin files are instantiated later by the Manager (once it is connected)
+     */
+    static void start() {
+        if(!isEnabled())
+            return;
+        Thread thread = new Thread(() -> {
+            GsonCache.warm();
+            for(String file : recent()){
+                try {
+                    java.io.File f = new java.io.File(file);
+                    if(f.isFile())
+                        PluginScanner.findSubclasses(f, EventManager.class.getName());
+                } catch (java.io.IOException | RuntimeException ex) {
+                    java.util.logging.Logger.getLogger(PluginWarmup.class.getName()).log(java.util.logging.Level.FINE, "Warm-up of " + file + " failed", ex);
+                }
+            }
+        }, "JavaPlugin-Warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Returns the plugin files used recently (the most recent one first)
+     * @return Returns the plugin files used recently
+     */
+    static synchronized java.util.List<String> recent() {
+        readIfNecessary();
+        return new java.util.ArrayList<>(RECENT);
+    }
+
+    /**
+     * Remembers that a plugin file has just been loaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    static synchronized void touch(String pluginFile) {
+        if(!isEnabled() || pluginFile == null)
+            return;
+        readIfNecessary();
+        if(pluginFile.equals(RECENT.peekFirst()))
+            return;
+        RECENT.remove(pluginFile);
+        RECENT.addFirst(pluginFile);
+        while(RECENT.size() > MAX)
+            RECENT.removeLast();
+        save();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the file defined by the system property javaplugin.warmup.file, or javaplugin.recent next to the metadata cache file (in the working directory if the metadata cache is disabled)
+     * @return Returns the file which contains the plugin files used recently or null if the list is kept in memory only
+     */
+    private static java.io.File defaultFile() {
+        String path = System.getProperty("javaplugin.warmup.file");
+        if(path != null)
+            return path.trim().isEmpty() ? null : new java.io.File(path.trim());
+        java.io.File cache = PluginMetadataCache.defaultFile();
+        java.io.File dir = (cache == null) ? null : cache.getAbsoluteFile().getParentFile();
+        return new java.io.File((dir == null) ? new java.io.File(System.getProperty("user.dir")) : dir, "javaplugin.recent");
+    }
+
+    /**
+     * Reads the file which contains the plugin files used recently the first time it is needed
+     */
+    private static void readIfNecessary() {
+        if(read)
+            return;
+        read = true;
+        if(FILE == null || !FILE.isFile())
+            return;
+        try {
+            for(String line : java.nio.file.Files.readAllLines(FILE.toPath(), java.nio.charset.StandardCharsets.UTF_8)){
+                line = line.trim();
+                if(!line.isEmpty() && !RECENT.contains(line) && RECENT.size() < MAX)
+                    RECENT.add(line);
+            }
+        } catch (java.io.IOException ex) {
+            java.util.logging.Logger.getLogger(PluginWarmup.class.getName()).log(java.util.logging.Level.WARNING, "Ignored the file " + FILE, ex);
+        }
+    }
+
+    /**
+     * Saves the plugin files used recently
+     */
+    private static void save() {
+        if(FILE == null || unwritable)
+            return;
+        try {
+            java.nio.file.Files.write(FILE.toPath(), RECENT, java.nio.charset.StandardCharsets.UTF_8);
+        } catch (java.io.IOException | SecurityException ex) {
+            unwritable = true;
+            java.util.logging.Logger.getLogger(PluginWarmup.class.getName()).log(java.util.logging.Level.WARNING, "Unable to save the file " + FILE + ", the plugin files used recently are kept in memory only (see javaplugin.warmup.file)", ex);
+        }
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+
+
+
+/**
+ * This class represents the routing (plugin file and action name) of each Stream Deck context. It avoids parsing the settings of the action for each event
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class RoutingCache {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the routes associated with their respective contexts
+     */
+    private final java.util.concurrent.ConcurrentHashMap<Context, Route> routes = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the number of lookups which found a route
+     */
+    private final java.util.concurrent.atomic.LongAdder hits = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Corresponds to the number of lookups which did not find a route
+     */
+    private final java.util.concurrent.atomic.LongAdder misses = new java.util.concurrent.atomic.LongAdder();
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the route of a context
+     * @param context Corresponds to the context (or ID) of the action
+     * @return Returns the route of the context or null if it is not cached
+     */
+    Route get(Context context) {
+        Route route = (context == null) ? null : routes.get(context);
+        if(route == null) misses.increment();
+        else hits.increment();
+        return route;
+    }
+
+    /**
+     * Associates a route with a context
+     * @param context Corresponds to the context (or ID) of the action
+     * @param route Corresponds to the route of the context
+     */
+    void put(Context context, Route route) {
+        if(context != null && route != null)
+            routes.put(context, route);
+    }
+
+    /**
+     * Removes the route of a context (for example when its settings have changed)
+     * @param context Corresponds to the context (or ID) of the action
+     * @return Returns the removed route or null if it was not cached
+     */
+    Route invalidate(Context context) {
+        return (context == null) ? null : routes.remove(context);
+    }
+
+    /**
+     * Returns the number of lookups which found a route
+     * @return Returns the number of lookups which found a route
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups which did not find a route
+     * @return Returns the number of lookups which did not find a route
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached routes
+     * @return Returns the number of cached routes
+     */
+    int size() {
+        return routes.size();
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents the route of a context: the plugin file and the action name taken from its settings
+     * @author JasonPercus
+     * @version 1.0
+     */
+    static final class Route {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the path of the plugin file
+         */
+        final String pluginFile;
+
+        /**
+         * Corresponds to the name of the action associated with the button
+         */
+        final String actionName;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Route
+         * @param pluginFile Corresponds to the path of the plugin file
+         * @param actionName Corresponds to the name of the action associated with the button
+         */
+        Route(String pluginFile, String actionName) {
+            this.pluginFile = pluginFile;
+            this.actionName = actionName;
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class represents the optional layer of libraries shared by the hosted plugins (Gson, HTTP clients, image libraries...). The jars of a directory are loaded once by a common class loader, parent of the class loaders of the plugins (see {@link PluginClassLoader}): a class of a shared package is loaded once for all the plugins which do not bundle it, or which bundle the same version of it. A plugin which bundles another version of a shared library (a class whose content differs, or which is not in the shared libraries) keeps its own copy of all the packages of that library, so that the classes of a library are never mixed from two versions. When several versions of the same library are found (name-version.jar), only the highest one is shared. It can be configured with the following system property:
+ * <ul>
+ * <li>javaplugin.sharedLib: the directory of the shared libraries, for example lib next to the host (not set by default: each plugin loads its own libraries, as before)</li>
+ * </ul>
+ * A plugin can opt out of the shared libraries with the attribute JavaPlugin-SharedLib: false in the manifest of its plugin file: the packages it bundles are then never shared
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class SharedLibraries {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the name and the version of a versioned jar (name-1.2.3.jar)
+     */
+    private static final java.util.regex.Pattern VERSIONED = java.util.regex.Pattern.compile("^(.+?)-(\\d[\\w.\\-]*)\\.jar$");
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the class loader of the shared libraries (null if the layer is disabled)
+     */
+    private final java.net.URLClassLoader loader;
+
+    /**
+     * Corresponds to the packages of the shared libraries
+     */
+    private final java.util.Set<String> packages = new java.util.HashSet<>();
+
+    /**
+     * Corresponds to the shared library (jar) of each shared package
+     */
+    private final java.util.Map<String, java.io.File> libraries = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the packages of each shared library (jar)
+     */
+    private final java.util.Map<java.io.File, java.util.Set<String>> contents = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the size of the class files of the shared libraries (by class name)
+     */
+    private final java.util.Map<String, Long> sizes = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the CRC-32 of the class files of the shared libraries (by class name), to compare them with the copies bundled by the plugins
+     */
+    private final java.util.Map<String, Long> crcs = new java.util.HashMap<>();
+
+    /**
+     * Corresponds to the number of plugin versions which use each shared class
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger> users = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the size of the class files not loaded again thanks to the sharing (in bytes)
+     */
+    private final java.util.concurrent.atomic.LongAdder saved = new java.util.concurrent.atomic.LongAdder();
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a SharedLibraries configured by the system property javaplugin.sharedLib
+     */
+    SharedLibraries() {
+        this(System.getProperty("javaplugin.sharedLib"));
+    }
+
+    /**
+     * Create a SharedLibraries
+     * @param directory Corresponds to the directory of the shared libraries (null or empty to disable the layer)
+     */
+    SharedLibraries(String directory) {
+        java.io.File dir = (directory == null || directory.trim().isEmpty()) ? null : new java.io.File(directory.trim());
+        java.util.List<java.io.File> jars = (dir == null) ? java.util.Collections.emptyList() : latest(dir);
+        java.util.List<java.net.URL> urls = new java.util.ArrayList<>();
+        for(java.io.File jar : jars){
+            try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(jar)) {
+                java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
+                while(entries.hasMoreElements()){
+                    java.util.zip.ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if(entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/"))
+                        continue;
+                    String className = name.substring(0, name.length() - 6).replace('/', '.');
+                    sizes.putIfAbsent(className, Math.max(0, entry.getSize()));
+                    crcs.putIfAbsent(className, entry.getCrc());
+                    String pkg = packageOf(className);
+                    packages.add(pkg);
+                    libraries.putIfAbsent(pkg, jar);
+                    contents.computeIfAbsent(libraries.get(pkg), j -> new java.util.HashSet<>()).add(pkg);
+                }
+                urls.add(jar.toURI().toURL());
+            } catch (java.io.IOException ex) {
+                java.util.logging.Logger.getLogger(SharedLibraries.class.getName()).log(java.util.logging.Level.WARNING, "Ignored shared library " + jar, ex);
+            }
+        }
+        this.loader = urls.isEmpty() ? null : new java.net.URLClassLoader(urls.toArray(new java.net.URL[0]), SharedLibraries.class.getClassLoader());
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if the layer of shared libraries is enabled
+     * @return Returns true if at least one shared library has been found, otherwise false
+     */
+    boolean isEnabled() {
+        return loader != null;
+    }
+
+    /**
+     * Returns the class loader to use as the parent of the class loaders of the plugins
+     * @return Returns the class loader of the shared libraries, or the one of the host if the layer is disabled
+     */
+    ClassLoader parent() {
+        return (loader == null) ? SharedLibraries.class.getClassLoader() : loader;
+    }
+
+    /**
+     * Determines if a class belongs to a package of the shared libraries
+     * @param className Corresponds to the full name of the class
+     * @return Returns true if the class must be loaded by the shared libraries, otherwise false
+     */
+    boolean isShared(String className) {
+        if(loader == null)
+            return false;
+        return packages.contains(packageOf(className));
+    }
+
+    /**
+     * Determines if a class bundled by a plugin is the same as the class of the shared libraries (same content)
+     * @param className Corresponds to the full name of the class
+     * @param crc Corresponds to the CRC-32 of the class file bundled by the plugin
+     * @return Returns true if the shared libraries contain the same class file, otherwise false
+     */
+    boolean isSame(String className, long crc) {
+        Long c = crcs.get(className);
+        return c != null && c == crc;
+    }
+
+    /**
+     * Returns all the packages of the shared library which contains the package of a class
+     * @param className Corresponds to the full name of the class
+     * @return Returns the packages of the shared library of the class, or an empty set if the class is not shared
+     */
+    java.util.Set<String> packagesOfLibrary(String className) {
+        java.io.File jar = libraries.get(packageOf(className));
+        return (jar == null) ? java.util.Collections.emptySet() : java.util.Collections.unmodifiableSet(contents.get(jar));
+    }
+
+    /**
+     * Returns the package of a class
+     * @param className Corresponds to the full name of the class
+     * @return Returns the package of the class ("" for the default package)
+     */
+    static String packageOf(String className) {
+        int dot = className.lastIndexOf('.');
+        return (dot < 0) ? "" : className.substring(0, dot);
+    }
+
+    /**
+     * Indicates that a version of a plugin uses a shared class (the first time it loads it)
+     * @param className Corresponds to the full name of the class
+     */
+    void used(String className) {
+        Long size = sizes.get(className);
+        if(size == null)
+            return;
+        if(users.computeIfAbsent(className, c -> new java.util.concurrent.atomic.AtomicInteger()).incrementAndGet() > 1)
+            saved.add(size);
+    }
+
+    /**
+     * Returns the number of shared classes used by the plugins
+     * @return Returns the number of shared classes used
+     */
+    int classes() {
+        return users.size();
+    }
+
+    /**
+     * Returns an estimate of the memory saved by the sharing: the size of the class files which would have been loaded again by each plugin
+     * @return Returns the estimated memory saved (in bytes)
+     */
+    long savedBytes() {
+        return saved.sum();
+    }
+
+    /**
+     * Closes the shared libraries
+     */
+    void close() {
+        if(loader == null)
+            return;
+        try {
+            loader.close();
+        } catch (java.io.IOException ex) {
+            java.util.logging.Logger.getLogger(SharedLibraries.class.getName()).log(java.util.logging.Level.WARNING, null, ex);
+        }
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the jars of a directory, keeping only the highest version of each library
+     * @param dir Corresponds to the directory of the shared libraries
+     * @return Returns the jars to load
+     */
+    private static java.util.List<java.io.File> latest(java.io.File dir) {
+        java.io.File[] files = dir.listFiles((java.io.File f) -> f.isFile() && f.getName().toLowerCase().endsWith(".jar"));
+        if(files == null)
+            return java.util.Collections.emptyList();
+        java.util.Arrays.sort(files);
+        java.util.Map<String, java.io.File> byName = new java.util.LinkedHashMap<>();
+        java.util.Map<String, String> versions = new java.util.HashMap<>();
+        for(java.io.File f : files){
+            java.util.regex.Matcher m = VERSIONED.matcher(f.getName());
+            String name = m.matches() ? m.group(1) : f.getName();
+            String version = m.matches() ? m.group(2) : "";
+            java.io.File previous = byName.get(name);
+            if(previous == null || compareVersions(version, versions.get(name)) > 0){
+                if(previous != null)
+                    java.util.logging.Logger.getLogger(SharedLibraries.class.getName()).log(java.util.logging.Level.INFO, "Shared library " + previous.getName() + " replaced by " + f.getName());
+                byName.put(name, f);
+                versions.put(name, version);
+            }else{
+                java.util.logging.Logger.getLogger(SharedLibraries.class.getName()).log(java.util.logging.Level.INFO, "Shared library " + f.getName() + " ignored, " + previous.getName() + " is more recent");
+            }
+        }
+        return new java.util.ArrayList<>(byName.values());
+    }
+
+    /**
+     * Compares two versions (numeric parts compared as numbers, the others as texts)
+     * @param a Corresponds to the first version
+     * @param b Corresponds to the second version
+     * @return Returns a positive number if a is higher than b, a negative number if it is lower, otherwise 0
+     */
+    private static int compareVersions(String a, String b) {
+        String[] x = a.split("[.\\-]");
+        String[] y = b.split("[.\\-]");
+        for(int i = 0; i < Math.max(x.length, y.length); i++){
+            String p = (i < x.length) ? x[i] : "0";
+            String q = (i < y.length) ? y[i] : "0";
+            int c = (p.matches("\\d+") && q.matches("\\d+")) ? new java.math.BigInteger(p).compareTo(new java.math.BigInteger(q)) : p.compareTo(q);
+            if(c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+
+
+}
\ No newline at end of file
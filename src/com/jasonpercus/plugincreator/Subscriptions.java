@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.GsonBuilder;
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidLaunch;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidTerminate;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.DeviceDidDisconnect;
+import com.jasonpercus.plugincreator.models.events.Event;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear;
+import com.jasonpercus.plugincreator.models.events.SystemDidWakeUp;
+
+
+
+/**
+ * This class determines which event types an EventManager of a hosted plugin subscribes to. A hosted plugin declares its subscriptions by overriding the callbacks of EventManager: an EventManager which overrides {@link EventManager#event(Event, GsonBuilder)} subscribes to every event, including the unknown (custom) ones. The events which are broadcast to all the plugin files (devices, applications, system, and Property Inspector when the owner of its context is unknown) are only delivered to the EventManagers which override their typed callback. The subscriptions are computed once per class
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class Subscriptions {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the name of the typed callback of the filtered event types
+     */
+    private static final java.util.Map<EventType, String> NAMES = new java.util.EnumMap<>(EventType.class);
+
+    /**
+     * Corresponds to the parameters of the typed callback of the filtered event types (the other types are delivered to all the EventManagers)
+     */
+    private static final java.util.Map<EventType, Class<?>[]> CALLBACKS = new java.util.EnumMap<>(EventType.class);
+
+    /**
+     * Corresponds to the subscriptions of each class of EventManager (indexed by the ordinal of the event type)
+     */
+    private static final ClassValue<boolean[]> SUBSCRIBED = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(Class<?> managerClass) {
+            boolean generic = overrides(managerClass, "event", Event.class, GsonBuilder.class);
+            boolean[] subscribed = new boolean[EventType.values().length];
+            for(EventType type : EventType.values()){
+                if(type == EventType.OTHER){
+                    subscribed[type.ordinal()] = generic;
+                }else{
+                    Class<?>[] callback = CALLBACKS.get(type);
+                    subscribed[type.ordinal()] = generic || callback == null || overrides(managerClass, NAMES.get(type), callback);
+                }
+            }
+            return subscribed;
+        }
+    };
+
+
+
+//STATIC
+    static {
+        callback(EventType.DEVICE_DID_CONNECT, "deviceDidConnect", DeviceDidConnect.class, String.class, DeviceDidConnect.DeviceInfo.class, GsonBuilder.class);
+        callback(EventType.DEVICE_DID_DISCONNECT, "deviceDidDisconnect", DeviceDidDisconnect.class, String.class, GsonBuilder.class);
+        callback(EventType.APPLICATION_DID_LAUNCH, "applicationDidLaunch", ApplicationDidLaunch.class, String.class, GsonBuilder.class);
+        callback(EventType.APPLICATION_DID_TERMINATE, "applicationDidTerminate", ApplicationDidTerminate.class, String.class, GsonBuilder.class);
+        callback(EventType.SYSTEM_DID_WAKE_UP, "systemDidWakeUp", SystemDidWakeUp.class, GsonBuilder.class);
+        callback(EventType.PROPERTY_INSPECTOR_DID_APPEAR, "propertyInspectorDidAppear", PropertyInspectorDidAppear.class, Context.class, GsonBuilder.class);
+        callback(EventType.PROPERTY_INSPECTOR_DID_DISAPPEAR, "propertyInspectorDidDisappear", PropertyInspectorDidDisappear.class, Context.class, GsonBuilder.class);
+    }
+
+
+
+//CONSTRUCTOR
+    /**
+     * Prevents the instantiation of this class
+     */
+    private Subscriptions() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Determines if an EventManager subscribes to an event type
+     * @param manager Corresponds to the EventManager
+     * @param type Corresponds to the type of the event
+     * @return Returns true if the EventManager must receive the events of this type, otherwise false
+     */
+    static boolean isSubscribed(EventManager manager, EventType type) {
+        return SUBSCRIBED.get(manager.getClass())[type.ordinal()];
+    }
+
+    /**
+     * Returns the EventManagers which subscribe to an event type
+     * @param managers Corresponds to the EventManagers
+     * @param type Corresponds to the type of the event
+     * @return Returns the EventManagers which subscribe to the event type (the same array if all of them do)
+     */
+    static EventManager[] filter(EventManager[] managers, EventType type) {
+        int count = 0;
+        for(EventManager m : managers){
+            if(isSubscribed(m, type))
+                count++;
+        }
+        if(count == managers.length)
+            return managers;
+        if(count == 0)
+            return PluginRegistry.EMPTY;
+        EventManager[] subscribers = new EventManager[count];
+        int i = 0;
+        for(EventManager m : managers){
+            if(isSubscribed(m, type))
+                subscribers[i++] = m;
+        }
+        return subscribers;
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Declares the typed callback of a filtered event type
+     * @param type Corresponds to the type of the event
+     * @param name Corresponds to the name of the callback
+     * @param parameters Corresponds to the parameters of the callback
+     */
+    private static void callback(EventType type, String name, Class<?>... parameters) {
+        NAMES.put(type, name);
+        CALLBACKS.put(type, parameters);
+    }
+
+    /**
+     * Determines if a class of EventManager overrides a callback
+     * @param managerClass Corresponds to the class of EventManager
+     * @param name Corresponds to the name of the callback
+     * @param parameters Corresponds to the parameters of the callback
+     * @return Returns true if the callback is overridden (or if it cannot be determined), otherwise false
+     */
+    private static boolean overrides(Class<?> managerClass, String name, Class<?>... parameters) {
+        try {
+            return managerClass.getMethod(name, parameters).getDeclaringClass() != EventManager.class;
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return true;
+        }
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class watches the callbacks of the hosted plugins. A callback which passes the soft deadline is logged with a sample of its stack. If a hard deadline is configured, a callback which passes it is interrupted and its plugin file is marked as degraded. If a quarantine is configured, a plugin file which passes the hard deadline too many times is quarantined: its events are dropped for a while (or until it is reloaded). By default the watchdog only reports: a plugin may block by design (a long poll, a dialog...). It can be configured with the following system properties:
+ * <ul>
+ * <li>javaplugin.watchdog.soft: the soft deadline in milliseconds (default 1000, 0 to disable the watchdog)</li>
+ * <li>javaplugin.watchdog.hard: the hard deadline in milliseconds (default 0, never interrupt)</li>
+ * <li>javaplugin.watchdog.quarantine: the number of hard deadlines passed after which a plugin file is quarantined (default 0, never quarantine)</li>
+ * <li>javaplugin.watchdog.quarantine.duration: the duration of a quarantine in milliseconds (default 60000, 0 until the plugin file is reloaded)</li>
+ * </ul>
+ * A Java thread cannot be killed: a callback which ignores the interruption keeps its thread, but only the lane of its context is blocked, the other contexts and the other plugin files go on
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class Watchdog {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the maximum number of frames of a stack sample
+     */
+    private static final int FRAMES = 20;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the soft deadline (in nanoseconds, 0 if the watchdog is disabled)
+     */
+    private final long soft;
+
+    /**
+     * Corresponds to the hard deadline (in nanoseconds, 0 to never interrupt)
+     */
+    private final long hard;
+
+    /**
+     * Corresponds to the number of hard deadlines passed after which a plugin file is quarantined (0 to never quarantine)
+     */
+    private final int quarantineAfter;
+
+    /**
+     * Corresponds to the duration of a quarantine (in nanoseconds, 0 until the plugin file is reloaded)
+     */
+    private final long quarantineDuration;
+
+    /**
+     * Corresponds to the metrics in which the slow and the interrupted callbacks are counted
+     */
+    private final DispatchMetrics metrics;
+
+    /**
+     * Corresponds to the log of the plugin
+     */
+    private final java.util.function.Consumer<String> sink;
+
+    /**
+     * Corresponds to all the slots created (there are as many slots as callbacks which have run at the same time, not as threads: in the virtual mode each delivery has its own thread)
+     */
+    private final java.util.concurrent.CopyOnWriteArrayList<Running> running = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    /**
+     * Corresponds to the free slots (a stack guarded by the list of the slots)
+     */
+    private Running[] free = new Running[16];
+
+    /**
+     * Corresponds to the number of free slots
+     */
+    private int freeCount;
+
+    /**
+     * Corresponds to the number of hard deadlines passed by each plugin file
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger> strikes = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the quarantined plugin files with the end of their quarantine (System.nanoTime(), 0 until the plugin file is reloaded)
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, Long> quarantined = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the number of events dropped because their plugin file is quarantined
+     */
+    private final java.util.concurrent.atomic.LongAdder dropped = new java.util.concurrent.atomic.LongAdder();
+
+    /**
+     * Corresponds to the timer which checks the running callbacks (null if the watchdog is disabled)
+     */
+    private final java.util.concurrent.ScheduledExecutorService timer;
+
+
+
+//CONSTRUCTORS
+    /**
+     * Create a Watchdog configured by the system properties
+     * @param metrics Corresponds to the metrics in which the slow and the interrupted callbacks are counted
+     * @param sink Corresponds to the log of the plugin
+     */
+    Watchdog(DispatchMetrics metrics, java.util.function.Consumer<String> sink) {
+        this(Long.getLong("javaplugin.watchdog.soft", 1000), Long.getLong("javaplugin.watchdog.hard", 0), Integer.getInteger("javaplugin.watchdog.quarantine", 0), Long.getLong("javaplugin.watchdog.quarantine.duration", 60000), metrics, sink);
+    }
+
+    /**
+     * Create a Watchdog
+     * @param soft Corresponds to the soft deadline in milliseconds (0 to disable the watchdog)
+     * @param hard Corresponds to the hard deadline in milliseconds (0 to never interrupt)
+     * @param quarantineAfter Corresponds to the number of hard deadlines passed after which a plugin file is quarantined (0 to never quarantine)
+     * @param quarantineDuration Corresponds to the duration of a quarantine in milliseconds (0 until the plugin file is reloaded)
+     * @param metrics Corresponds to the metrics in which the slow and the interrupted callbacks are counted
+     * @param sink Corresponds to the log of the plugin
+     */
+    Watchdog(long soft, long hard, int quarantineAfter, long quarantineDuration, DispatchMetrics metrics, java.util.function.Consumer<String> sink) {
+        this.soft = java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Math.max(0, soft));
+        this.hard = (this.soft == 0) ? 0 : java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Math.max(0, hard));
+        this.quarantineAfter = Math.max(0, quarantineAfter);
+        this.quarantineDuration = java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Math.max(0, quarantineDuration));
+        this.metrics = metrics;
+        this.sink = sink;
+        if(this.soft > 0){
+            long period = Math.max(10, java.util.concurrent.TimeUnit.NANOSECONDS.toMillis((this.hard > 0) ? Math.min(this.soft, this.hard) : this.soft) / 4);
+            this.timer = java.util.concurrent.Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "JavaPlugin-Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.timer.scheduleWithFixedDelay(this::check, period, period, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }else{
+            this.timer = null;
+        }
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Indicates that the current thread starts a callback
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which receives the event
+     * @param type Corresponds to the type of the event
+     * @return Returns the slot taken by the callback (to give to {@link #end(Running)}) or null if the watchdog is disabled
+     */
+    Running begin(String pluginFile, Object target, EventType type) {
+        if(timer == null)
+            return null;
+        Running r = null;
+        synchronized(running){
+            if(freeCount > 0){
+                r = free[--freeCount];
+                free[freeCount] = null;
+            }
+        }
+        if(r == null){
+            r = new Running();
+            running.add(r);
+        }
+        r.thread = Thread.currentThread();
+        r.pluginFile = pluginFile;
+        r.target = target;
+        r.type = type;
+        r.warned = false;
+        r.start = System.nanoTime();
+        return r;
+    }
+
+    /**
+     * Indicates that the current thread ends its callback
+     * @param r Corresponds to the slot returned by {@link #begin(String, Object, EventType)}
+     */
+    void end(Running r) {
+        if(r == null)
+            return;
+        r.start = 0;
+        r.pluginFile = null;
+        r.target = null;
+        synchronized(r){
+            if(r.interrupted){
+                Thread.interrupted();
+                r.interrupted = false;
+            }
+            r.thread = null;
+        }
+        synchronized(running){
+            if(freeCount == free.length)
+                free = java.util.Arrays.copyOf(free, free.length * 2);
+            free[freeCount++] = r;
+        }
+    }
+
+    /**
+     * Determines if a plugin file is quarantined. If it is, the event is counted as dropped. A quarantine which has expired is lifted (the plugin file is given a new chance)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns true if the plugin file is quarantined (its events must be dropped), otherwise false
+     */
+    boolean drop(String pluginFile) {
+        if(pluginFile == null || quarantined.isEmpty())
+            return false;
+        Long until = quarantined.get(pluginFile);
+        if(until == null)
+            return false;
+        if(until != 0 && System.nanoTime() - until >= 0){
+            if(quarantined.remove(pluginFile, until)){
+                strikes.remove(pluginFile);
+                String message = "JavaPlugin: the quarantine of " + pluginFile + " has expired, its events are delivered again";
+                java.util.logging.Logger.getLogger(Watchdog.class.getName()).log(java.util.logging.Level.INFO, message);
+                sink.accept(message);
+            }
+            return false;
+        }
+        dropped.increment();
+        return true;
+    }
+
+    /**
+     * Determines if a plugin file is degraded (one of its callbacks has passed the hard deadline)
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @return Returns true if the plugin file is degraded, otherwise false
+     */
+    boolean isDegraded(String pluginFile) {
+        return pluginFile != null && strikes.containsKey(pluginFile);
+    }
+
+    /**
+     * Returns the quarantined plugin files
+     * @return Returns the quarantined plugin files
+     */
+    java.util.Set<String> quarantined() {
+        return java.util.Collections.unmodifiableSet(quarantined.keySet());
+    }
+
+    /**
+     * Returns the number of events dropped because their plugin file is quarantined
+     * @return Returns the number of events dropped
+     */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Forgets the state (degraded, quarantined) of a plugin file, when it is reloaded or unloaded
+     * @param pluginFile Corresponds to the path of the plugin file
+     */
+    void reset(String pluginFile) {
+        if(pluginFile == null)
+            return;
+        strikes.remove(pluginFile);
+        quarantined.remove(pluginFile);
+    }
+
+    /**
+     * Stops the watchdog
+     */
+    void shutdown() {
+        if(timer != null)
+            timer.shutdownNow();
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Checks the running callbacks
+     */
+    private void check() {
+        try {
+            long now = System.nanoTime();
+            for(Running r : running){
+                long start = r.start;
+                if(start == 0)
+                    continue;
+                Thread thread = r.thread;
+                String file = r.pluginFile;
+                Object target = r.target;
+                EventType type = r.type;
+                if(r.start != start || thread == null || file == null || target == null || type == null)
+                    continue;
+                long elapsed = now - start;
+                if(!r.warned && elapsed >= soft){
+                    r.warned = true;
+                    metrics.slow(file, target, type);
+                    String message = "JavaPlugin: " + target.getClass().getName() + "." + type + " of " + file + " has been running for " + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms";
+                    java.util.logging.Logger.getLogger(Watchdog.class.getName()).log(java.util.logging.Level.WARNING, message + stack(thread));
+                    sink.accept(message);
+                }
+                if(hard > 0 && elapsed >= hard){
+                    synchronized(r){
+                        if(r.start != start || r.thread != thread || r.interrupted)
+                            continue;
+                        r.interrupted = true;
+                        thread.interrupt();
+                    }
+                    strike(file, target, type, elapsed);
+                }
+            }
+        } catch (RuntimeException ex) {
+            java.util.logging.Logger.getLogger(Watchdog.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Marks a plugin file as degraded after one of its callbacks has been interrupted, and quarantines it if it is a repeat offender
+     * @param pluginFile Corresponds to the path of the plugin file
+     * @param target Corresponds to the EventManager which received the event
+     * @param type Corresponds to the type of the event
+     * @param elapsed Corresponds to the time spent by the callback (in nanoseconds)
+     */
+    private void strike(String pluginFile, Object target, EventType type, long elapsed) {
+        metrics.interrupted(pluginFile, target, type);
+        int count = strikes.computeIfAbsent(pluginFile, f -> new java.util.concurrent.atomic.AtomicInteger()).incrementAndGet();
+        String message = "JavaPlugin: " + target.getClass().getName() + "." + type + " of " + pluginFile + " interrupted after " + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, the plugin is degraded";
+        java.util.logging.Logger.getLogger(Watchdog.class.getName()).log(java.util.logging.Level.SEVERE, message);
+        sink.accept(message);
+        if(quarantineAfter > 0 && count >= quarantineAfter && quarantined.putIfAbsent(pluginFile, (quarantineDuration == 0) ? 0L : (System.nanoTime() + quarantineDuration) | 1) == null){
+            message = "JavaPlugin: " + pluginFile + " is quarantined (" + count + " interrupted callbacks), its events are dropped " + ((quarantineDuration == 0) ? "until it is reloaded" : "for " + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(quarantineDuration) + " ms");
+            java.util.logging.Logger.getLogger(Watchdog.class.getName()).log(java.util.logging.Level.SEVERE, message);
+            sink.accept(message);
+        }
+    }
+
+    /**
+     * Returns a sample of the stack of a thread
+     * @param thread Corresponds to the thread
+     * @return Returns the sample of the stack of the thread
+     */
+    private static String stack(Thread thread) {
+        StackTraceElement[] frames = thread.getStackTrace();
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < frames.length && i < FRAMES; i++)
+            sb.append(System.lineSeparator()).append("\tat ").append(frames[i]);
+        if(frames.length > FRAMES)
+            sb.append(System.lineSeparator()).append("\t...");
+        return sb.toString();
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents a running callback (a slot is taken from the free slots by a callback and given back when it ends, so that no slot is allocated per thread)
+     * @author JasonPercus
+     * @version 1.0
+     */
+    static final class Running {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the thread which executes the callback (null if the slot is free)
+         */
+        private volatile Thread thread;
+
+        /**
+         * Corresponds to the start of the callback (System.nanoTime(), 0 if the thread is idle)
+         */
+        private volatile long start;
+
+        /**
+         * Corresponds to the path of the plugin file
+         */
+        private volatile String pluginFile;
+
+        /**
+         * Corresponds to the EventManager which receives the event
+         */
+        private volatile Object target;
+
+        /**
+         * Corresponds to the type of the event
+         */
+        private volatile EventType type;
+
+        /**
+         * Determines if the soft deadline has been reported
+         */
+        private volatile boolean warned;
+
+        /**
+         * Determines if the callback has been interrupted
+         */
+        private boolean interrupted;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a free Running
+         */
+        private Running() {
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the coalescing of the dispatcher: during the window only the latest pending coalescible event of a target and a scope is delivered, without changing the order of the events seen by the target
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class CoalescingTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the path of the plugin file
+     */
+    private static final String FILE = "coalescing.jar";
+
+    /**
+     * Corresponds to the window of the coalescing (in milliseconds), long enough for all the events of a test to be submitted before the first one is delivered
+     */
+    private static final long WINDOW = 500;
+
+
+
+//TESTS
+    /**
+     * A burst of willAppear events on the same context is delivered once, with the latest event
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBurstDeliversLatest() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(2, 256, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, WINDOW);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        Context context = new Context("context");
+        Object target = new Object();
+        for(int i = 0; i < 10; i++)
+            dispatcher.dispatch(FILE, context, target, WillAppear.class, context, add(delivered, "appear" + i));
+        assertEquals(9, dispatcher.coalesced());
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(java.util.Collections.singletonList("appear9"), delivered);
+    }
+
+    /**
+     * An event which is not coalescible between two coalescible ones prevents them from being coalesced (the order seen by the target is kept)
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testOrderIsKept() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(2, 256, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, WINDOW);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        Context context = new Context("context");
+        Object target = new Object();
+        dispatcher.dispatch(FILE, context, target, WillAppear.class, context, add(delivered, "appear0"));
+        dispatcher.dispatch(FILE, context, target, KeyDown.class, context, add(delivered, "key"));
+        dispatcher.dispatch(FILE, context, target, WillAppear.class, context, add(delivered, "appear1"));
+        assertEquals(0, dispatcher.coalesced());
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(java.util.Arrays.asList("appear0", "key", "appear1"), delivered);
+    }
+
+    /**
+     * Events of other scopes or other targets are not coalesced together
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testScopesAndTargets() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(2, 256, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, WINDOW);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        Context context = new Context("context");
+        Object first = new Object();
+        Object second = new Object();
+        dispatcher.dispatch(FILE, context, first, WillAppear.class, "a", add(delivered, "first-a"));
+        dispatcher.dispatch(FILE, context, second, WillAppear.class, "a", add(delivered, "second-a"));
+        dispatcher.dispatch(FILE, context, first, WillAppear.class, "b", add(delivered, "first-b"));
+        dispatcher.dispatch(FILE, context, second, WillAppear.class, "a", add(delivered, "second-a2"));
+        assertEquals(1, dispatcher.coalesced());
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(java.util.Arrays.asList("first-a", "second-a2", "first-b"), delivered);
+    }
+
+    /**
+     * Without a window, every event is delivered
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testDisabled() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(2, 256, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, 0);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CountDownLatch gate = new java.util.concurrent.CountDownLatch(1);
+        Context context = new Context("context");
+        Object target = new Object();
+        dispatcher.dispatch(FILE, context, target, KeyDown.class, context, () -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for(int i = 0; i < 10; i++)
+            dispatcher.dispatch(FILE, context, target, WillAppear.class, context, add(delivered, "appear" + i));
+        gate.countDown();
+        assertEquals(0, dispatcher.coalesced());
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(10, delivered.size());
+    }
+
+
+
+//METHODE PRIVATE
+    /**
+     * Returns a delivery which records its name
+     * @param delivered Corresponds to the names of the events delivered
+     * @param name Corresponds to the name of the event
+     * @return Returns the delivery
+     */
+    private static Runnable add(java.util.List<String> delivered, String name) {
+        return () -> delivered.add(name);
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the dispatch modes: the fall back to the platform threads on a JVM without virtual threads, and a load test with blocking callbacks which counts the platform threads started by each mode (the virtual mode is only tested on Java 21 or later). The latencies depend on the machine, so they are not compared
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class DispatchModeTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the number of contexts which receive a blocking event at the same time
+     */
+    private static final int CONTEXTS = 100;
+
+    /**
+     * Corresponds to the time during which each callback blocks (in milliseconds)
+     */
+    private static final long BLOCK = 20;
+
+
+
+//TESTS
+    /**
+     * The virtual mode falls back to the platform mode if the JVM does not support virtual threads
+     */
+    @Test
+    public void testParse() {
+        assertEquals(DispatchMode.PLATFORM, DispatchMode.parse(null));
+        assertEquals(DispatchMode.PLATFORM, DispatchMode.parse("platform"));
+        assertEquals(DispatchMode.PLATFORM, DispatchMode.parse("unknown"));
+        assertEquals(DispatchMode.isVirtualSupported() ? DispatchMode.VIRTUAL : DispatchMode.PLATFORM, DispatchMode.parse(" Virtual "));
+    }
+
+    /**
+     * All the blocking callbacks are executed in the platform mode, the pool of threads of the plugin file is not exceeded
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBlockingPlatform() throws InterruptedException {
+        Load load = load(DispatchMode.PLATFORM);
+        assertEquals(CONTEXTS, load.latency.count());
+        assertTrue("Threads started: " + load.threads, load.threads <= 2);
+    }
+
+    /**
+     * In the virtual mode a blocking callback does not hold an OS thread: the blocking callbacks run together without starting one platform thread per callback
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBlockingVirtual() throws InterruptedException {
+        Assume.assumeTrue("Virtual threads are not supported by this JVM", DispatchMode.isVirtualSupported());
+        Load virtual = load(DispatchMode.VIRTUAL);
+        assertEquals(CONTEXTS, virtual.latency.count());
+        assertTrue("Platform threads started: " + virtual.threads, virtual.threads < CONTEXTS);
+    }
+
+
+
+//METHODE PRIVATE
+    /**
+     * Sends one blocking event to each context of a plugin file at the same time, then measures the latency of the callbacks (from the submission to the end) and the number of platform threads started meanwhile
+     * @param mode Corresponds to the dispatch mode
+     * @return Returns the result of the load
+     * @throws InterruptedException If the test is interrupted
+     */
+    private static Load load(DispatchMode mode) throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(2, 256, OverflowPolicy.BLOCK, mode, 0);
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        long started = threads.getTotalStartedThreadCount();
+        Histogram latency = new Histogram();
+        java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(CONTEXTS);
+        Object target = new Object();
+        try {
+            for(int i = 0; i < CONTEXTS; i++){
+                long submitted = System.nanoTime();
+                dispatcher.dispatch("blocking.jar", new Context("context" + i), target, Object.class, null, () -> {
+                    try {
+                        Thread.sleep(BLOCK);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    synchronized(latency){
+                        latency.record(System.nanoTime() - submitted);
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue("The callbacks have not ended", done.await(30, java.util.concurrent.TimeUnit.SECONDS));
+            return new Load(latency, threads.getTotalStartedThreadCount() - started);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents the result of a load
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class Load {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the latencies of the callbacks
+         */
+        private final Histogram latency;
+
+        /**
+         * Corresponds to the number of platform threads started during the load
+         */
+        private final long threads;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a Load
+         * @param latency Corresponds to the latencies of the callbacks
+         * @param threads Corresponds to the number of platform threads started during the load
+         */
+        private Load(Histogram latency, long threads) {
+            this.latency = latency;
+            this.threads = threads;
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
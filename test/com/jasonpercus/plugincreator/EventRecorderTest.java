@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the recorder of the events: an event is recorded as it was received, even if a plugin modifies it before it is written
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class EventRecorderTest {
+
+
+
+//TESTS
+    /**
+     * The arguments of an event modified after the recording are written as they were recorded
+     * @throws java.io.IOException If the trace file cannot be read
+     */
+    @Test
+    public void testRecordedAsReceived() throws java.io.IOException {
+        java.io.File file = java.io.File.createTempFile("trace", ".jsonl");
+        try {
+            EventRecorder recorder = new EventRecorder(file.getPath(), 16);
+            java.util.List<String> extra = new java.util.ArrayList<>(java.util.Collections.singletonList("received"));
+            recorder.record(EventType.OTHER, null, "plugin.jar", null, null, "text", extra);
+            extra.set(0, "modified");
+            recorder.shutdown(5000);
+            assertEquals(1, recorder.written());
+            java.util.List<String> lines = java.nio.file.Files.readAllLines(file.toPath(), java.nio.charset.StandardCharsets.UTF_8);
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0), lines.get(0).contains("\"received\""));
+            assertFalse(lines.get(0), lines.get(0).contains("\"modified\""));
+        } finally {
+            file.delete();
+        }
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the histogram of the durations: its statistics, the approximation of its percentiles (upper bound of a power-of-two bucket, at most twice the real value), the merge of two histograms and the concurrent recordings
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class HistogramTest {
+
+
+
+//TESTS
+    /**
+     * An empty histogram returns 0 everywhere
+     */
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.mean());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    /**
+     * The statistics of a few values, and the percentiles given by the upper bound of their bucket (never more than the greatest value)
+     */
+    @Test
+    public void testValues() {
+        Histogram histogram = histogram(0, 1, 2, 3, 4, 7, 8, 100);
+        assertEquals(8, histogram.count());
+        assertEquals(125 / 8, histogram.mean());
+        assertEquals(100, histogram.max());
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(3, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(75));
+        assertEquals(15, histogram.percentile(87.5));
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    /**
+     * A negative value is recorded as 0, the greatest values fall in the last bucket
+     */
+    @Test
+    public void testBounds() {
+        Histogram histogram = histogram(-5, Long.MAX_VALUE);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+        assertEquals(Long.MAX_VALUE, histogram.max());
+    }
+
+    /**
+     * Each percentile is between the real value and twice the real value
+     */
+    @Test
+    public void testApproximation() {
+        java.util.Random random = new java.util.Random(42);
+        long[] values = new long[10000];
+        Histogram histogram = new Histogram();
+        for(int i = 0; i < values.length; i++){
+            values[i] = 1 + (long) Math.abs(random.nextGaussian() * 1000000);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        for(double percentile : new double[]{1, 25, 50, 90, 99, 99.9, 100}){
+            long real = values[(int) Math.ceil(values.length * percentile / 100.0) - 1];
+            long approximation = histogram.percentile(percentile);
+            assertTrue("p" + percentile + ": " + approximation + " < " + real, approximation >= real);
+            assertTrue("p" + percentile + ": " + approximation + " > 2 x " + real, approximation <= 2 * real);
+        }
+    }
+
+    /**
+     * Adding a histogram to another gives the same result as recording all the values in one histogram
+     */
+    @Test
+    public void testAdd() {
+        Histogram merged = histogram(5, 50, 500);
+        merged.add(histogram(1, 5000, 50000));
+        Histogram all = histogram(5, 50, 500, 1, 5000, 50000);
+        assertEquals(all.count(), merged.count());
+        assertEquals(all.mean(), merged.mean());
+        assertEquals(all.max(), merged.max());
+        for(double percentile : new double[]{0, 20, 50, 80, 100})
+            assertEquals(all.percentile(percentile), merged.percentile(percentile));
+    }
+
+    /**
+     * No value is lost when several threads record at the same time
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testConcurrentRecords() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++){
+            long offset = i;
+            threads[i] = new Thread(() -> {
+                for(int j = 0; j < 100000; j++)
+                    histogram.record(j + offset);
+            });
+            threads[i].start();
+        }
+        for(Thread thread : threads)
+            thread.join();
+        assertEquals(400000, histogram.count());
+        assertEquals(99999 + threads.length - 1, histogram.max());
+    }
+
+
+
+//METHODE PRIVATE
+    /**
+     * Returns a histogram of some values
+     * @param values Corresponds to the values (in nanoseconds)
+     * @return Returns the histogram
+     */
+    private static Histogram histogram(long... values) {
+        Histogram histogram = new Histogram();
+        for(long value : values)
+            histogram.record(value);
+        return histogram;
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the plugin files mapped in memory: the content of the stored and compressed entries (read at once or as a stream, by several threads), the names of the entries without the UTF-8 flag, and the reads after the plugin file is closed
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class MappedJarTest {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the files of the tests
+     */
+    private static TestPlugins plugins;
+
+    /**
+     * Corresponds to the content of each entry of the plugin file (by name)
+     */
+    private static java.util.LinkedHashMap<String, byte[]> contents;
+
+    /**
+     * Corresponds to the plugin file (compressed entries, and one stored entry)
+     */
+    private static java.io.File file;
+
+
+
+//INITIALIZATION
+    /**
+     * Writes the plugin file
+     * @throws java.io.IOException If the plugin file cannot be written
+     */
+    @BeforeClass
+    public static void setUpClass() throws java.io.IOException {
+        plugins = new TestPlugins();
+        java.util.Random random = new java.util.Random(42);
+        contents = new java.util.LinkedHashMap<>();
+        for(int i = 0; i < 50; i++){
+            byte[] content = new byte[random.nextInt(100000)];
+            for(int j = 0; j < content.length; j++)
+                content[j] = (byte) ('a' + random.nextInt(4));
+            contents.put("data/entry" + i + ".txt", content);
+        }
+        file = plugins.jar("plugin.jar", contents);
+        byte[] stored = "stored entry".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        contents.put("stored.txt", stored);
+        java.io.File tmp = new java.io.File(plugins.getFolder(), "stored.jar");
+        try (java.util.zip.ZipOutputStream out = new java.util.zip.ZipOutputStream(new java.io.FileOutputStream(tmp)); java.util.zip.ZipFile zip = new java.util.zip.ZipFile(file)) {
+            java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()){
+                java.util.zip.ZipEntry entry = entries.nextElement();
+                out.putNextEntry(new java.util.zip.ZipEntry(entry.getName()));
+                out.write(contents.get(entry.getName()));
+                out.closeEntry();
+            }
+            java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry("stored.txt");
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(stored);
+            entry.setMethod(java.util.zip.ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.closeEntry();
+        }
+        file = tmp;
+    }
+
+    /**
+     * Deletes the files
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        plugins.delete();
+    }
+
+
+
+//TESTS
+    /**
+     * Each entry, stored or compressed, is read with its content, at once or as a stream
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testRead() throws java.io.IOException {
+        try (MappedJar jar = MappedJar.open(file)) {
+            assertNotNull(jar);
+            assertEquals(contents.keySet(), jar.names());
+            for(java.util.Map.Entry<String, byte[]> e : contents.entrySet()){
+                assertArrayEquals(e.getKey(), e.getValue(), bytes(jar.read(e.getKey())));
+                try (java.io.InputStream in = jar.open(e.getKey())) {
+                    assertArrayEquals(e.getKey(), e.getValue(), bytes(in));
+                }
+            }
+            assertNull(jar.read("missing.txt"));
+        }
+    }
+
+    /**
+     * The entries read by several threads at the same time keep their content (each read owns its result)
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        try (MappedJar jar = MappedJar.open(file)) {
+            Thread[] threads = new Thread[8];
+            for(int i = 0; i < threads.length; i++){
+                threads[i] = new Thread(() -> {
+                    try {
+                        for(int round = 0; round < 5; round++){
+                            java.util.List<java.nio.ByteBuffer> read = new java.util.ArrayList<>();
+                            for(String name : contents.keySet())
+                                read.add(jar.read(name));
+                            int j = 0;
+                            for(byte[] content : contents.values())
+                                assertArrayEquals(content, bytes(read.get(j++)));
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                });
+                threads[i].start();
+            }
+            for(Thread thread : threads)
+                thread.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+    }
+
+    /**
+     * The names of the entries without the UTF-8 flag are decoded as CP437
+     * @throws java.io.IOException If the plugin file cannot be written or read
+     */
+    @Test
+    public void testCp437Names() throws java.io.IOException {
+        org.junit.Assume.assumeTrue("CP437 is not provided by this JVM", java.nio.charset.Charset.isSupported("IBM437"));
+        java.io.File legacy = new java.io.File(plugins.getFolder(), "legacy.zip");
+        try (java.util.zip.ZipOutputStream out = new java.util.zip.ZipOutputStream(new java.io.FileOutputStream(legacy), java.nio.charset.Charset.forName("IBM437"))) {
+            out.putNextEntry(new java.util.zip.ZipEntry("caf\u00e9/\u00c7a.txt"));
+            out.write('x');
+            out.closeEntry();
+        }
+        try (MappedJar jar = MappedJar.open(legacy)) {
+            assertEquals(java.util.Collections.singleton("caf\u00e9/\u00c7a.txt"), jar.names());
+        }
+    }
+
+    /**
+     * Once the plugin file is closed, its entries can no longer be read
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testClose() throws java.io.IOException {
+        MappedJar jar = MappedJar.open(file);
+        java.util.Set<String> names = jar.names();
+        jar.close();
+        assertFalse(jar.contains("stored.txt"));
+        assertNull(jar.read("stored.txt"));
+        assertNull(jar.open("stored.txt"));
+        assertTrue(jar.names().isEmpty());
+        assertEquals(contents.keySet(), names);
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the remaining bytes of a buffer
+     * @param buffer Corresponds to the buffer
+     * @return Returns the remaining bytes
+     */
+    private static byte[] bytes(java.nio.ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the bytes of a stream
+     * @param in Corresponds to the stream
+     * @return Returns the bytes of the stream
+     * @throws java.io.IOException If the stream cannot be read
+     */
+    private static byte[] bytes(java.io.InputStream in) throws java.io.IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while((n = in.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+
+
+}
\ No newline at end of file
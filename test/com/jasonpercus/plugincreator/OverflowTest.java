@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the bound of the pending events of a plugin file, all contexts together: the backlog of a plugin does not grow with its number of contexts, whatever the overflow policy
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class OverflowTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the path of the plugin file
+     */
+    private static final String FILE = "overflow.jar";
+
+    /**
+     * Corresponds to the maximum number of pending events of the plugin file
+     */
+    private static final int MAX_PENDING = 10;
+
+
+
+//TESTS
+    /**
+     * Once the plugin file has the maximum number of pending events, an event of a context which has none is refused
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBoundAllContexts() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(1, 256, MAX_PENDING, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, 0);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CountDownLatch gate = hold(dispatcher);
+        for(int i = 0; i < 5 * MAX_PENDING; i++){
+            Context context = new Context("context" + i);
+            dispatcher.dispatch(FILE, context, context, KeyDown.class, context, add(delivered, "key" + i));
+        }
+        assertEquals(MAX_PENDING, dispatcher.queueDepth(FILE));
+        assertEquals(4 * MAX_PENDING, dispatcher.rejected(FILE));
+        gate.countDown();
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(MAX_PENDING, delivered.size());
+    }
+
+    /**
+     * Once the plugin file has the maximum number of pending events, an event of a context which has some replaces the oldest one of its context
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBoundDropsOldestOfContext() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(1, 256, MAX_PENDING, OverflowPolicy.DROP_OLDEST, DispatchMode.PLATFORM, 0);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CountDownLatch gate = hold(dispatcher);
+        Context context = new Context("context");
+        for(int i = 0; i < MAX_PENDING + 3; i++)
+            dispatcher.dispatch(FILE, context, context, KeyDown.class, context, add(delivered, "key" + i));
+        assertEquals(MAX_PENDING, dispatcher.queueDepth(FILE));
+        assertEquals(3, dispatcher.rejected(FILE));
+        gate.countDown();
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(MAX_PENDING, delivered.size());
+        assertEquals("key3", delivered.get(0));
+        assertEquals("key" + (MAX_PENDING + 2), delivered.get(MAX_PENDING - 1));
+    }
+
+    /**
+     * With the BLOCK policy the caller waits until an event of any context leaves the plugin file, then its event is delivered
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testBlockWaitsForRoom() throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher(1, 256, MAX_PENDING, OverflowPolicy.BLOCK, DispatchMode.PLATFORM, 0);
+        java.util.List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CountDownLatch gate = hold(dispatcher);
+        for(int i = 0; i < MAX_PENDING; i++){
+            Context context = new Context("context" + i);
+            dispatcher.dispatch(FILE, context, context, KeyDown.class, context, add(delivered, "key" + i));
+        }
+        Context last = new Context("last");
+        Thread caller = new Thread(() -> dispatcher.dispatch(FILE, last, last, KeyDown.class, last, add(delivered, "last")));
+        caller.start();
+        long end = System.currentTimeMillis() + 5000;
+        while(caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(Thread.State.WAITING, caller.getState());
+        gate.countDown();
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+        assertEquals(0, dispatcher.rejected(FILE));
+        assertTrue(dispatcher.shutdown(FILE, 5000));
+        dispatcher.shutdown();
+        assertEquals(MAX_PENDING + 1, delivered.size());
+        assertTrue(delivered.contains("last"));
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Occupies the only thread of the plugin file until the returned gate is opened
+     * @param dispatcher Corresponds to the dispatcher
+     * @return Returns the gate which releases the thread
+     * @throws InterruptedException If the test is interrupted
+     */
+    private static java.util.concurrent.CountDownLatch hold(Dispatcher dispatcher) throws InterruptedException {
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch gate = new java.util.concurrent.CountDownLatch(1);
+        Context context = new Context("hold");
+        dispatcher.dispatch(FILE, context, context, KeyDown.class, context, () -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, java.util.concurrent.TimeUnit.SECONDS));
+        return gate;
+    }
+
+    /**
+     * Returns a delivery which records its name
+     * @param delivered Corresponds to the names of the events delivered
+     * @param name Corresponds to the name of the event
+     * @return Returns the delivery
+     */
+    private static Runnable add(java.util.List<String> delivered, String name) {
+        return () -> delivered.add(name);
+    }
+
+
+
+}
\ No newline at end of file
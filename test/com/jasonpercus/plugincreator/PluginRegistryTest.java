@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.GsonBuilder;
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the registry of the loaded plugin files: the indexes by action and by event type, and the lock-free reads while plugin files are loaded and unloaded
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class PluginRegistryTest {
+
+
+
+//TESTS
+    /**
+     * An action named after one of the EventManagers of a plugin file (simple or full class name) targets only this one, otherwise all the EventManagers of the file are targeted
+     */
+    @Test
+    public void testGetByAction() {
+        PluginRegistry registry = new PluginRegistry();
+        EventManager key = new KeyAction();
+        EventManager device = new DeviceAction();
+        registry.put("a.jar", new EventManager[]{key, device}, null);
+        assertArrayEquals(new EventManager[]{key}, registry.get("a.jar", "KeyAction"));
+        assertArrayEquals(new EventManager[]{key}, registry.get("a.jar", KeyAction.class.getName()));
+        assertArrayEquals(new EventManager[]{key, device}, registry.get("a.jar", "Unknown"));
+        assertArrayEquals(new EventManager[]{key, device}, registry.get("a.jar", (String) null));
+        assertEquals(0, registry.get("b.jar", "KeyAction").length);
+        assertEquals(0, registry.get(null, "KeyAction").length);
+    }
+
+    /**
+     * The broadcast events only target the plugin files which have an EventManager subscribed to their type
+     */
+    @Test
+    public void testFilesByType() {
+        PluginRegistry registry = new PluginRegistry();
+        registry.put("keys.jar", new EventManager[]{new KeyAction()}, null);
+        registry.put("devices.jar", new EventManager[]{new DeviceAction()}, null);
+        assertArrayEquals(new String[]{"devices.jar"}, registry.files(EventType.DEVICE_DID_CONNECT));
+        assertEquals(1, registry.get("devices.jar", EventType.DEVICE_DID_CONNECT).length);
+        assertEquals(0, registry.get("keys.jar", EventType.DEVICE_DID_CONNECT).length);
+        registry.remove("devices.jar");
+        assertEquals(0, registry.files(EventType.DEVICE_DID_CONNECT).length);
+    }
+
+    /**
+     * Loading a new version of a plugin file replaces the previous one and returns it, so that it can be released
+     */
+    @Test
+    public void testPutReplacesAndRemove() throws java.io.IOException {
+        PluginRegistry registry = new PluginRegistry();
+        java.io.Closeable loader = () -> {};
+        EventManager first = new KeyAction();
+        EventManager second = new KeyAction();
+        assertNull(registry.put("a.jar", new EventManager[]{first}, loader));
+        EventManager[] before = registry.get("a.jar");
+        PluginRegistry.Entry replaced = registry.put("a.jar", new EventManager[]{second}, null);
+        assertNotNull(replaced);
+        assertSame(first, replaced.getManagers()[0]);
+        assertSame(loader, replaced.getLoader());
+        assertSame(second, registry.get("a.jar")[0]);
+        assertSame(first, before[0]);
+        assertEquals(1, registry.size());
+        assertNotNull(registry.remove("a.jar"));
+        assertNull(registry.remove("a.jar"));
+        assertFalse(registry.contains("a.jar"));
+        assertEquals(0, registry.all().length);
+    }
+
+    /**
+     * The readers never see a partial version of a plugin file while other plugin files are loaded and unloaded
+     */
+    @Test
+    public void testReadsDuringWrites() throws InterruptedException {
+        PluginRegistry registry = new PluginRegistry();
+        EventManager[] managers = new EventManager[]{new KeyAction(), new DeviceAction()};
+        registry.put("stable.jar", managers, null);
+        java.util.concurrent.atomic.AtomicBoolean stop = new java.util.concurrent.atomic.AtomicBoolean();
+        java.util.concurrent.atomic.AtomicReference<String> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for(int i = 0; i < readers.length; i++){
+            readers[i] = new Thread(() -> {
+                while(!stop.get()){
+                    EventManager[] got = registry.get("stable.jar", "KeyAction");
+                    if(got.length != 1 || got[0] != managers[0])
+                        failure.set("stable.jar lost during a write");
+                    int length = registry.get("moving.jar").length;
+                    if(length != 0 && length != 2)
+                        failure.set("moving.jar seen with " + length + " EventManager(s)");
+                }
+            });
+            readers[i].start();
+        }
+        for(int i = 0; i < 20000; i++){
+            registry.put("moving.jar", new EventManager[]{new KeyAction(), new DeviceAction()}, null);
+            registry.remove("moving.jar");
+        }
+        stop.set(true);
+        for(Thread reader : readers)
+            reader.join();
+        assertNull(failure.get(), failure.get());
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents an EventManager which only handles the keys
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class KeyAction extends EventManager {
+
+
+
+    //EVENT
+        @Override
+        public void keyDown(KeyDown event, Context context, GsonBuilder builder) {
+        }
+
+
+
+    }
+
+    /**
+     * This class represents an EventManager which only handles the devices
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class DeviceAction extends EventManager {
+
+
+
+    //EVENT
+        @Override
+        public void deviceDidConnect(DeviceDidConnect event, String device, DeviceDidConnect.DeviceInfo infos, GsonBuilder builder) {
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file
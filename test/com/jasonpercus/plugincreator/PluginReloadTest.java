@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.Payload;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the hot reload of a plugin file: once the file is replaced on the disk, the new version is loaded and the class loader of the old version can be garbage collected (no metaspace leak)
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class PluginReloadTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the name of the action of the plugin file
+     */
+    private static final String ACTION = "reload.Action";
+
+    /**
+     * Corresponds to the maximum time to wait for the reload and for the garbage collection (in milliseconds)
+     */
+    private static final long TIMEOUT = 30000;
+
+    /**
+     * Corresponds to the class loaders of the EventManagers created by the plugin files (each EventManager records its class loader when it is created)
+     */
+    private static final java.util.List<java.lang.ref.WeakReference<ClassLoader>> LOADERS = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin files of the test
+     */
+    private TestPlugins plugins;
+
+    /**
+     * Corresponds to the Manager which hosts the plugin file
+     */
+    private Manager manager;
+
+
+
+//INITIALIZATION
+    /**
+     * Disables what would make the test depend on the previous runs (warmup of the recent plugin files, metadata cache)
+     */
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javaplugin.warmup", "false");
+        System.setProperty("javaplugin.cache.file", "");
+        System.setProperty("javaplugin.metrics.logInterval", "0");
+        System.setProperty("javaplugin.watch", "true");
+    }
+
+    /**
+     * Creates the Manager
+     * @throws java.io.IOException If the temporary folder cannot be created
+     */
+    @Before
+    public void setUp() throws java.io.IOException {
+        LOADERS.clear();
+        plugins = new TestPlugins();
+        manager = new Manager();
+        manager.onCreate();
+    }
+
+    /**
+     * Destroys the Manager and deletes the plugin files
+     */
+    @After
+    public void tearDown() {
+        manager.onDestroy();
+        plugins.delete();
+    }
+
+
+
+//TESTS
+    /**
+     * The plugin file is replaced while one of its actions is visible: the new version is loaded and the class loader of the old version is garbage collected
+     * @throws Exception If the plugin file cannot be created
+     */
+    @Test
+    public void testOldLoaderIsCollected() throws Exception {
+        java.io.File file = plugin(1);
+        Context context = new Context("context");
+        manager.willAppear(willAppear(file, context), context, GsonCache.builder());
+        await(() -> LOADERS.size() == 1 && manager.metrics().getDeliveries() >= 1, "The plugin file has not been loaded");
+
+        //The file is written apart then moved, as a build would replace it
+        plugin(2);
+        await(() -> LOADERS.size() == 2, "The plugin file has not been reloaded");
+        java.lang.ref.WeakReference<ClassLoader> old = LOADERS.get(0);
+        assertNotSame(old.get(), LOADERS.get(1).get());
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        java.util.List<byte[]> pressure = new java.util.ArrayList<>();
+        while(old.get() != null && System.currentTimeMillis() < deadline){
+            System.gc();
+            pressure.add(new byte[1 << 20]);
+            if(pressure.size() > 64)
+                pressure.clear();
+            Thread.sleep(50);
+        }
+        assertNull("The class loader of the old version is still reachable", old.get());
+        assertNotNull("The class loader of the new version has been collected", LOADERS.get(1).get());
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Records the class loader of an EventManager of a plugin file (called by its constructor)
+     * @param loader Corresponds to the class loader of the EventManager
+     */
+    public static void created(ClassLoader loader) {
+        LOADERS.add(new java.lang.ref.WeakReference<>(loader));
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Compiles a version of the plugin file and writes it (the previous version is replaced)
+     * @param version Corresponds to the version of the plugin file
+     * @return Returns the plugin file
+     * @throws java.io.IOException If the plugin file cannot be created
+     */
+    private java.io.File plugin(int version) throws java.io.IOException {
+        String source = "package reload;\n"
+                + "public class Action extends com.jasonpercus.plugincreator.EventManager {\n"
+                + "    public static final int VERSION = " + version + ";\n"
+                + "    public Action() { " + PluginReloadTest.class.getName() + ".created(getClass().getClassLoader()); }\n"
+                + "    @Override public void willAppear(com.jasonpercus.plugincreator.models.events.WillAppear e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { }\n"
+                + "}\n";
+        return plugins.jar("reload.jar", plugins.compile(java.util.Collections.singletonMap(ACTION, source)), ACTION);
+    }
+
+    /**
+     * Returns a willAppear event of an action of the plugin file
+     * @param file Corresponds to the plugin file
+     * @param context Corresponds to the context of the action
+     * @return Returns the event
+     */
+    private static WillAppear willAppear(java.io.File file, Context context) {
+        com.google.gson.JsonObject settings = new com.google.gson.JsonObject();
+        settings.addProperty("pluginFile", file.getAbsolutePath());
+        settings.addProperty("actionName", ACTION);
+        WillAppear event = new WillAppear();
+        event.context = context.toString();
+        event.payload = new Payload();
+        event.payload.settings = settings.toString();
+        return event;
+    }
+
+    /**
+     * Waits until a condition is met
+     * @param condition Corresponds to the condition
+     * @param message Corresponds to the message of the failure if the condition is not met in time
+     * @throws InterruptedException If the test is interrupted
+     */
+    private static void await(java.util.function.BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while(!condition.getAsBoolean()){
+            if(System.currentTimeMillis() > deadline)
+                fail(message);
+            Thread.sleep(20);
+        }
+    }
+
+
+
+}
\ No newline at end of file
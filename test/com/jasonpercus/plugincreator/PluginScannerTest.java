@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the discovery of the EventManagers of a plugin file without loading its classes: from the headers of the .class entries (read with a ZipFile or mapped in memory) or from an index META-INF/services
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class PluginScannerTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the system property set by the static initializers of the classes of the plugin file
+     */
+    private static final String INITIALIZED = "javaplugin.test.initialized";
+
+    /**
+     * Corresponds to the static initializer of the classes of the plugin file
+     */
+    private static final String INIT = " static { System.setProperty(\"" + INITIALIZED + "\", \"true\"); }";
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin files of the tests
+     */
+    private static TestPlugins plugins;
+
+    /**
+     * Corresponds to the compiled classes of the plugin file
+     */
+    private static java.io.File classes;
+
+    /**
+     * Corresponds to the plugin file (without index): scan.External extends lib.Base, which is not in the plugin file
+     */
+    private static java.io.File file;
+
+
+
+//INITIALIZATION
+    /**
+     * Compiles the classes and writes the plugin file
+     * @throws java.io.IOException If the plugin file cannot be created
+     */
+    @BeforeClass
+    public static void setUpClass() throws java.io.IOException {
+        plugins = new TestPlugins();
+        java.util.LinkedHashMap<String, String> sources = new java.util.LinkedHashMap<>();
+        sources.put("lib.Base", "package lib; public abstract class Base extends com.jasonpercus.plugincreator.EventManager {}");
+        sources.put("scan.Other", "package scan; public class Other {" + INIT + " }");
+        sources.put("scan.Indirect", "package scan; public class Indirect extends Direct {" + INIT + " }");
+        sources.put("scan.Direct", "package scan; public class Direct extends com.jasonpercus.plugincreator.EventManager {" + INIT + " public static class Nested {} }");
+        sources.put("scan.External", "package scan; public class External extends lib.Base {" + INIT + " }");
+        sources.put("scan.Task", "package scan; public class Task extends Thread implements Runnable {" + INIT + " }");
+        classes = plugins.compile(sources);
+        file = plugins.jar("plugin.jar", classes, "scan.Other", "scan.Indirect", "scan.Direct", "scan.External", "scan.Task");
+    }
+
+    /**
+     * Deletes the plugin files
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        plugins.delete();
+    }
+
+
+
+//TESTS
+    /**
+     * The subclasses are found from the headers of the .class entries, in the order of the plugin file, a class whose superclass chain leaves the plugin file is kept, and no class is initialized
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testHeaders() throws java.io.IOException {
+        assertEquals(java.util.Arrays.asList("scan.Indirect", "scan.Direct", "scan.External"), PluginScanner.findSubclasses(file, EventManager.class.getName()));
+        assertNull("A static initializer has been run", System.getProperty(INITIALIZED));
+    }
+
+    /**
+     * The plugin file mapped in memory gives the same result
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testMapped() throws java.io.IOException {
+        try (MappedJar jar = MappedJar.open(file)) {
+            assertNotNull(jar);
+            assertEquals(PluginScanner.findSubclasses(file, EventManager.class.getName()), PluginScanner.findSubclasses(jar, EventManager.class.getName()));
+        }
+        assertNull("A static initializer has been run", System.getProperty(INITIALIZED));
+    }
+
+    /**
+     * The index META-INF/services of the plugin file is used instead of the headers (comments, blank lines and duplicates are ignored)
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testIndex() throws java.io.IOException {
+        java.util.LinkedHashMap<String, byte[]> entries = new java.util.LinkedHashMap<>();
+        entries.put("META-INF/services/" + EventManager.class.getName(), "# EventManagers\nscan.Direct\n\nscan.Direct\nscan.Indirect # key\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        entries.put("scan/External.class", java.nio.file.Files.readAllBytes(new java.io.File(classes, "scan/External.class").toPath()));
+        java.io.File indexed = plugins.jar("indexed.jar", entries);
+        assertEquals(java.util.Arrays.asList("scan.Direct", "scan.Indirect"), PluginScanner.findSubclasses(indexed, EventManager.class.getName()));
+        try (MappedJar jar = MappedJar.open(indexed)) {
+            assertEquals(java.util.Arrays.asList("scan.Direct", "scan.Indirect"), PluginScanner.findSubclasses(jar, EventManager.class.getName()));
+        }
+    }
+
+    /**
+     * The entries which are not valid .class files are ignored
+     * @throws java.io.IOException If the plugin file cannot be read
+     */
+    @Test
+    public void testInvalidEntries() throws java.io.IOException {
+        java.util.LinkedHashMap<String, byte[]> entries = new java.util.LinkedHashMap<>();
+        entries.put("scan/Broken.class", new byte[]{1, 2, 3});
+        entries.put("scan/Truncated.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 52, 0, 10});
+        entries.put("scan/Direct.class", java.nio.file.Files.readAllBytes(new java.io.File(classes, "scan/Direct.class").toPath()));
+        java.io.File invalid = plugins.jar("invalid.jar", entries);
+        assertEquals(java.util.Collections.singletonList("scan.Direct"), PluginScanner.findSubclasses(invalid, EventManager.class.getName()));
+    }
+
+    /**
+     * The size of the classes of a plugin file is the total size of its .class entries
+     */
+    @Test
+    public void testClassBytes() {
+        long expected = 0;
+        for(String name : new String[]{"Other", "Indirect", "Direct", "Direct$Nested", "External", "Task"})
+            expected += new java.io.File(classes, "scan/" + name + ".class").length();
+        assertEquals(expected, PluginScanner.classBytes(file));
+        assertEquals(0, PluginScanner.classBytes(new java.io.File(plugins.getFolder(), "missing.jar")));
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.Payload;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the routing of the Property Inspector events: each one is only delivered to the plugin file which owns its context, even while this plugin file is still loading. Both plugin files have an action with the same class name
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class PropertyInspectorRoutingTest {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the name of the action of both plugin files
+     */
+    private static final String ACTION = "inspector.Action";
+
+    /**
+     * Corresponds to the maximum time to wait for the deliveries (in milliseconds)
+     */
+    private static final long TIMEOUT = 30000;
+
+    /**
+     * Corresponds to the time during which no other delivery is expected once the expected ones have arrived (in milliseconds)
+     */
+    private static final long QUIET = 300;
+
+    /**
+     * Corresponds to the events received by the plugin files ("plugin event context")
+     */
+    private static final java.util.List<String> RECEIVED = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin files of the test
+     */
+    private TestPlugins plugins;
+
+    /**
+     * Corresponds to the Manager which hosts the plugin files
+     */
+    private Manager manager;
+
+    /**
+     * Corresponds to the first plugin file
+     */
+    private java.io.File a;
+
+    /**
+     * Corresponds to the second plugin file
+     */
+    private java.io.File b;
+
+
+
+//INITIALIZATION
+    /**
+     * Disables what would make the test depend on the previous runs (warmup of the recent plugin files, metadata cache)
+     */
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javaplugin.warmup", "false");
+        System.setProperty("javaplugin.cache.file", "");
+        System.setProperty("javaplugin.metrics.logInterval", "0");
+    }
+
+    /**
+     * Creates both plugin files and the Manager
+     * @throws java.io.IOException If the plugin files cannot be created
+     */
+    @Before
+    public void setUp() throws java.io.IOException {
+        RECEIVED.clear();
+        plugins = new TestPlugins();
+        a = plugin("a");
+        b = plugin("b");
+        manager = new Manager();
+        manager.onCreate();
+    }
+
+    /**
+     * Destroys the Manager and deletes the plugin files
+     */
+    @After
+    public void tearDown() {
+        manager.onDestroy();
+        plugins.delete();
+    }
+
+
+
+//TESTS
+    /**
+     * With both plugin files loaded, each Property Inspector event is only received by the plugin file of its context
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testOwnerOnly() throws InterruptedException {
+        Context ca = new Context("contextA");
+        Context cb = new Context("contextB");
+        manager.willAppear(willAppear(a, ca), ca, GsonCache.builder());
+        manager.willAppear(willAppear(b, cb), cb, GsonCache.builder());
+        await(2);
+        RECEIVED.clear();
+
+        manager.propertyInspectorDidAppear(propertyInspectorDidAppear(ca), ca, GsonCache.builder());
+        manager.propertyInspectorDidDisappear(propertyInspectorDidDisappear(cb), cb, GsonCache.builder());
+        manager.propertyInspectorDidAppear(propertyInspectorDidAppear(cb), cb, GsonCache.builder());
+        await(3);
+        assertEquals(java.util.Arrays.asList("a propertyInspectorDidAppear contextA"), received("a"));
+        assertEquals(java.util.Arrays.asList("b propertyInspectorDidDisappear contextB", "b propertyInspectorDidAppear contextB"), received("b"));
+    }
+
+    /**
+     * A Property Inspector event received while the plugin file of its context is still loading is delivered to this plugin file once it is loaded, and to no other one
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public void testWhileLoading() throws InterruptedException {
+        Context cb = new Context("contextB");
+        manager.willAppear(willAppear(b, cb), cb, GsonCache.builder());
+        await(1);
+        Context ca = new Context("contextA");
+        manager.willAppear(willAppear(a, ca), ca, GsonCache.builder());
+        manager.propertyInspectorDidAppear(propertyInspectorDidAppear(ca), ca, GsonCache.builder());
+        await(3);
+        assertEquals(java.util.Arrays.asList("a willAppear contextA", "a propertyInspectorDidAppear contextA"), received("a"));
+        assertEquals(java.util.Arrays.asList("b willAppear contextB"), received("b"));
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Records an event received by a plugin file (called by the actions of the plugin files)
+     * @param plugin Corresponds to the plugin file
+     * @param event Corresponds to the event
+     * @param context Corresponds to the context of the event
+     */
+    public static void received(String plugin, String event, Object context) {
+        RECEIVED.add(plugin + " " + event + " " + context);
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Compiles and writes a plugin file whose action records the events it receives
+     * @param plugin Corresponds to the name of the plugin file
+     * @return Returns the plugin file
+     * @throws java.io.IOException If the plugin file cannot be created
+     */
+    private java.io.File plugin(String plugin) throws java.io.IOException {
+        String sink = PropertyInspectorRoutingTest.class.getName() + ".received(\"" + plugin + "\", ";
+        String source = "package inspector;\n"
+                + "public class Action extends com.jasonpercus.plugincreator.EventManager {\n"
+                + "    @Override public void willAppear(com.jasonpercus.plugincreator.models.events.WillAppear e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { " + sink + "\"willAppear\", c); }\n"
+                + "    @Override public void propertyInspectorDidAppear(com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { " + sink + "\"propertyInspectorDidAppear\", c); }\n"
+                + "    @Override public void propertyInspectorDidDisappear(com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear e, com.jasonpercus.plugincreator.models.Context c, com.google.gson.GsonBuilder b) { " + sink + "\"propertyInspectorDidDisappear\", c); }\n"
+                + "}\n";
+        return plugins.jar(plugin + ".jar", plugins.compile(java.util.Collections.singletonMap(ACTION, source)), ACTION);
+    }
+
+    /**
+     * Returns the events received by a plugin file
+     * @param plugin Corresponds to the plugin file
+     * @return Returns the events received by the plugin file, in their order
+     */
+    private static java.util.List<String> received(String plugin) {
+        java.util.List<String> list = new java.util.ArrayList<>();
+        for(String event : RECEIVED){
+            if(event.startsWith(plugin + " "))
+                list.add(event);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a willAppear event of the action of a plugin file
+     * @param file Corresponds to the plugin file
+     * @param context Corresponds to the context of the action
+     * @return Returns the event
+     */
+    private static WillAppear willAppear(java.io.File file, Context context) {
+        com.google.gson.JsonObject settings = new com.google.gson.JsonObject();
+        settings.addProperty("pluginFile", file.getAbsolutePath());
+        settings.addProperty("actionName", ACTION);
+        WillAppear event = new WillAppear();
+        event.action = ACTION;
+        event.context = context.toString();
+        event.payload = new Payload();
+        event.payload.settings = settings.toString();
+        return event;
+    }
+
+    /**
+     * Returns a propertyInspectorDidAppear event of an action
+     * @param context Corresponds to the context of the action
+     * @return Returns the event
+     */
+    private static PropertyInspectorDidAppear propertyInspectorDidAppear(Context context) {
+        PropertyInspectorDidAppear event = new PropertyInspectorDidAppear();
+        event.action = ACTION;
+        event.context = context.toString();
+        return event;
+    }
+
+    /**
+     * Returns a propertyInspectorDidDisappear event of an action
+     * @param context Corresponds to the context of the action
+     * @return Returns the event
+     */
+    private static PropertyInspectorDidDisappear propertyInspectorDidDisappear(Context context) {
+        PropertyInspectorDidDisappear event = new PropertyInspectorDidDisappear();
+        event.action = ACTION;
+        event.context = context.toString();
+        return event;
+    }
+
+    /**
+     * Waits until a number of events have been received, then checks that no other event arrives for a short time
+     * @param count Corresponds to the number of events expected
+     * @throws InterruptedException If the test is interrupted
+     */
+    private static void await(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while(RECEIVED.size() < count){
+            if(System.currentTimeMillis() > deadline)
+                fail("Only " + RECEIVED + " received after " + TIMEOUT + " ms");
+            Thread.sleep(10);
+        }
+        Thread.sleep(QUIET);
+        assertEquals(RECEIVED.toString(), count, RECEIVED.size());
+    }
+
+
+
+}
\ No newline at end of file
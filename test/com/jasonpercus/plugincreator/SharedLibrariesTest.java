@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the isolation of the plugins with the shared libraries: a shared package is loaded by the shared libraries for the plugins which do not bundle it or which bundle the same version of it, and by the plugin itself when it bundles another version or opts out
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class SharedLibrariesTest {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the name of the class of the shared library
+     */
+    private static final String LIB = "shared.Lib";
+
+    /**
+     * Corresponds to the name of a class of another package of the shared library (the same in both versions)
+     */
+    private static final String HELPER = "shared.util.Helper";
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the plugin files and the shared library of the tests
+     */
+    private static TestPlugins plugins;
+
+    /**
+     * Corresponds to the shared libraries (version 1 of shared.Lib)
+     */
+    private static SharedLibraries shared;
+
+    /**
+     * Corresponds to the compiled version 1 of shared.Lib
+     */
+    private static java.io.File v1;
+
+    /**
+     * Corresponds to the compiled version 2 of shared.Lib
+     */
+    private static java.io.File v2;
+
+
+
+//INITIALIZATION
+    /**
+     * Compiles both versions of the library and writes the version 1 in the folder of the shared libraries
+     * @throws java.io.IOException If the library cannot be created
+     */
+    @BeforeClass
+    public static void setUpClass() throws java.io.IOException {
+        plugins = new TestPlugins();
+        v1 = plugins.compile(library(1));
+        v2 = plugins.compile(library(2));
+        new java.io.File(plugins.getFolder(), "lib").mkdirs();
+        plugins.jar("lib/lib-1.0.jar", v1, LIB, HELPER);
+        shared = new SharedLibraries(new java.io.File(plugins.getFolder(), "lib").getPath());
+    }
+
+    /**
+     * Closes the shared libraries and deletes the files
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        shared.close();
+        plugins.delete();
+    }
+
+
+
+//TESTS
+    /**
+     * A plugin which does not bundle the library uses the shared one
+     * @throws Exception If the class cannot be loaded
+     */
+    @Test
+    public void testNotBundled() throws Exception {
+        java.util.LinkedHashMap<String, byte[]> entries = new java.util.LinkedHashMap<>();
+        entries.put("plugin/readme.txt", new byte[]{'a'});
+        assertSame(shared.parent(), load(plugins.jar("none.jar", entries)));
+    }
+
+    /**
+     * A plugin which bundles the same version of the library uses the shared one
+     * @throws Exception If the class cannot be loaded
+     */
+    @Test
+    public void testSameVersion() throws Exception {
+        assertSame(shared.parent(), load(plugins.jar("same.jar", v1, LIB)));
+    }
+
+    /**
+     * A plugin which bundles another version of the library loads its own (child-first)
+     * @throws Exception If the class cannot be loaded
+     */
+    @Test
+    public void testOtherVersion() throws Exception {
+        assertEquals("own", load(plugins.jar("other.jar", v2, LIB)));
+    }
+
+    /**
+     * A plugin which bundles another version of the library loads its own copy of all the packages of the library, even of a class which is the same in both versions
+     * @throws Exception If the class cannot be loaded
+     */
+    @Test
+    public void testOtherVersionWholeLibrary() throws Exception {
+        java.io.File file = plugins.jar("whole.jar", v2, LIB, HELPER);
+        assertEquals("own", load(file, LIB));
+        assertEquals("own", load(file, HELPER));
+    }
+
+    /**
+     * A plugin which opts out of the shared libraries loads its own copy, even of the same version
+     * @throws Exception If the class cannot be loaded
+     */
+    @Test
+    public void testOptOut() throws Exception {
+        java.util.LinkedHashMap<String, byte[]> entries = new java.util.LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nJavaPlugin-SharedLib: false\r\n\r\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        entries.put("shared/Lib.class", java.nio.file.Files.readAllBytes(new java.io.File(v1, "shared/Lib.class").toPath()));
+        assertEquals("own", load(plugins.jar("optout.jar", entries)));
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns the sources of a version of the library
+     * @param version Corresponds to the version of the library
+     * @return Returns the sources of the library by class name
+     */
+    private static java.util.Map<String, String> library(int version) {
+        java.util.Map<String, String> sources = new java.util.LinkedHashMap<>();
+        sources.put(LIB, "package shared; public class Lib { public static int version() { return " + version + "; } }");
+        sources.put(HELPER, "package shared.util; public class Helper { }");
+        return sources;
+    }
+
+    /**
+     * Loads the main class of the library in the class loader of a plugin file
+     * @param file Corresponds to the plugin file
+     * @return Returns the class loader which defined the class, or "own" if it is the class loader of the plugin file
+     * @throws Exception If the class cannot be loaded
+     */
+    private static Object load(java.io.File file) throws Exception {
+        return load(file, LIB);
+    }
+
+    /**
+     * Loads a class of the library in the class loader of a plugin file
+     * @param file Corresponds to the plugin file
+     * @param className Corresponds to the name of the class
+     * @return Returns the class loader which defined the class, or "own" if it is the class loader of the plugin file
+     * @throws Exception If the class cannot be loaded
+     */
+    private static Object load(java.io.File file, String className) throws Exception {
+        try (PluginClassLoader loader = new PluginClassLoader(new java.net.URL[]{file.toURI().toURL()}, shared)) {
+            ClassLoader defining = loader.loadClass(className).getClassLoader();
+            return (defining == loader) ? "own" : defining;
+        }
+    }
+
+
+
+}
\ No newline at end of file
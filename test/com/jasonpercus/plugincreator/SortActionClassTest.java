@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+
+/**
+ * This class tests the pruning of the EventManagers found in a plugin file (see {@link Manager#sortActionClass(java.util.List)}): the abstract classes and the classes extended by another class of the list are removed, the order is kept
+ * @author JasonPercus
+ * @version 1.0
+ */
+public class SortActionClassTest {
+
+
+
+//CONSTANTE
+    /**
+     * Corresponds to the classes of the hierarchy used by the tests
+     */
+    private static final Class<?>[] HIERARCHY = {AbstractAction.class, Key.class, SpecialKey.class, Dial.class, Root.class, Middle.class, Leaf.class, Other.class};
+
+
+
+//TESTS
+    /**
+     * The abstract classes and the extended classes are removed, the order of the others is kept
+     */
+    @Test
+    public void testPruning() {
+        java.util.List<Class<?>> classes = list(Key.class, Dial.class, AbstractAction.class, SpecialKey.class, Other.class);
+        Manager.sortActionClass(classes);
+        assertEquals(list(Dial.class, SpecialKey.class, Other.class), classes);
+    }
+
+    /**
+     * A class is removed even if the class which extends it goes through a class which is not in the list
+     */
+    @Test
+    public void testIndirect() {
+        java.util.List<Class<?>> classes = list(Root.class, Leaf.class);
+        Manager.sortActionClass(classes);
+        assertEquals(list(Leaf.class), classes);
+    }
+
+    /**
+     * The result is the same as comparing each pair of classes, for every subset of the hierarchy, in both orders
+     */
+    @Test
+    public void testSameAsPairs() {
+        for(int mask = 0; mask < (1 << HIERARCHY.length); mask++){
+            java.util.List<Class<?>> classes = new java.util.ArrayList<>();
+            for(int i = 0; i < HIERARCHY.length; i++){
+                if((mask & (1 << i)) != 0)
+                    classes.add(HIERARCHY[i]);
+            }
+            for(int pass = 0; pass < 2; pass++){
+                java.util.List<Class<?>> expected = pairs(classes);
+                java.util.List<Class<?>> actual = new java.util.ArrayList<>(classes);
+                Manager.sortActionClass(actual);
+                assertEquals(classes.toString(), expected, actual);
+                java.util.Collections.reverse(classes);
+            }
+        }
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Returns a modifiable list of classes
+     * @param classes Corresponds to the classes
+     * @return Returns the list
+     */
+    private static java.util.List<Class<?>> list(Class<?>... classes) {
+        return new java.util.ArrayList<>(java.util.Arrays.asList(classes));
+    }
+
+    /**
+     * Prunes a list of classes by comparing each pair of classes (the reference algorithm, in O(n²))
+     * @param classes Corresponds to the classes
+     * @return Returns the classes which are neither abstract nor extended by another class of the list
+     */
+    private static java.util.List<Class<?>> pairs(java.util.List<Class<?>> classes) {
+        java.util.List<Class<?>> list = new java.util.ArrayList<>();
+        for(Class<?> c : classes){
+            boolean extended = java.lang.reflect.Modifier.isAbstract(c.getModifiers());
+            for(Class<?> other : classes){
+                if(other != c && c.isAssignableFrom(other))
+                    extended = true;
+            }
+            if(!extended)
+                list.add(c);
+        }
+        return list;
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents an abstract EventManager
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static abstract class AbstractAction extends EventManager {}
+
+    /**
+     * This class represents an EventManager which extends an abstract one
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Key extends AbstractAction {}
+
+    /**
+     * This class represents an EventManager which extends another one
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class SpecialKey extends Key {}
+
+    /**
+     * This class represents an EventManager
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Dial extends EventManager {}
+
+    /**
+     * This class represents the root of a chain of EventManagers
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Root extends EventManager {}
+
+    /**
+     * This class represents the middle of a chain of EventManagers
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Middle extends Root {}
+
+    /**
+     * This class represents the leaf of a chain of EventManagers
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Leaf extends Middle {}
+
+    /**
+     * This class represents an EventManager
+     * @author JasonPercus
+     * @version 1.0
+     */
+    public static class Other extends EventManager {}
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+/**
+ * This class creates the plugin files used by the tests in a temporary folder. Their classes are compiled at run time, so that they are not in the classpath of the tests and each plugin file is really loaded in its own class loader. The classes of a plugin file can call the public static members of the tests (which are in the classpath)
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class TestPlugins {
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the temporary folder
+     */
+    private final java.io.File folder;
+
+    /**
+     * Corresponds to the number of compilations (each one is compiled in its own folder)
+     */
+    private int compilations;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create a temporary folder for the plugin files
+     * @throws java.io.IOException If the folder cannot be created
+     */
+    TestPlugins() throws java.io.IOException {
+        this.folder = java.nio.file.Files.createTempDirectory("javaplugin-test").toFile();
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Returns the temporary folder
+     * @return Returns the temporary folder
+     */
+    java.io.File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Compiles classes with the compiler of the JDK, against the classpath of the tests
+     * @param sources Corresponds to the source of each class (by full class name)
+     * @return Returns the folder which contains the compiled classes
+     * @throws java.io.IOException If the classes cannot be compiled
+     */
+    java.io.File compile(java.util.Map<String, String> sources) throws java.io.IOException {
+        javax.tools.JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+        if(compiler == null)
+            throw new java.io.IOException("The tests must run on a JDK (the plugin files are compiled at run time)");
+        int n = ++compilations;
+        java.io.File src = new java.io.File(folder, "src" + n);
+        java.io.File classes = new java.io.File(folder, "classes" + n);
+        classes.mkdirs();
+        java.util.List<String> args = new java.util.ArrayList<>(java.util.Arrays.asList("-nowarn", "-classpath", System.getProperty("java.class.path"), "-d", classes.getPath()));
+        for(java.util.Map.Entry<String, String> source : sources.entrySet()){
+            java.io.File file = new java.io.File(src, source.getKey().replace('.', '/') + ".java");
+            file.getParentFile().mkdirs();
+            java.nio.file.Files.write(file.toPath(), source.getValue().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            args.add(file.getPath());
+        }
+        int status = compiler.run(null, null, null, args.toArray(new String[args.size()]));
+        if(status != 0)
+            throw new java.io.IOException("Unable to compile " + sources.keySet() + " (status " + status + ")");
+        return classes;
+    }
+
+    /**
+     * Writes a plugin file (or a library) with some compiled classes (and their nested classes)
+     * @param name Corresponds to the name of the file in the temporary folder
+     * @param classes Corresponds to the folder which contains the compiled classes
+     * @param classNames Corresponds to the full names of the classes to write
+     * @return Returns the file
+     * @throws java.io.IOException If the file cannot be written
+     */
+    java.io.File jar(String name, java.io.File classes, String... classNames) throws java.io.IOException {
+        java.util.LinkedHashMap<String, byte[]> entries = new java.util.LinkedHashMap<>();
+        for(String className : classNames){
+            String path = className.replace('.', '/');
+            java.io.File dir = new java.io.File(classes, path).getParentFile();
+            String simple = path.substring(path.lastIndexOf('/') + 1);
+            java.io.File[] files = dir.listFiles((java.io.File d, String n) -> n.equals(simple + ".class") || n.startsWith(simple + "$"));
+            if(files == null || files.length == 0)
+                throw new java.io.FileNotFoundException(className);
+            java.util.Arrays.sort(files);
+            for(java.io.File f : files)
+                entries.put(path.substring(0, path.length() - simple.length()) + f.getName(), java.nio.file.Files.readAllBytes(f.toPath()));
+        }
+        return jar(name, entries);
+    }
+
+    /**
+     * Writes a plugin file (or a library) with some entries, in their order. An existing file is replaced
+     * @param name Corresponds to the name of the file in the temporary folder
+     * @param entries Corresponds to the content of each entry (by entry name)
+     * @return Returns the file
+     * @throws java.io.IOException If the file cannot be written
+     */
+    java.io.File jar(String name, java.util.Map<String, byte[]> entries) throws java.io.IOException {
+        java.io.File file = new java.io.File(folder, name);
+        java.io.File tmp = new java.io.File(folder, name + ".tmp");
+        try (java.util.jar.JarOutputStream out = new java.util.jar.JarOutputStream(new java.io.FileOutputStream(tmp))) {
+            for(java.util.Map.Entry<String, byte[]> entry : entries.entrySet()){
+                out.putNextEntry(new java.util.jar.JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Deletes the temporary folder and its content
+     */
+    void delete() {
+        delete(folder);
+    }
+
+
+
+//METHODE PRIVATE
+    /**
+     * Deletes a file or a folder and its content
+     * @param file Corresponds to the file or the folder
+     */
+    private static void delete(java.io.File file) {
+        java.io.File[] children = file.listFiles();
+        if(children != null){
+            for(java.io.File f : children)
+                delete(f);
+        }
+        file.delete();
+    }
+
+
+
+}
\ No newline at end of file
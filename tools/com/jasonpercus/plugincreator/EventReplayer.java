@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.jasonpercus.plugincreator.models.Context;
+import com.jasonpercus.plugincreator.models.Payload;
+import com.jasonpercus.plugincreator.models.TitleParameters;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidLaunch;
+import com.jasonpercus.plugincreator.models.events.ApplicationDidTerminate;
+import com.jasonpercus.plugincreator.models.events.DeviceDidConnect;
+import com.jasonpercus.plugincreator.models.events.DeviceDidDisconnect;
+import com.jasonpercus.plugincreator.models.events.DidReceiveGlobalSettings;
+import com.jasonpercus.plugincreator.models.events.DidReceiveSettings;
+import com.jasonpercus.plugincreator.models.events.Event;
+import com.jasonpercus.plugincreator.models.events.KeyDown;
+import com.jasonpercus.plugincreator.models.events.KeyUp;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidAppear;
+import com.jasonpercus.plugincreator.models.events.PropertyInspectorDidDisappear;
+import com.jasonpercus.plugincreator.models.events.SendToPlugin;
+import com.jasonpercus.plugincreator.models.events.SendToPropertyInspector;
+import com.jasonpercus.plugincreator.models.events.SystemDidWakeUp;
+import com.jasonpercus.plugincreator.models.events.TitleParametersDidChange;
+import com.jasonpercus.plugincreator.models.events.WillAppear;
+import com.jasonpercus.plugincreator.models.events.WillDisappear;
+
+
+
+/**
+ * This class replays a trace file written by {@link EventRecorder} into a {@link Manager}, at the original pace or as fast as possible, and compares the timings of two replays (for example before and after a change of the host). The replay has no Stream Deck connection: the plugins which send something to the Stream Deck fail, their errors are counted but their timings stay comparable between two builds. It is a development tool of tools/, built by the target tools of build.xml and not included in the plugin jar:
+ * <ul>
+ * <li>java -cp dist/JavaPlugin.jar:build/tools/classes com.jasonpercus.plugincreator.EventReplayer replay &lt;trace&gt; [--fast] [--report &lt;file&gt;]</li>
+ * <li>java -cp dist/JavaPlugin.jar:build/tools/classes com.jasonpercus.plugincreator.EventReplayer compare &lt;before&gt; &lt;after&gt;</li>
+ * </ul>
+ * The report of a replay gives, per event type, the time of the Manager call (routing, loading and queuing), the time spent in the queue and the execution time of the callbacks (in nanoseconds). The reports of {@link StreamDeckSimulator} can be compared the same way
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class EventReplayer {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the measures of a report
+     */
+    private static final String[] MEASURES = new String[]{"count", "mean", "p50", "p90", "p99", "max"};
+
+    /**
+     * Corresponds to the time without any new delivery after which the replay is considered as finished (in milliseconds)
+     */
+    private static final long QUIET = 1000;
+
+    /**
+     * Corresponds to the maximum time to wait for the end of the deliveries (in milliseconds)
+     */
+    private static final long DRAIN = 60000;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Prevents the instantiation of this class
+     */
+    private EventReplayer() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Replays or compares traces
+     * @param args Corresponds to the arguments (replay &lt;trace&gt; [--fast] [--report &lt;file&gt;] or compare &lt;before&gt; &lt;after&gt;)
+     * @throws java.io.IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws java.io.IOException {
+        if(args.length >= 2 && args[0].equals("replay")){
+            boolean paced = true;
+            java.io.File report = null;
+            for(int i = 2; i < args.length; i++){
+                if(args[i].equals("--fast"))
+                    paced = false;
+                else if(args[i].equals("--report") && i + 1 < args.length)
+                    report = new java.io.File(args[++i]);
+            }
+            Manager manager = new Manager();
+            manager.onCreate();
+            java.util.Properties result;
+            try {
+                result = replay(manager, new java.io.File(args[1]), paced);
+            } finally {
+                manager.onDestroy();
+            }
+            for(String line : lines(result))
+                System.out.println(line);
+            if(report != null){
+                try (java.io.OutputStream out = new java.io.FileOutputStream(report)) {
+                    result.store(out, "JavaPlugin replay of " + args[1]);
+                }
+            }
+        }else if(args.length == 3 && args[0].equals("compare")){
+            for(String line : compare(load(new java.io.File(args[1])), load(new java.io.File(args[2]))))
+                System.out.println(line);
+        }else{
+            System.err.println("Usage: EventReplayer replay <trace> [--fast] [--report <file>] | compare <before> <after>");
+        }
+    }
+
+    /**
+     * Replays a trace file into a Manager and waits for the end of the deliveries
+     * @param manager Corresponds to the Manager which receives the events
+     * @param trace Corresponds to the trace file written by {@link EventRecorder}
+     * @param paced Determines if the events are replayed at the original pace (true) or as fast as possible (false)
+     * @return Returns the report of the replay (keys TYPE.measure.statistic, values in nanoseconds)
+     * @throws java.io.IOException If the trace file cannot be read
+     */
+    static java.util.Properties replay(Manager manager, java.io.File trace, boolean paced) throws java.io.IOException {
+        Histogram[] intake = new Histogram[EventType.values().length];
+        for(int i = 0; i < intake.length; i++)
+            intake[i] = new Histogram();
+        long origin = System.nanoTime();
+        long first = -1;
+        int skipped = 0;
+        try (java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(trace), java.nio.charset.StandardCharsets.UTF_8))) {
+            String line;
+            while((line = in.readLine()) != null){
+                if(line.trim().isEmpty())
+                    continue;
+                JsonObject o;
+                EventType type;
+                try {
+                    o = GsonCache.SHARED.fromJson(line, JsonObject.class);
+                    type = EventType.valueOf(o.get("type").getAsString());
+                } catch (RuntimeException ex) {
+                    skipped++;
+                    continue;
+                }
+                if(paced){
+                    long t = o.get("t").getAsLong();
+                    if(first < 0)
+                        first = t;
+                    long delay = (t - first) - (System.nanoTime() - origin);
+                    if(delay > 0)
+                        java.util.concurrent.locks.LockSupport.parkNanos(delay);
+                }
+                long start = System.nanoTime();
+                try {
+                    deliver(manager, type, o);
+                } catch (RuntimeException | ReflectiveOperationException ex) {
+                    skipped++;
+                    java.util.logging.Logger.getLogger(EventReplayer.class.getName()).log(java.util.logging.Level.WARNING, "Unable to replay the event " + type, ex);
+                    continue;
+                }
+                intake[type.ordinal()].record(System.nanoTime() - start);
+            }
+        }
+        drain(manager.metrics());
+        java.util.Properties result = new java.util.Properties();
+        for(EventType type : EventType.values()){
+            if(intake[type.ordinal()].count() == 0)
+                continue;
+            put(result, type + ".intake", intake[type.ordinal()]);
+            put(result, type + ".wait", manager.metrics().queueWait(type));
+            put(result, type + ".execution", manager.metrics().execution(type));
+        }
+        result.setProperty("errors", String.valueOf(manager.metrics().getErrors()));
+        result.setProperty("skipped", String.valueOf(skipped));
+        return result;
+    }
+
+    /**
+     * Compares the reports of two replays
+     * @param before Corresponds to the report of the first replay (the reference)
+     * @param after Corresponds to the report of the second replay
+     * @return Returns one line per measure: the two values and their difference
+     */
+    static java.util.List<String> compare(java.util.Properties before, java.util.Properties after) {
+        java.util.TreeSet<String> keys = new java.util.TreeSet<>(before.stringPropertyNames());
+        keys.addAll(after.stringPropertyNames());
+        java.util.List<String> lines = new java.util.ArrayList<>();
+        for(String key : keys){
+            String a = before.getProperty(key);
+            String b = after.getProperty(key);
+            if(a == null || b == null){
+                lines.add(key + " " + ((a == null) ? "-" : a) + " -> " + ((b == null) ? "-" : b));
+                continue;
+            }
+            long x = Long.parseLong(a);
+            long y = Long.parseLong(b);
+            String delta = (x == 0) ? ((y == 0) ? "=" : "new") : String.format(java.util.Locale.ROOT, "%+.1f%%", (y - x) * 100.0 / x);
+            lines.add(key + " " + x + " -> " + y + " (" + delta + ")");
+        }
+        return lines;
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Delivers a recorded event to a Manager, through the callback which received it
+     * @param manager Corresponds to the Manager which receives the event
+     * @param type Corresponds to the type of the event
+     * @param o Corresponds to the recorded event
+     * @throws ReflectiveOperationException If the class of an unknown event cannot be found
+     */
+    private static void deliver(Manager manager, EventType type, JsonObject o) throws ReflectiveOperationException {
+        Class<?> eventClass = (type == EventType.OTHER) ? Class.forName(o.get("class").getAsString()) : type.getEventClass();
+        Event event = (Event) GsonCache.SHARED.fromJson(o.get("event"), eventClass);
+        Context context = get(o, "context", Context.class);
+        String text = o.has("text") ? o.get("text").getAsString() : null;
+        GsonBuilder builder = GsonCache.builder();
+        switch(type){
+            case KEY_DOWN:                          manager.keyDown((KeyDown) event, context, builder); break;
+            case KEY_UP:                            manager.keyUp((KeyUp) event, context, builder); break;
+            case WILL_APPEAR:                       manager.willAppear((WillAppear) event, context, builder); break;
+            case WILL_DISAPPEAR:                    manager.willDisappear((WillDisappear) event, context, builder); break;
+            case TITLE_PARAMETERS_DID_CHANGE:       manager.titleParametersDidChange((TitleParametersDidChange) event, context, text, get(o, "extra", TitleParameters.class), builder); break;
+            case DID_RECEIVE_SETTINGS:              manager.didReceiveSettings((DidReceiveSettings) event, context, text, builder); break;
+            case DID_RECEIVE_GLOBAL_SETTINGS:       manager.didReceiveGlobalSettings((DidReceiveGlobalSettings) event, text, builder); break;
+            case DEVICE_DID_CONNECT:                manager.deviceDidConnect((DeviceDidConnect) event, text, get(o, "extra", DeviceDidConnect.DeviceInfo.class), builder); break;
+            case DEVICE_DID_DISCONNECT:             manager.deviceDidDisconnect((DeviceDidDisconnect) event, text, builder); break;
+            case APPLICATION_DID_LAUNCH:            manager.applicationDidLaunch((ApplicationDidLaunch) event, text, builder); break;
+            case APPLICATION_DID_TERMINATE:         manager.applicationDidTerminate((ApplicationDidTerminate) event, text, builder); break;
+            case SYSTEM_DID_WAKE_UP:                manager.systemDidWakeUp((SystemDidWakeUp) event, builder); break;
+            case PROPERTY_INSPECTOR_DID_APPEAR:     manager.propertyInspectorDidAppear((PropertyInspectorDidAppear) event, context, builder); break;
+            case PROPERTY_INSPECTOR_DID_DISAPPEAR:  manager.propertyInspectorDidDisappear((PropertyInspectorDidDisappear) event, context, builder); break;
+            case SEND_TO_PLUGIN:                    manager.sendToPlugin((SendToPlugin) event, context, get(o, "extra", Payload.class), builder); break;
+            case SEND_TO_PROPERTY_INSPECTOR:        manager.sendToPropertyInspector((SendToPropertyInspector) event, context, get(o, "extra", Payload.class), builder); break;
+            default:                                manager.event(event, builder); break;
+        }
+    }
+
+    /**
+     * Returns a member of a recorded event
+     * @param <T> Corresponds to the type of the member
+     * @param o Corresponds to the recorded event
+     * @param name Corresponds to the name of the member
+     * @param type Corresponds to the class of the member
+     * @return Returns the member or null if there is none
+     */
+    private static <T> T get(JsonObject o, String name, Class<T> type) {
+        JsonElement e = o.get(name);
+        return (e == null || e.isJsonNull()) ? null : GsonCache.SHARED.fromJson(e, type);
+    }
+
+    /**
+     * Waits until no delivery has been measured for a while
+     * @param metrics Corresponds to the metrics of the Manager
+     */
+    private static void drain(DispatchMetrics metrics) {
+        long deadline = System.currentTimeMillis() + DRAIN;
+        long last = -1;
+        long quietSince = System.currentTimeMillis();
+        while(System.currentTimeMillis() < deadline){
+            long count = metrics.getDeliveries() + metrics.getErrors();
+            long now = System.currentTimeMillis();
+            if(count != last){
+                last = count;
+                quietSince = now;
+            }else if(now - quietSince >= QUIET){
+                return;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the statistics of a histogram to a report
+     * @param result Corresponds to the report
+     * @param prefix Corresponds to the prefix of the keys (TYPE.measure)
+     * @param histogram Corresponds to the histogram
+     */
+    static void put(java.util.Properties result, String prefix, Histogram histogram) {
+        long[] values = new long[]{histogram.count(), histogram.mean(), histogram.percentile(50), histogram.percentile(90), histogram.percentile(99), histogram.max()};
+        for(int i = 0; i < MEASURES.length; i++)
+            result.setProperty(prefix + "." + MEASURES[i], String.valueOf(values[i]));
+    }
+
+    /**
+     * Returns the lines of a report, sorted by key
+     * @param result Corresponds to the report
+     * @return Returns the lines of the report
+     */
+    private static java.util.List<String> lines(java.util.Properties result) {
+        java.util.List<String> lines = new java.util.ArrayList<>();
+        for(String key : new java.util.TreeSet<>(result.stringPropertyNames()))
+            lines.add(key + "=" + result.getProperty(key));
+        return lines;
+    }
+
+    /**
+     * Loads the report of a replay
+     * @param file Corresponds to the report file
+     * @return Returns the report
+     * @throws java.io.IOException If the report cannot be read
+     */
+    private static java.util.Properties load(java.io.File file) throws java.io.IOException {
+        java.util.Properties properties = new java.util.Properties();
+        try (java.io.InputStream in = new java.io.FileInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+
+
+}
\ No newline at end of file
@@ -0,0 +1,677 @@
+/*
+ * Copyright (C) JasonPercus Systems, Inc - All Rights Reserved
+ *
+ * Unauthorized copying of this file, via any medium is strictly prohibited
+ * Proprietary and confidential
+ *
+ * Written by JasonPercus, December 2021
+ */
+package com.jasonpercus.plugincreator;
+
+
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+
+
+/**
+ * This class stands in for the Stream Deck application in order to load-test the host without hardware, fully offline. It opens a local WebSocket server, starts JavaPlugin in a new JVM with the usual arguments (-port, -pluginUUID, -registerEvent, -info), then sends a scenario or a trace file at a given rate and measures the latency of the answers (setTitle and setImage). It is a development tool of tools/, built by the target tools of build.xml and not included in the plugin jar:
+ * <ul>
+ * <li>java -cp dist/JavaPlugin.jar:build/tools/classes com.jasonpercus.plugincreator.StreamDeckSimulator keys --plugin &lt;file&gt; [--contexts 10] [--events 1000]: key storm (keyDown and keyUp on each context in turn)</li>
+ * <li>java ... StreamDeckSimulator profile --plugin &lt;file&gt; [--contexts 200] [--rounds 5]: profile switches (willAppear then willDisappear of all the contexts)</li>
+ * <li>java ... StreamDeckSimulator devices [--events 100]: devices plugged and unplugged</li>
+ * <li>java ... StreamDeckSimulator trace &lt;trace&gt;: a trace written by {@link EventRecorder} (at its original pace unless --rate is given)</li>
+ * </ul>
+ * The common options are --rate &lt;events per second&gt; (default 100, 0 as fast as possible), --action &lt;name&gt; (the action of the plugin file targeted by the keys), --main &lt;class&gt; (default com.jasonpercus.plugincreator.JavaPlugin), --classpath &lt;classpath&gt; (default: the classpath of the simulator), --jvm &lt;argument&gt; (repeatable) and --report &lt;file&gt;. The latency of a context is the time between the first event sent to this context since its last answer and its next setTitle or setImage. The report can be compared with another one by {@link EventReplayer} (compare)
+ * @author JasonPercus
+ * @version 1.0
+ */
+final class StreamDeckSimulator {
+
+
+
+//CONSTANTES
+    /**
+     * Corresponds to the UUID of the action of JavaPlugin (see its manifest.json)
+     */
+    private static final String ACTION = "java.program.plugin";
+
+    /**
+     * Corresponds to the device of the simulator
+     */
+    private static final String DEVICE = "SIMULATOR";
+
+    /**
+     * Corresponds to the magic string of the WebSocket handshake (RFC 6455)
+     */
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * Corresponds to the maximum time to wait for the connection of the plugin (in milliseconds)
+     */
+    private static final int CONNECT = 30000;
+
+    /**
+     * Corresponds to the time without any new answer after which the test is considered as finished (in milliseconds)
+     */
+    private static final long QUIET = 1000;
+
+    /**
+     * Corresponds to the maximum time to wait for the answers (in milliseconds)
+     */
+    private static final long DRAIN = 60000;
+
+
+
+//ATTRIBUTS
+    /**
+     * Corresponds to the time of the first event sent to each context since its last answer (System.nanoTime())
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, Long> pending = new java.util.concurrent.ConcurrentHashMap<>();
+
+    /**
+     * Corresponds to the latencies of the answers
+     */
+    private final Histogram latency = new Histogram();
+
+    /**
+     * Corresponds to the number of answers received (setTitle and setImage)
+     */
+    private final java.util.concurrent.atomic.AtomicLong answers = new java.util.concurrent.atomic.AtomicLong();
+
+    /**
+     * Corresponds to the number of other messages received from the plugin
+     */
+    private final java.util.concurrent.atomic.AtomicLong others = new java.util.concurrent.atomic.AtomicLong();
+
+    /**
+     * Corresponds to the time of the last message received (System.currentTimeMillis())
+     */
+    private volatile long lastMessage = System.currentTimeMillis();
+
+    /**
+     * Corresponds to the number of events sent
+     */
+    private long sent;
+
+
+
+//CONSTRUCTOR
+    /**
+     * Create a StreamDeckSimulator
+     */
+    private StreamDeckSimulator() {
+    }
+
+
+
+//METHODE PUBLIC
+    /**
+     * Runs a scenario or a trace against JavaPlugin
+     * @param args Corresponds to the arguments (see the description of the class)
+     * @throws java.io.IOException If the server cannot be opened, the plugin cannot be started or a file cannot be read or written
+     * @throws InterruptedException If the simulator is interrupted
+     */
+    public static void main(String[] args) throws java.io.IOException, InterruptedException {
+        if(args.length == 0 || !(args[0].equals("keys") || args[0].equals("profile") || args[0].equals("devices") || (args[0].equals("trace") && args.length >= 2))){
+            System.err.println("Usage: StreamDeckSimulator keys|profile --plugin <file> | devices | trace <trace> [--rate <events/s>] [--contexts <n>] [--events <n>] [--rounds <n>] [--action <name>] [--main <class>] [--classpath <classpath>] [--jvm <argument>]... [--report <file>]");
+            return;
+        }
+        java.util.Map<String, String> options = new java.util.HashMap<>();
+        java.util.List<String> jvm = new java.util.ArrayList<>();
+        for(int i = args[0].equals("trace") ? 2 : 1; i + 1 < args.length; i += 2){
+            if(args[i].equals("--jvm"))
+                jvm.add(args[i + 1]);
+            else
+                options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if(!args[0].equals("devices") && !args[0].equals("trace") && !options.containsKey("plugin")){
+            System.err.println("The scenario " + args[0] + " needs a plugin file (--plugin <file>)");
+            return;
+        }
+        java.util.List<String> events = args[0].equals("trace") ? null : scenario(args[0], options);
+        long period = period(options.get("rate"), (events == null) ? -1 : 100);
+        StreamDeckSimulator simulator = new StreamDeckSimulator();
+        java.util.Properties result;
+        try (java.net.ServerSocket server = new java.net.ServerSocket(Integer.parseInt(options.getOrDefault("port", "0")), 1, java.net.InetAddress.getLoopbackAddress())) {
+            Process plugin = start(server.getLocalPort(), options, jvm);
+            try {
+                server.setSoTimeout(CONNECT);
+                try (WebSocket socket = WebSocket.accept(server.accept())) {
+                    String registration = socket.read();
+                    System.out.println("Plugin registered: " + registration);
+                    Thread reader = new Thread(() -> simulator.listen(socket), "StreamDeckSimulator-Reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                    long start = System.nanoTime();
+                    if(events != null)
+                        simulator.send(socket, events, period);
+                    else
+                        simulator.send(socket, new java.io.File(args[1]), period);
+                    long elapsed = System.nanoTime() - start;
+                    simulator.drain();
+                    result = simulator.report(elapsed);
+                }
+            } finally {
+                plugin.destroy();
+                if(!plugin.waitFor(5, java.util.concurrent.TimeUnit.SECONDS))
+                    plugin.destroyForcibly();
+            }
+        }
+        for(String key : new java.util.TreeSet<>(result.stringPropertyNames()))
+            System.out.println(key + "=" + result.getProperty(key));
+        if(options.containsKey("report")){
+            try (java.io.OutputStream out = new java.io.FileOutputStream(options.get("report"))) {
+                result.store(out, "JavaPlugin simulation " + String.join(" ", args));
+            }
+        }
+    }
+
+
+
+//METHODES PRIVATES
+    /**
+     * Starts JavaPlugin in a new JVM, with the arguments given by the Stream Deck application
+     * @param port Corresponds to the port of the WebSocket server
+     * @param options Corresponds to the options of the simulator
+     * @param jvm Corresponds to the additional arguments of the JVM
+     * @return Returns the process of the plugin
+     * @throws java.io.IOException If the plugin cannot be started
+     */
+    private static Process start(int port, java.util.Map<String, String> options, java.util.List<String> jvm) throws java.io.IOException {
+        JsonObject info = new JsonObject();
+        JsonObject application = new JsonObject();
+        application.addProperty("language", "en");
+        application.addProperty("platform", "linux");
+        application.addProperty("version", "5.0.0");
+        info.add("application", application);
+        JsonObject plugin = new JsonObject();
+        plugin.addProperty("version", "1.0");
+        info.add("plugin", plugin);
+        info.addProperty("devicePixelRatio", 1);
+        com.google.gson.JsonArray devices = new com.google.gson.JsonArray();
+        devices.add(device());
+        info.add("devices", devices);
+        java.util.List<String> command = new java.util.ArrayList<>();
+        command.add(new java.io.File(System.getProperty("java.home"), "bin" + java.io.File.separator + "java").getPath());
+        command.addAll(jvm);
+        command.add("-cp");
+        command.add(options.getOrDefault("classpath", System.getProperty("java.class.path")));
+        command.add(options.getOrDefault("main", JavaPlugin.class.getName()));
+        command.add("-port");
+        command.add(String.valueOf(port));
+        command.add("-pluginUUID");
+        command.add(java.util.UUID.randomUUID().toString().toUpperCase(java.util.Locale.ROOT));
+        command.add("-registerEvent");
+        command.add("registerPlugin");
+        command.add("-info");
+        command.add(GsonCache.SHARED.toJson(info));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Returns the events of a scenario, in the format of the Stream Deck application
+     * @param name Corresponds to the name of the scenario (keys, profile or devices)
+     * @param options Corresponds to the options of the simulator
+     * @return Returns the events of the scenario
+     */
+    private static java.util.List<String> scenario(String name, java.util.Map<String, String> options) {
+        java.util.List<String> events = new java.util.ArrayList<>();
+        JsonObject settings = new JsonObject();
+        if(options.containsKey("plugin"))
+            settings.addProperty("pluginFile", new java.io.File(options.get("plugin")).getAbsolutePath());
+        if(options.containsKey("action"))
+            settings.addProperty("actionName", options.get("action"));
+        switch(name){
+            case "keys": {
+                int contexts = Integer.parseInt(options.getOrDefault("contexts", "10"));
+                int count = Integer.parseInt(options.getOrDefault("events", "1000"));
+                for(int c = 0; c < contexts; c++)
+                    events.add(action("willAppear", c, settings));
+                for(int i = 0; i < count; i++)
+                    events.add(action((i / contexts) % 2 == 0 ? "keyDown" : "keyUp", i % contexts, settings));
+                break;
+            }
+            case "profile": {
+                int contexts = Integer.parseInt(options.getOrDefault("contexts", "200"));
+                int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+                for(int r = 0; r < rounds; r++){
+                    for(int c = 0; c < contexts; c++)
+                        events.add(action("willAppear", c, settings));
+                    for(int c = 0; c < contexts; c++)
+                        events.add(action("willDisappear", c, settings));
+                }
+                break;
+            }
+            default: {
+                int count = Integer.parseInt(options.getOrDefault("events", "100"));
+                for(int i = 0; i < count; i++){
+                    JsonObject event = new JsonObject();
+                    event.addProperty("event", (i % 2 == 0) ? "deviceDidConnect" : "deviceDidDisconnect");
+                    event.addProperty("device", DEVICE);
+                    if(i % 2 == 0)
+                        event.add("deviceInfo", device().get("deviceInfo"));
+                    events.add(GsonCache.SHARED.toJson(event));
+                }
+                break;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns an event of a key of the simulator, in the format of the Stream Deck application
+     * @param name Corresponds to the name of the event (keyDown, keyUp, willAppear or willDisappear)
+     * @param index Corresponds to the index of the key
+     * @param settings Corresponds to the settings of the key (plugin file and action name)
+     * @return Returns the event
+     */
+    private static String action(String name, int index, JsonObject settings) {
+        JsonObject coordinates = new JsonObject();
+        coordinates.addProperty("column", index % 5);
+        coordinates.addProperty("row", (index / 5) % 3);
+        JsonObject payload = new JsonObject();
+        payload.add("settings", settings);
+        payload.add("coordinates", coordinates);
+        payload.addProperty("state", 0);
+        payload.addProperty("isInMultiAction", false);
+        JsonObject event = new JsonObject();
+        event.addProperty("action", ACTION);
+        event.addProperty("event", name);
+        event.addProperty("context", "CONTEXT" + index);
+        event.addProperty("device", DEVICE);
+        event.add("payload", payload);
+        return GsonCache.SHARED.toJson(event);
+    }
+
+    /**
+     * Returns the device of the simulator (a Stream Deck of 15 keys)
+     * @return Returns the device of the simulator
+     */
+    private static JsonObject device() {
+        JsonObject size = new JsonObject();
+        size.addProperty("columns", 5);
+        size.addProperty("rows", 3);
+        JsonObject info = new JsonObject();
+        info.addProperty("name", "Simulator");
+        info.addProperty("type", 0);
+        info.add("size", size);
+        JsonObject device = new JsonObject();
+        device.addProperty("id", DEVICE);
+        device.addProperty("name", "Simulator");
+        device.addProperty("type", 0);
+        device.add("size", size);
+        device.add("deviceInfo", info);
+        return device;
+    }
+
+    /**
+     * Returns the time between two events
+     * @param rate Corresponds to the rate given by the user (events per second, 0 as fast as possible) or null
+     * @param defaultRate Corresponds to the rate by default (-1 for the original pace of a trace)
+     * @return Returns the time between two events in nanoseconds (0 as fast as possible, -1 for the original pace of a trace)
+     */
+    private static long period(String rate, long defaultRate) {
+        double r = (rate == null) ? defaultRate : Double.parseDouble(rate);
+        return (r < 0) ? -1 : (r == 0) ? 0 : (long) (1e9 / r);
+    }
+
+    /**
+     * Sends events at a fixed rate
+     * @param socket Corresponds to the connection of the plugin
+     * @param events Corresponds to the events
+     * @param period Corresponds to the time between two events in nanoseconds (0 as fast as possible)
+     * @throws java.io.IOException If an event cannot be sent
+     */
+    private void send(WebSocket socket, java.util.List<String> events, long period) throws java.io.IOException {
+        long origin = System.nanoTime();
+        for(int i = 0; i < events.size(); i++){
+            if(period > 0)
+                pace(origin + i * period);
+            send(socket, events.get(i));
+        }
+    }
+
+    /**
+     * Sends the events of a trace written by {@link EventRecorder}
+     * @param socket Corresponds to the connection of the plugin
+     * @param trace Corresponds to the trace file
+     * @param period Corresponds to the time between two events in nanoseconds (0 as fast as possible, -1 for the original pace of the trace)
+     * @throws java.io.IOException If the trace cannot be read or an event cannot be sent
+     */
+    private void send(WebSocket socket, java.io.File trace, long period) throws java.io.IOException {
+        long origin = System.nanoTime();
+        long first = -1;
+        long index = 0;
+        try (java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(trace), java.nio.charset.StandardCharsets.UTF_8))) {
+            String line;
+            while((line = in.readLine()) != null){
+                if(line.trim().isEmpty())
+                    continue;
+                JsonObject o;
+                String event;
+                try {
+                    o = GsonCache.SHARED.fromJson(line, JsonObject.class);
+                    event = wire(o.getAsJsonObject("event"));
+                } catch (RuntimeException ex) {
+                    continue;
+                }
+                if(period < 0){
+                    long t = o.get("t").getAsLong();
+                    if(first < 0)
+                        first = t;
+                    pace(origin + t - first);
+                }else if(period > 0){
+                    pace(origin + index * period);
+                }
+                index++;
+                send(socket, event);
+            }
+        }
+    }
+
+    /**
+     * Returns a recorded event in the format of the Stream Deck application (the raw json received if it has been recorded)
+     * @param event Corresponds to the recorded event
+     * @return Returns the event
+     */
+    private static String wire(JsonObject event) {
+        JsonElement raw = event.get("rawDatas");
+        if(raw != null && raw.isJsonPrimitive())
+            return raw.getAsString();
+        event.remove("rawDatas");
+        JsonElement payload = event.get("payload");
+        if(payload != null && payload.isJsonObject()){
+            JsonElement settings = payload.getAsJsonObject().get("settings");
+            if(settings != null && settings.isJsonPrimitive())
+                payload.getAsJsonObject().add("settings", GsonCache.SHARED.fromJson(settings.getAsString(), JsonElement.class));
+        }
+        return GsonCache.SHARED.toJson(event);
+    }
+
+    /**
+     * Sends an event and remembers when the first unanswered event of its context has been sent
+     * @param socket Corresponds to the connection of the plugin
+     * @param event Corresponds to the event
+     * @throws java.io.IOException If the event cannot be sent
+     */
+    private void send(WebSocket socket, String event) throws java.io.IOException {
+        JsonElement context = GsonCache.SHARED.fromJson(event, JsonObject.class).get("context");
+        if(context != null && context.isJsonPrimitive())
+            pending.putIfAbsent(context.getAsString(), System.nanoTime());
+        socket.write(event);
+        sent++;
+    }
+
+    /**
+     * Waits until a time
+     * @param deadline Corresponds to the time (System.nanoTime())
+     */
+    private static void pace(long deadline) {
+        long delay;
+        while((delay = deadline - System.nanoTime()) > 0)
+            java.util.concurrent.locks.LockSupport.parkNanos(delay);
+    }
+
+    /**
+     * Reads the messages of the plugin until the connection is closed, and measures the latency of the answers
+     * @param socket Corresponds to the connection of the plugin
+     */
+    private void listen(WebSocket socket) {
+        try {
+            String message;
+            while((message = socket.read()) != null){
+                long now = System.nanoTime();
+                lastMessage = System.currentTimeMillis();
+                JsonObject o;
+                try {
+                    o = GsonCache.SHARED.fromJson(message, JsonObject.class);
+                } catch (RuntimeException ex) {
+                    others.incrementAndGet();
+                    continue;
+                }
+                String event = (o != null && o.has("event")) ? o.get("event").getAsString() : null;
+                if(!"setTitle".equals(event) && !"setImage".equals(event)){
+                    others.incrementAndGet();
+                    continue;
+                }
+                answers.incrementAndGet();
+                Long since = o.has("context") ? pending.remove(o.get("context").getAsString()) : null;
+                if(since != null)
+                    latency.record(now - since);
+            }
+        } catch (java.io.IOException ex) {
+            if(!socket.isClosed())
+                java.util.logging.Logger.getLogger(StreamDeckSimulator.class.getName()).log(java.util.logging.Level.WARNING, "Connection of the plugin lost", ex);
+        }
+    }
+
+    /**
+     * Waits until no message has been received from the plugin for a while
+     * @throws InterruptedException If the simulator is interrupted
+     */
+    private void drain() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN;
+        while(System.currentTimeMillis() < deadline && System.currentTimeMillis() - lastMessage < QUIET)
+            Thread.sleep(50);
+    }
+
+    /**
+     * Returns the report of the simulation
+     * @param elapsed Corresponds to the time spent to send the events (in nanoseconds)
+     * @return Returns the report (keys latency.statistic in nanoseconds, sent, answers, others, unanswered and rate)
+     */
+    private java.util.Properties report(long elapsed) {
+        java.util.Properties result = new java.util.Properties();
+        EventReplayer.put(result, "latency", latency);
+        result.setProperty("sent", String.valueOf(sent));
+        result.setProperty("answers", String.valueOf(answers.get()));
+        result.setProperty("others", String.valueOf(others.get()));
+        result.setProperty("unanswered", String.valueOf(pending.size()));
+        result.setProperty("rate", String.valueOf((elapsed == 0) ? 0 : sent * 1000000000L / elapsed));
+        return result;
+    }
+
+
+
+//CLASS
+    /**
+     * This class represents the server side of a WebSocket connection (RFC 6455): text messages only, no extension
+     * @author JasonPercus
+     * @version 1.0
+     */
+    private static final class WebSocket implements java.io.Closeable {
+
+
+
+    //ATTRIBUTS
+        /**
+         * Corresponds to the socket
+         */
+        private final java.net.Socket socket;
+
+        /**
+         * Corresponds to the input of the socket
+         */
+        private final java.io.DataInputStream in;
+
+        /**
+         * Corresponds to the output of the socket (guarded by itself)
+         */
+        private final java.io.OutputStream out;
+
+
+
+    //CONSTRUCTOR
+        /**
+         * Create a WebSocket
+         * @param socket Corresponds to the socket whose handshake has been done
+         * @param in Corresponds to the input of the socket
+         * @throws java.io.IOException If the output of the socket cannot be opened
+         */
+        private WebSocket(java.net.Socket socket, java.io.DataInputStream in) throws java.io.IOException {
+            this.socket = socket;
+            this.in = in;
+            this.out = new java.io.BufferedOutputStream(socket.getOutputStream());
+        }
+
+
+
+    //METHODES PUBLICS
+        /**
+         * Does the handshake of a new connection
+         * @param socket Corresponds to the socket accepted by the server
+         * @return Returns the WebSocket
+         * @throws java.io.IOException If the handshake fails
+         */
+        static WebSocket accept(java.net.Socket socket) throws java.io.IOException {
+            socket.setTcpNoDelay(true);
+            java.io.DataInputStream in = new java.io.DataInputStream(new java.io.BufferedInputStream(socket.getInputStream()));
+            String key = null;
+            String line;
+            while((line = line(in)) != null && !line.isEmpty()){
+                int colon = line.indexOf(':');
+                if(colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key"))
+                    key = line.substring(colon + 1).trim();
+            }
+            if(key == null){
+                socket.close();
+                throw new java.io.IOException("Not a WebSocket handshake");
+            }
+            String accept;
+            try {
+                accept = java.util.Base64.getEncoder().encodeToString(java.security.MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(java.nio.charset.StandardCharsets.US_ASCII)));
+            } catch (java.security.NoSuchAlgorithmException ex) {
+                throw new java.io.IOException(ex);
+            }
+            WebSocket webSocket = new WebSocket(socket, in);
+            synchronized(webSocket.out){
+                webSocket.out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+                webSocket.out.flush();
+            }
+            return webSocket;
+        }
+
+        /**
+         * Reads the next text message (the control frames are answered)
+         * @return Returns the message or null if the connection is closed
+         * @throws java.io.IOException If the connection fails
+         */
+        String read() throws java.io.IOException {
+            java.io.ByteArrayOutputStream message = new java.io.ByteArrayOutputStream();
+            while(true){
+                int b0 = in.read();
+                if(b0 < 0)
+                    return null;
+                int b1 = in.readUnsignedByte();
+                long length = b1 & 0x7F;
+                if(length == 126)
+                    length = in.readUnsignedShort();
+                else if(length == 127)
+                    length = in.readLong();
+                byte[] mask = null;
+                if((b1 & 0x80) != 0){
+                    mask = new byte[4];
+                    in.readFully(mask);
+                }
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                if(mask != null){
+                    for(int i = 0; i < payload.length; i++)
+                        payload[i] ^= mask[i & 3];
+                }
+                int opcode = b0 & 0x0F;
+                if(opcode == 0x8){
+                    frame(0x8, payload);
+                    return null;
+                }else if(opcode == 0x9){
+                    frame(0xA, payload);
+                }else if(opcode <= 0x2){
+                    message.write(payload);
+                    if((b0 & 0x80) != 0)
+                        return new String(message.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        /**
+         * Sends a text message
+         * @param message Corresponds to the message
+         * @throws java.io.IOException If the message cannot be sent
+         */
+        void write(String message) throws java.io.IOException {
+            frame(0x1, message.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Determines if the connection has been closed by the simulator
+         * @return Returns true if the connection has been closed, otherwise false
+         */
+        boolean isClosed() {
+            return socket.isClosed();
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            try {
+                frame(0x8, new byte[0]);
+            } catch (java.io.IOException ex) {
+                //La connexion est peut-être déjà fermée par le plugin
+            } finally {
+                socket.close();
+            }
+        }
+
+
+
+    //METHODES PRIVATES
+        /**
+         * Sends a frame (not masked, as every frame sent by a server)
+         * @param opcode Corresponds to the opcode of the frame
+         * @param payload Corresponds to the data of the frame
+         * @throws java.io.IOException If the frame cannot be sent
+         */
+        private void frame(int opcode, byte[] payload) throws java.io.IOException {
+            synchronized(out){
+                out.write(0x80 | opcode);
+                if(payload.length < 126){
+                    out.write(payload.length);
+                }else if(payload.length < 65536){
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length);
+                }else{
+                    out.write(127);
+                    for(int shift = 56; shift >= 0; shift -= 8)
+                        out.write((int) ((long) payload.length >>> shift));
+                }
+                out.write(payload);
+                out.flush();
+            }
+        }
+
+        /**
+         * Reads a line of the handshake
+         * @param in Corresponds to the input of the socket
+         * @return Returns the line without its end or null if the connection is closed
+         * @throws java.io.IOException If the connection fails
+         */
+        private static String line(java.io.DataInputStream in) throws java.io.IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while((c = in.read()) >= 0){
+                if(c == '\n')
+                    return (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\r') ? sb.substring(0, sb.length() - 1) : sb.toString();
+                sb.append((char) c);
+            }
+            return (sb.length() == 0) ? null : sb.toString();
+        }
+
+
+
+    }
+
+
+
+}
\ No newline at end of file